@@ -0,0 +1,492 @@
+package com.oney.WebRTCModule;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.PromiseImpl;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process load test of the module, meant to catch regressions in the
+ * executor, {@link PeerConnectionObserver} and event paths, on an emulator
+ * without any JS involved.
+ *
+ * It plays the part of the JS side: it calls the same React methods JS does,
+ * with promises backed by latches, on a module of its own whose events it
+ * takes instead of the bridge, converting them the way the bridge does and
+ * answering the ICE candidates. The PeerConnections are connected in pairs
+ * over the loopback interface.
+ *
+ * The workload is: all the pairs negotiating at once, which produces bursts
+ * of ICE candidates, then a flood of DataChannel messages on every pair while
+ * the stats of every PeerConnection are polled periodically. The result
+ * contains the executor latencies, the event throughput and conversion cost,
+ * the stats latency and the bytes allocated during the run. The executor
+ * metrics are cumulative, so they also cover whatever ran in the process
+ * before; run it on its own.
+ */
+class LoadHarness {
+    /**
+     * Ids of the harness PeerConnections start here.
+     */
+    private static final int FIRST_ID = 1 << 20;
+
+    private static final long STEP_TIMEOUT_MS = 20000;
+
+    static final int DEFAULT_PEER_CONNECTIONS = 50;
+    static final long DEFAULT_DURATION_MS = 30000;
+    static final int DEFAULT_MESSAGES_PER_SECOND = 100;
+    static final int DEFAULT_MESSAGE_SIZE = 1024;
+    static final long DEFAULT_STATS_INTERVAL_MS = 1000;
+
+    private static class Pair {
+        final int offerer;
+        final int answerer;
+        @Nullable
+        String channelTag;
+        final CountDownLatch channelOpen = new CountDownLatch(1);
+        volatile boolean offererReady;
+        volatile boolean answererReady;
+
+        Pair(int offerer) {
+            this.offerer = offerer;
+            this.answerer = offerer + 1;
+        }
+    }
+
+    /**
+     * The module under test, whose events go to the harness instead of the
+     * bridge.
+     */
+    private class HarnessModule extends WebRTCModule {
+        HarnessModule(ReactApplicationContext reactContext) {
+            super(reactContext);
+        }
+
+        @Override
+        void sendEvent(String eventName, @Nullable ReadableMap params) {
+            onEvent(eventName, params);
+        }
+
+        @Override
+        void sendCompactEvent(String eventName, ReadableArray params) {
+            onEvent(eventName, params);
+        }
+    }
+
+    private final WebRTCModule webRTCModule;
+    private final int peerConnections;
+    private final long durationMs;
+    private final int messagesPerSecond;
+    private final int messageSize;
+    private final long statsIntervalMs;
+
+    // Accessed on the harness thread only but for the reads in onEvent, which
+    // happen once it's filled.
+    private final List<Pair> pairs = new ArrayList<>();
+    private final List<Integer> created = new ArrayList<>();
+
+    // Candidates gathered before the remote description of their destination
+    // was set, as JS apps queue them.
+    private final Map<Integer, List<ReadableMap>> pendingCandidates = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> eventCounts = new ConcurrentHashMap<>();
+    private final AtomicLong eventConversionNanos = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final LatencyHistogram statsLatency = new LatencyHistogram();
+
+    LoadHarness(ReactApplicationContext reactContext, @Nullable ReadableMap options) {
+        this.peerConnections = Math.max(2, getInt(options, "peerConnections", DEFAULT_PEER_CONNECTIONS)) & ~1;
+        this.durationMs = getInt(options, "durationMs", (int) DEFAULT_DURATION_MS);
+        this.messagesPerSecond = Math.max(1, getInt(options, "messagesPerSecond", DEFAULT_MESSAGES_PER_SECOND));
+        this.messageSize = Math.max(1, getInt(options, "messageSize", DEFAULT_MESSAGE_SIZE));
+        this.statsIntervalMs = Math.max(100, getInt(options, "statsIntervalMs", (int) DEFAULT_STATS_INTERVAL_MS));
+        this.webRTCModule = new HarnessModule(reactContext);
+    }
+
+    /**
+     * Runs the load test on the calling thread and returns the results.
+     */
+    WritableMap run() throws Exception {
+        try {
+            return runWorkload();
+        } finally {
+            tearDown();
+            webRTCModule.invalidate();
+        }
+    }
+
+    private WritableMap runWorkload() throws Exception {
+        for (int i = 0; i < peerConnections; i += 2) {
+            pairs.add(new Pair(FIRST_ID + i));
+        }
+
+        long setupStart = SystemClock.elapsedRealtime();
+
+        for (Pair pair : pairs) {
+            for (int id : new int[] {pair.offerer, pair.answerer}) {
+                WritableMap configuration = Arguments.createMap();
+                configuration.putArray("iceServers", Arguments.createArray());
+                if (!webRTCModule.peerConnectionInit(configuration, id)) {
+                    throw new IllegalStateException("Failed to create PeerConnection " + id);
+                }
+                created.add(id);
+            }
+
+            WritableMap channel = webRTCModule.createDataChannel(pair.offerer, "load", Arguments.createMap());
+            if (channel == null) {
+                throw new IllegalStateException("Failed to create a DataChannel on " + pair.offerer);
+            }
+            pair.channelTag = channel.getString("reactTag");
+        }
+
+        negotiate();
+
+        for (Pair pair : pairs) {
+            if (!pair.channelOpen.await(STEP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("The DataChannel of " + pair.offerer + " did not open");
+            }
+        }
+        long setupMs = SystemClock.elapsedRealtime() - setupStart;
+        WritableMap setupExecutor = ThreadUtils.getMetrics();
+
+        // Steady state: DataChannel flood and stats polling.
+        eventCounts.clear();
+        eventConversionNanos.set(0);
+        long allocatedBefore = getRuntimeStat("art.gc.bytes-allocated");
+        long gcCountBefore = getRuntimeStat("art.gc.gc-count");
+
+        byte[] payload = new byte[messageSize];
+        new Random().nextBytes(payload);
+        String data = Base64.encodeToString(payload, Base64.NO_WRAP);
+
+        long messagesSent = 0;
+        long start = SystemClock.elapsedRealtime();
+        long nextStatsAt = start;
+        long sendIntervalMs = Math.max(1, 1000 / messagesPerSecond);
+        int messagesPerTick = Math.max(1, messagesPerSecond / 1000);
+        long now;
+        while ((now = SystemClock.elapsedRealtime()) - start < durationMs) {
+            for (Pair pair : pairs) {
+                for (int i = 0; i < messagesPerTick; i++) {
+                    webRTCModule.dataChannelSend(pair.offerer, pair.channelTag, data, "binary");
+                    messagesSent++;
+                }
+            }
+
+            if (now >= nextStatsAt) {
+                nextStatsAt += statsIntervalMs;
+                pollStats();
+            }
+
+            Thread.sleep(sendIntervalMs);
+        }
+        long elapsedMs = SystemClock.elapsedRealtime() - start;
+
+        // Let the queued work drain before taking the measurements.
+        ThreadUtils.submitToExecutor("loadTestDrain", () -> {}).get(STEP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        long totalEvents = 0;
+        WritableMap eventsByName = Arguments.createMap();
+        for (Map.Entry<String, AtomicLong> entry : eventCounts.entrySet()) {
+            eventsByName.putDouble(entry.getKey(), entry.getValue().get());
+            totalEvents += entry.getValue().get();
+        }
+
+        WritableMap events = Arguments.createMap();
+        events.putDouble("total", totalEvents);
+        events.putDouble("perSecond", totalEvents * 1000.0 / elapsedMs);
+        events.putDouble("conversionNsPerEvent", totalEvents > 0 ? eventConversionNanos.get() / totalEvents : 0);
+        events.putMap("byName", eventsByName);
+
+        WritableMap messages = Arguments.createMap();
+        messages.putDouble("sent", messagesSent);
+        messages.putDouble("received", messagesReceived.get());
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("peerConnections", peerConnections);
+        result.putDouble("setupMs", setupMs);
+        result.putMap("setupExecutor", setupExecutor);
+        result.putDouble("durationMs", elapsedMs);
+        result.putMap("executor", ThreadUtils.getMetrics());
+        result.putMap("events", events);
+        result.putMap("messages", messages);
+        result.putMap("statsLatency", statsLatency.toWritableMap());
+        if (allocatedBefore >= 0) {
+            result.putDouble("allocatedBytes", getRuntimeStat("art.gc.bytes-allocated") - allocatedBefore);
+            result.putDouble("gcCount", getRuntimeStat("art.gc.gc-count") - gcCountBefore);
+        }
+
+        return result;
+    }
+
+    /**
+     * Negotiates all the pairs at once, one step at a time, like as many JS
+     * apps would.
+     */
+    private void negotiate() throws Exception {
+        List<ReadableMap> offers = awaitAll(pairs, (pair, promise) -> {
+            webRTCModule.peerConnectionCreateOffer(pair.offerer, Arguments.createMap(), promise);
+        });
+
+        List<ReadableMap> descriptions = new ArrayList<>();
+        for (ReadableMap offer : offers) {
+            descriptions.add(offer.getMap("sdpInfo"));
+        }
+        awaitAll(pairs, (pair, promise) -> {
+            ReadableMap sdp = descriptions.get(pairs.indexOf(pair));
+            webRTCModule.peerConnectionSetLocalDescription(pair.offerer, copy(sdp), promise);
+        });
+        awaitAll(pairs, (pair, promise) -> {
+            ReadableMap sdp = descriptions.get(pairs.indexOf(pair));
+            webRTCModule.peerConnectionSetRemoteDescription(pair.answerer, copy(sdp), promise);
+        });
+        for (Pair pair : pairs) {
+            pair.answererReady = true;
+            flushCandidates(pair.answerer);
+        }
+
+        List<ReadableMap> answers = awaitAll(pairs, (pair, promise) -> {
+            webRTCModule.peerConnectionCreateAnswer(pair.answerer, Arguments.createMap(), promise);
+        });
+
+        descriptions.clear();
+        for (ReadableMap answer : answers) {
+            descriptions.add(answer.getMap("sdpInfo"));
+        }
+        awaitAll(pairs, (pair, promise) -> {
+            ReadableMap sdp = descriptions.get(pairs.indexOf(pair));
+            webRTCModule.peerConnectionSetLocalDescription(pair.answerer, copy(sdp), promise);
+        });
+        awaitAll(pairs, (pair, promise) -> {
+            ReadableMap sdp = descriptions.get(pairs.indexOf(pair));
+            webRTCModule.peerConnectionSetRemoteDescription(pair.offerer, copy(sdp), promise);
+        });
+        for (Pair pair : pairs) {
+            pair.offererReady = true;
+            flushCandidates(pair.offerer);
+        }
+    }
+
+    private interface Step {
+        void start(Pair pair, Promise promise);
+    }
+
+    /**
+     * Starts a step on all the pairs and waits for all of them to complete.
+     */
+    private List<ReadableMap> awaitAll(List<Pair> pairs, Step step) throws Exception {
+        int size = pairs.size();
+        CountDownLatch done = new CountDownLatch(size);
+        Object[] results = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            step.start(pairs.get(i), new PromiseImpl(args -> {
+                results[index] = args.length > 0 ? args[0] : null;
+                done.countDown();
+            }, args -> {
+                results[index] = new IllegalStateException(String.valueOf(args.length > 0 ? args[0] : null));
+                done.countDown();
+            }));
+        }
+
+        if (!done.await(STEP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Timed out negotiating");
+        }
+
+        List<ReadableMap> maps = new ArrayList<>(size);
+        for (Object result : results) {
+            if (result instanceof Exception) {
+                throw (Exception) result;
+            }
+            maps.add(result instanceof ReadableMap ? (ReadableMap) result : null);
+        }
+        return maps;
+    }
+
+    private void pollStats() {
+        for (Pair pair : pairs) {
+            for (int id : new int[] {pair.offerer, pair.answerer}) {
+                long start = System.nanoTime();
+                webRTCModule.peerConnectionGetStats(id,
+                        new PromiseImpl(args -> statsLatency.recordNanos(System.nanoTime() - start), null));
+            }
+        }
+    }
+
+    /**
+     * Stands in for the bridge: converts the event the way it is sent to JS
+     * and reacts to it like JS would.
+     */
+    private void onEvent(String eventName, @Nullable Object params) {
+        if (CompactEvents.HANDLE_EVENT.equals(eventName)) {
+            return;
+        }
+
+        int pcId = getPeerConnectionId(params);
+        if (pcId < FIRST_ID) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (params instanceof ReadableMap) {
+            ((ReadableMap) params).toHashMap();
+        } else if (params instanceof ReadableArray) {
+            ((ReadableArray) params).toArrayList();
+        }
+        eventConversionNanos.addAndGet(System.nanoTime() - start);
+
+        AtomicLong count = eventCounts.get(eventName);
+        if (count == null) {
+            count = new AtomicLong();
+            AtomicLong existing = eventCounts.putIfAbsent(eventName, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+
+        switch (eventName) {
+            case "peerConnectionGotICECandidate":
+                onIceCandidate(pcId, params);
+                break;
+            case "dataChannelStateChanged":
+                ReadableMap map = (ReadableMap) params;
+                if ("open".equals(map.getString("state"))) {
+                    Pair pair = getPair(pcId);
+                    if (pair != null && pcId == pair.offerer) {
+                        pair.channelOpen.countDown();
+                    }
+                }
+                break;
+            case "dataChannelReceiveMessage":
+                messagesReceived.incrementAndGet();
+                break;
+        }
+    }
+
+    private void onIceCandidate(int pcId, Object params) {
+        WritableMap candidate = Arguments.createMap();
+        if (params instanceof ReadableMap) {
+            candidate.merge(((ReadableMap) params).getMap("candidate"));
+        } else {
+            // See the CompactEvents schema.
+            ReadableArray array = (ReadableArray) params;
+            candidate.putInt("sdpMLineIndex", array.getInt(1));
+            candidate.putString("sdpMid", array.getString(2));
+            candidate.putString("candidate", array.getString(3));
+        }
+
+        // Candidates go to the other PeerConnection of the pair.
+        Pair pair = getPair(pcId);
+        if (pair == null) {
+            return;
+        }
+        int destination = pcId == pair.offerer ? pair.answerer : pair.offerer;
+        boolean ready = destination == pair.offerer ? pair.offererReady : pair.answererReady;
+
+        if (!ready) {
+            List<ReadableMap> pending = pendingCandidates.computeIfAbsent(destination, k -> new ArrayList<>());
+            synchronized (pending) {
+                pending.add(candidate);
+            }
+            // The destination may have become ready in the meantime.
+            if (destination == pair.offerer ? pair.offererReady : pair.answererReady) {
+                flushCandidates(destination);
+            }
+            return;
+        }
+
+        webRTCModule.peerConnectionAddICECandidate(destination, candidate, new PromiseImpl(null, null));
+    }
+
+    @Nullable
+    private Pair getPair(int pcId) {
+        int index = (pcId - FIRST_ID) / 2;
+        return index < pairs.size() ? pairs.get(index) : null;
+    }
+
+    private void flushCandidates(int id) {
+        List<ReadableMap> pending = pendingCandidates.get(id);
+        if (pending == null) {
+            return;
+        }
+
+        synchronized (pending) {
+            for (ReadableMap candidate : pending) {
+                webRTCModule.peerConnectionAddICECandidate(id, candidate, new PromiseImpl(null, null));
+            }
+            pending.clear();
+        }
+    }
+
+    private void tearDown() {
+        for (int id : created) {
+            webRTCModule.peerConnectionClose(id);
+            webRTCModule.peerConnectionDispose(id);
+        }
+        created.clear();
+        pendingCandidates.clear();
+    }
+
+    private static int getPeerConnectionId(Object params) {
+        if (params instanceof ReadableMap) {
+            ReadableMap map = (ReadableMap) params;
+            for (String key : new String[] {"pcId", "peerConnectionId"}) {
+                if (map.hasKey(key) && map.getType(key) == ReadableType.Number) {
+                    return map.getInt(key);
+                }
+            }
+        } else if (params instanceof ReadableArray) {
+            // Compact events start with the PeerConnection id.
+            ReadableArray array = (ReadableArray) params;
+            if (array.size() > 0 && array.getType(0) == ReadableType.Number) {
+                return array.getInt(0);
+            }
+        }
+
+        return -1;
+    }
+
+    private static WritableMap copy(ReadableMap map) {
+        WritableMap copy = Arguments.createMap();
+        copy.merge(map);
+        return copy;
+    }
+
+    private static long getRuntimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        try {
+            return value != null ? Long.parseLong(value) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int getInt(@Nullable ReadableMap options, String key, int defaultValue) {
+        if (options != null && options.hasKey(key) && options.getType(key) == ReadableType.Number) {
+            return options.getInt(key);
+        }
+
+        return defaultValue;
+    }
+}
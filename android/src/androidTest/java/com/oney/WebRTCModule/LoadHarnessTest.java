@@ -0,0 +1,101 @@
+package com.oney.WebRTCModule;
+
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.soloader.SoLoader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the {@link LoadHarness} with its default workload and checks the
+ * results against thresholds. Meant to be run on its own, on an emulator or a
+ * device:
+ *
+ * <pre>./gradlew connectedAndroidTest</pre>
+ *
+ * The thresholds leave room for slow emulators, they are meant to catch
+ * regressions which make the executor, the events or the allocations an
+ * order of magnitude worse, not small variations.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LoadHarnessTest {
+    private static final String TAG = WebRTCModule.TAG;
+
+    /**
+     * The operations of the steady state. The executor metrics are
+     * cumulative, so the ones of the setup would include its bursts.
+     */
+    private static final String[] STEADY_STATE_OPERATIONS = {"dataChannelSend", "peerConnectionGetStats"};
+
+    /**
+     * Maximum p99 time a steady state task waits in the executor queue, and
+     * runs.
+     */
+    private static final double MAX_EXECUTOR_WAIT_P99_MS = 250;
+    private static final double MAX_EXECUTOR_RUN_P99_MS = 100;
+
+    private static final double MAX_STATS_P99_MS = 500;
+
+    private static final double MAX_CONVERSION_NS_PER_EVENT = 200000;
+
+    private static final double MAX_ALLOCATED_BYTES_PER_EVENT = 64 * 1024;
+
+    /**
+     * Minimum fraction of the DataChannel messages received by the end of the
+     * run. The last ones may still be in flight.
+     */
+    private static final double MIN_RECEIVED_FRACTION = 0.9;
+
+    @Test
+    public void runDefaultWorkload() throws Exception {
+        ReactApplicationContext reactContext =
+                new ReactApplicationContext(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        SoLoader.init(reactContext, false);
+
+        WritableMap results = new LoadHarness(reactContext, Arguments.createMap()).run();
+
+        Log.i(TAG, "Load test results: " + results);
+
+        ReadableMap operations = results.getMap("executor").getMap("operations");
+        for (String name : STEADY_STATE_OPERATIONS) {
+            assertTrue("No " + name + " operation ran", operations.hasKey(name));
+            ReadableMap operation = operations.getMap(name);
+            assertAtMost(name + " wait p99", operation.getMap("wait").getDouble("p99Ms"), MAX_EXECUTOR_WAIT_P99_MS);
+            assertAtMost(name + " run p99", operation.getMap("run").getDouble("p99Ms"), MAX_EXECUTOR_RUN_P99_MS);
+        }
+
+        assertAtMost("stats p99", results.getMap("statsLatency").getDouble("p99Ms"), MAX_STATS_P99_MS);
+
+        ReadableMap events = results.getMap("events");
+        double totalEvents = events.getDouble("total");
+        assertTrue("No events were sent", totalEvents > 0);
+        assertAtMost("event conversion", events.getDouble("conversionNsPerEvent"), MAX_CONVERSION_NS_PER_EVENT);
+
+        ReadableMap messages = results.getMap("messages");
+        double sent = messages.getDouble("sent");
+        double received = messages.getDouble("received");
+        assertTrue("Only " + received + " of " + sent + " messages were received",
+                received >= sent * MIN_RECEIVED_FRACTION);
+
+        // Not available on every runtime.
+        if (results.hasKey("allocatedBytes")) {
+            assertAtMost("allocated bytes per event",
+                    results.getDouble("allocatedBytes") / totalEvents,
+                    MAX_ALLOCATED_BYTES_PER_EVENT);
+        }
+    }
+
+    private static void assertAtMost(String what, double value, double max) {
+        assertTrue(what + " is " + value + ", more than " + max, value <= max);
+    }
+}
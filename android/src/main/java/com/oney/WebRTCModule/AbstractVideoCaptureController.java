@@ -7,6 +7,7 @@ import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 
+import org.webrtc.CapturerObserver;
 import org.webrtc.VideoCapturer;
 
 public abstract class AbstractVideoCaptureController {
@@ -70,6 +71,14 @@ public abstract class AbstractVideoCaptureController {
         return settings;
     }
 
+    /**
+     * Gives the controller a chance to process the captured frames before they
+     * reach the video source.
+     */
+    public CapturerObserver createCapturerObserver(CapturerObserver sourceObserver) {
+        return sourceObserver;
+    }
+
     public VideoCapturer getVideoCapturer() {
         return videoCapturer;
     }
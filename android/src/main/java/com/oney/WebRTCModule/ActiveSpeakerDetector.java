@@ -0,0 +1,273 @@
+package com.oney.WebRTCModule;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ranks the remote audio tracks of all PeerConnections by how loud they are.
+ * The engine periodically samples the <tt>inbound-rtp</tt> audio energy of
+ * every PeerConnection natively, so nothing is serialized and sent to JS on
+ * every round. It keeps an exponentially smoothed level for every track and
+ * emits an <tt>activeSpeakersChanged</tt> event only when the top-N ranking or
+ * the dominant speaker change.
+ */
+class ActiveSpeakerDetector {
+    private static final String TAG = ActiveSpeakerDetector.class.getSimpleName();
+
+    static final int DEFAULT_INTERVAL_MS = 300;
+    private static final int MIN_INTERVAL_MS = 50;
+    static final int DEFAULT_TOP_N = 3;
+    static final double DEFAULT_SMOOTHING = 0.3;
+
+    /**
+     * Smoothed audio level (0..1) below which a track is considered silent and
+     * is left out of the ranking.
+     */
+    static final double DEFAULT_MIN_LEVEL = 0.005;
+
+    /**
+     * How much louder than the current dominant speaker another speaker has
+     * to be to take over, so the dominant speaker doesn't flap between two
+     * tracks of similar loudness.
+     */
+    private static final double DOMINANT_SWITCH_RATIO = 1.3;
+
+    private final WebRTCModule webRTCModule;
+    private final Map<String, SpeakerState> speakers = new HashMap<>();
+
+    /**
+     * Whether a round is queued on the executor, in which case the timer
+     * skips its tick rather than queueing another one behind it.
+     */
+    private final AtomicBoolean samplePending = new AtomicBoolean();
+
+    private Timer timer;
+    private int topN = DEFAULT_TOP_N;
+    private double smoothing = DEFAULT_SMOOTHING;
+    private double minLevel = DEFAULT_MIN_LEVEL;
+    private long round;
+
+    private List<String> lastRanking = Collections.emptyList();
+    private SpeakerState dominant;
+
+    ActiveSpeakerDetector(WebRTCModule webRTCModule) {
+        this.webRTCModule = webRTCModule;
+    }
+
+    synchronized void start(int intervalMs, int topN, double smoothing, double minLevel) {
+        stop();
+
+        this.topN = Math.max(1, topN);
+        this.smoothing = Math.max(0.01, Math.min(1, smoothing));
+        this.minLevel = Math.max(0, minLevel);
+
+        long periodMs = Math.max(MIN_INTERVAL_MS, intervalMs);
+        timer = new Timer("ActiveSpeakerTimer", /* isDaemon */ true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (!samplePending.compareAndSet(false, true)) {
+                    return;
+                }
+                ThreadUtils.runOnExecutor("activeSpeakerSample", () -> {
+                    samplePending.set(false);
+                    sample();
+                });
+            }
+        }, periodMs, periodMs);
+    }
+
+    synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+
+        speakers.clear();
+        lastRanking = Collections.emptyList();
+        dominant = null;
+    }
+
+    /**
+     * Publishes the ranking computed from the previous round of stats and
+     * requests a new one. Must be called in the executor.
+     */
+    private void sample() {
+        long currentRound;
+        synchronized (this) {
+            if (timer == null) {
+                return;
+            }
+            updateRanking();
+            currentRound = ++round;
+        }
+
+        for (PeerConnectionObserver pco : webRTCModule.getPeerConnectionObservers()) {
+            PeerConnection peerConnection = pco.getPeerConnection();
+            if (peerConnection == null) {
+                continue;
+            }
+
+            int pcId = pco.getId();
+            try {
+                peerConnection.getStats(report -> onStats(pcId, currentRound, report));
+            } catch (IllegalStateException e) {
+                // The PeerConnection has been disposed in the meantime.
+                Log.d(TAG, "Skipping disposed PeerConnection " + pcId);
+            }
+        }
+    }
+
+    private synchronized void onStats(int pcId, long statsRound, RTCStatsReport report) {
+        if (timer == null) {
+            return;
+        }
+
+        for (RTCStats stats : report.getStatsMap().values()) {
+            if (!"inbound-rtp".equals(stats.getType())) {
+                continue;
+            }
+
+            Map<String, Object> members = stats.getMembers();
+            if (!"audio".equals(members.get("kind"))) {
+                continue;
+            }
+
+            Object trackId = members.get("trackIdentifier");
+            Object energy = members.get("totalAudioEnergy");
+            Object duration = members.get("totalSamplesDuration");
+            if (!(trackId instanceof String) || !(energy instanceof Number) || !(duration instanceof Number)) {
+                continue;
+            }
+
+            SpeakerState state = speakers.get(SpeakerState.key(pcId, (String) trackId));
+            if (state == null) {
+                state = new SpeakerState(pcId, (String) trackId);
+                speakers.put(state.key, state);
+            }
+            state.update(((Number) energy).doubleValue(), ((Number) duration).doubleValue(), smoothing);
+            state.lastSeenRound = statsRound;
+        }
+    }
+
+    private void updateRanking() {
+        // Forget about tracks which didn't show up in the last rounds, their
+        // PeerConnection or receiver is gone. Allow for a round of slack since
+        // the stats of the latest one may not have been delivered yet.
+        Iterator<SpeakerState> it = speakers.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().lastSeenRound < round - 1) {
+                it.remove();
+            }
+        }
+
+        List<SpeakerState> ranked = new ArrayList<>();
+        for (SpeakerState state : speakers.values()) {
+            if (state.level >= minLevel) {
+                ranked.add(state);
+            }
+        }
+        Collections.sort(ranked, (a, b) -> Double.compare(b.level, a.level));
+        if (ranked.size() > topN) {
+            ranked = ranked.subList(0, topN);
+        }
+
+        SpeakerState newDominant = dominant;
+        if (dominant != null && !speakers.containsValue(dominant)) {
+            newDominant = null;
+        }
+        if (!ranked.isEmpty()) {
+            SpeakerState loudest = ranked.get(0);
+            if (newDominant == null || newDominant.level < minLevel
+                    || loudest.level > newDominant.level * DOMINANT_SWITCH_RATIO) {
+                newDominant = loudest;
+            }
+        }
+
+        List<String> ranking = new ArrayList<>(ranked.size());
+        for (SpeakerState state : ranked) {
+            ranking.add(state.key);
+        }
+
+        if (ranking.equals(lastRanking) && newDominant == dominant) {
+            return;
+        }
+
+        lastRanking = ranking;
+        dominant = newDominant;
+
+        WritableArray speakersArray = Arguments.createArray();
+        for (SpeakerState state : ranked) {
+            speakersArray.pushMap(state.toWritableMap());
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putArray("speakers", speakersArray);
+        if (dominant != null) {
+            params.putMap("dominantSpeaker", dominant.toWritableMap());
+        }
+
+        webRTCModule.sendEvent("activeSpeakersChanged", params);
+    }
+
+    private static class SpeakerState {
+        final int pcId;
+        final String trackId;
+        final String key;
+
+        double lastEnergy = -1;
+        double lastDuration;
+        double level;
+        long lastSeenRound;
+
+        SpeakerState(int pcId, String trackId) {
+            this.pcId = pcId;
+            this.trackId = trackId;
+            this.key = key(pcId, trackId);
+        }
+
+        static String key(int pcId, String trackId) {
+            return pcId + "/" + trackId;
+        }
+
+        void update(double energy, double duration, double smoothing) {
+            if (lastEnergy >= 0 && duration > lastDuration) {
+                // totalAudioEnergy accumulates the square of the level over
+                // totalSamplesDuration, so this is the RMS level of the interval.
+                double instant = Math.sqrt(Math.max(0, energy - lastEnergy) / (duration - lastDuration));
+                level = smoothing * instant + (1 - smoothing) * level;
+            } else if (lastEnergy >= 0) {
+                // No samples in this interval, the track is not playing.
+                level = (1 - smoothing) * level;
+            }
+
+            lastEnergy = energy;
+            lastDuration = duration;
+        }
+
+        WritableMap toWritableMap() {
+            WritableMap map = Arguments.createMap();
+            map.putInt("pcId", pcId);
+            map.putString("trackId", trackId);
+            map.putDouble("audioLevel", level);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.oney.WebRTCModule;
+
+import android.media.AudioAttributes;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+/**
+ * Settings of the audio device module the module creates when no
+ * {@link WebRTCModuleOptions#audioDeviceModule} is provided. Set an instance
+ * on {@link WebRTCModuleOptions#audioDeviceConfig}; the defaults are those of
+ * {@link JavaAudioDeviceModule}.
+ */
+public class AudioDeviceConfig {
+    private static final String TAG = AudioDeviceConfig.class.getSimpleName();
+
+    /**
+     * Uses the low latency performance mode for playout, with the buffer size
+     * adapted to the underruns. Requires API level 26.
+     */
+    public boolean useLowLatency;
+
+    /**
+     * Whether to use the platform echo canceler and noise suppressor, where
+     * available, instead of the WebRTC ones.
+     */
+    public boolean useHardwareAcousticEchoCanceler = true;
+    public boolean useHardwareNoiseSuppressor = true;
+
+    /**
+     * Recording and playout sample rates, 0 for the native rate of the device.
+     */
+    public int inputSampleRate;
+    public int outputSampleRate;
+
+    public boolean useStereoInput;
+    public boolean useStereoOutput;
+
+    /**
+     * One of the {@link MediaRecorder.AudioSource} constants.
+     */
+    public int audioSource = MediaRecorder.AudioSource.VOICE_COMMUNICATION;
+
+    /**
+     * Attributes of the playout, {@code null} for voice communication.
+     */
+    @Nullable
+    public AudioAttributes audioAttributes;
+
+    /**
+     * Feeds the recorded audio to the {@link AudioDeviceMonitor}, to count
+     * the recording glitches and allow measuring the round-trip latency. This
+     * makes the ADM copy every recorded buffer, so it is off by default.
+     */
+    public boolean enableLatencyMonitor;
+
+    /**
+     * Applies the settings which differ from the defaults to the builder.
+     */
+    JavaAudioDeviceModule.Builder apply(JavaAudioDeviceModule.Builder builder) {
+        if (useLowLatency) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setUseLowLatency(true);
+            } else {
+                Log.w(TAG, "Low latency audio requires API level 26");
+            }
+        }
+        if (!useHardwareAcousticEchoCanceler) {
+            builder.setUseHardwareAcousticEchoCanceler(false);
+        }
+        if (!useHardwareNoiseSuppressor) {
+            builder.setUseHardwareNoiseSuppressor(false);
+        }
+        if (inputSampleRate > 0) {
+            builder.setInputSampleRate(inputSampleRate);
+        }
+        if (outputSampleRate > 0) {
+            builder.setOutputSampleRate(outputSampleRate);
+        }
+        if (useStereoInput) {
+            builder.setUseStereoInput(true);
+        }
+        if (useStereoOutput) {
+            builder.setUseStereoOutput(true);
+        }
+        if (audioSource != MediaRecorder.AudioSource.VOICE_COMMUNICATION) {
+            builder.setAudioSource(audioSource);
+        }
+        if (audioAttributes != null) {
+            builder.setAudioAttributes(audioAttributes);
+        }
+
+        return builder;
+    }
+
+    WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putBoolean("useLowLatency", useLowLatency);
+        map.putBoolean("useHardwareAcousticEchoCanceler", useHardwareAcousticEchoCanceler);
+        map.putBoolean("useHardwareNoiseSuppressor", useHardwareNoiseSuppressor);
+        map.putInt("inputSampleRate", inputSampleRate);
+        map.putInt("outputSampleRate", outputSampleRate);
+        map.putBoolean("useStereoInput", useStereoInput);
+        map.putBoolean("useStereoOutput", useStereoOutput);
+        map.putInt("audioSource", audioSource);
+        map.putBoolean("enableLatencyMonitor", enableLatencyMonitor);
+        return map;
+    }
+}
@@ -0,0 +1,434 @@
+package com.oney.WebRTCModule;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.lang.reflect.Field;
+
+/**
+ * Counters of the audio device module the module creates: starts, errors,
+ * playout underruns and recording glitches, and a round-trip latency probe, so
+ * the {@link AudioDeviceConfig} settings can be compared in the field.
+ *
+ * The recording glitches and the latency probe need the recorded audio, see
+ * {@link AudioDeviceConfig#enableLatencyMonitor}. The playout underruns and
+ * the latency are best-effort, see {@link #getPlayoutUnderruns()} and
+ * {@link #measureRoundTripLatency(LatencyCallback)}.
+ */
+class AudioDeviceMonitor
+        implements JavaAudioDeviceModule.SamplesReadyCallback, JavaAudioDeviceModule.AudioRecordStateCallback,
+                   JavaAudioDeviceModule.AudioTrackStateCallback, JavaAudioDeviceModule.AudioRecordErrorCallback,
+                   JavaAudioDeviceModule.AudioTrackErrorCallback {
+    private static final String TAG = AudioDeviceMonitor.class.getSimpleName();
+
+    interface LatencyCallback {
+        /**
+         * Called on the probe thread with the round-trip latency in
+         * milliseconds, or with the reason it could not be measured.
+         */
+        void onResult(double latencyMs, @Nullable String error);
+    }
+
+    private static final int PROBE_TONE_MS = 5;
+    private static final int PROBE_TONE_HZ = 1000;
+    private static final long PROBE_TIMEOUT_MS = 1000;
+
+    /**
+     * How much louder than the background the probe has to be to be detected.
+     */
+    private static final int PROBE_MARGIN = 8;
+    private static final int PROBE_MIN_THRESHOLD = 3000;
+
+    private final Context context;
+    private final AudioDeviceConfig config;
+    @Nullable
+    private final JavaAudioDeviceModule.SamplesReadyCallback delegate;
+
+    @Nullable
+    private JavaAudioDeviceModule audioDeviceModule;
+    @Nullable
+    private Field audioOutputField;
+    @Nullable
+    private Field audioTrackField;
+    private boolean underrunsUnavailable;
+
+    private volatile boolean recording;
+    private volatile boolean playing;
+    private volatile int recordStarts;
+    private volatile int playoutStarts;
+    private volatile int recordGlitches;
+    private volatile int errors;
+    @Nullable
+    private volatile String lastError;
+    private int pastUnderruns;
+    private volatile double lastRoundTripMs = -1;
+
+    // State only touched on the audio recording thread.
+    private long lastSamplesNs;
+    private int backgroundPeak;
+
+    // The armed probe, if any.
+    private final Object probeLock = new Object();
+    private long probeStartNs;
+    private long probeDetectedNs;
+
+    AudioDeviceMonitor(
+            Context context, AudioDeviceConfig config, @Nullable JavaAudioDeviceModule.SamplesReadyCallback delegate) {
+        this.context = context;
+        this.config = config;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets the audio device module whose playout underruns are counted.
+     */
+    void setAudioDeviceModule(JavaAudioDeviceModule audioDeviceModule) {
+        this.audioDeviceModule = audioDeviceModule;
+    }
+
+    /**
+     * Returns the settings and the counters since the module was created.
+     */
+    WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putMap("config", config.toWritableMap());
+        stats.putBoolean("recording", recording);
+        stats.putBoolean("playing", playing);
+        stats.putInt("recordStarts", recordStarts);
+        stats.putInt("playoutStarts", playoutStarts);
+        stats.putInt("recordGlitches", config.enableLatencyMonitor ? recordGlitches : -1);
+        stats.putInt("playoutUnderruns", getPlayoutUnderruns());
+        stats.putInt("errors", errors);
+        if (lastError != null) {
+            stats.putString("lastError", lastError);
+        }
+        stats.putDouble("roundTripLatencyMs", lastRoundTripMs);
+        return stats;
+    }
+
+    /**
+     * Measures the round-trip latency: a short tone is played with the same
+     * attributes and performance mode as the playout, and the time until it
+     * shows up in the recorded audio is measured. Recording has to be active
+     * and the device should not be muted nor routed to a headset. The result
+     * is reported on a separate thread.
+     *
+     * This is an approximation of the latency of the ADM. The JavaAudioDeviceModule
+     * has no way to inject audio in its playout, so the tone is played by a
+     * separate AudioTrack, whose buffering differs from the ADM one, and it is
+     * mixed by the platform rather than going through the ADM playout path.
+     * The tone may also be attenuated by the echo canceller, in which case it
+     * is not detected and the measurement fails.
+     */
+    void measureRoundTripLatency(LatencyCallback callback) {
+        if (!config.enableLatencyMonitor) {
+            callback.onResult(-1, "AudioDeviceConfig.enableLatencyMonitor is not set");
+            return;
+        }
+        if (!recording) {
+            callback.onResult(-1, "Audio is not being recorded");
+            return;
+        }
+
+        new Thread(() -> {
+            synchronized (probeLock) {
+                if (probeStartNs != 0) {
+                    callback.onResult(-1, "A measurement is already in progress");
+                    return;
+                }
+                probeStartNs = -1;
+            }
+
+            try {
+                probe(callback);
+            } finally {
+                synchronized (probeLock) {
+                    probeStartNs = 0;
+                    probeDetectedNs = 0;
+                }
+            }
+        }, "AudioLatencyProbe").start();
+    }
+
+    private void probe(LatencyCallback callback) {
+        int sampleRate = getOutputSampleRate();
+        short[] tone = new short[sampleRate * PROBE_TONE_MS / 1000];
+        for (int i = 0; i < tone.length; i++) {
+            tone[i] = (short) (Math.sin(2 * Math.PI * PROBE_TONE_HZ * i / sampleRate) * Short.MAX_VALUE * 0.7);
+        }
+
+        AudioTrack audioTrack;
+        try {
+            audioTrack = createProbeTrack(sampleRate, tone.length);
+        } catch (RuntimeException e) {
+            callback.onResult(-1, "Failed to create the probe track: " + e.getMessage());
+            return;
+        }
+
+        try {
+            long startNs;
+            audioTrack.write(tone, 0, tone.length);
+            synchronized (probeLock) {
+                startNs = System.nanoTime();
+                probeStartNs = startNs;
+            }
+            audioTrack.play();
+
+            long detectedNs;
+            synchronized (probeLock) {
+                long deadline = startNs + PROBE_TIMEOUT_MS * 1000000;
+                while (probeDetectedNs == 0 && System.nanoTime() < deadline) {
+                    probeLock.wait(Math.max(1, (deadline - System.nanoTime()) / 1000000));
+                }
+                detectedNs = probeDetectedNs;
+            }
+
+            if (detectedNs == 0) {
+                callback.onResult(-1, "The probe was not detected in the recorded audio");
+                return;
+            }
+
+            double latencyMs = (detectedNs - startNs) / 1e6;
+            lastRoundTripMs = latencyMs;
+            Log.d(TAG, "Round-trip latency: " + latencyMs + "ms");
+            callback.onResult(latencyMs, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callback.onResult(-1, "Interrupted");
+        } finally {
+            audioTrack.release();
+        }
+    }
+
+    private AudioTrack createProbeTrack(int sampleRate, int frames) {
+        AudioAttributes attributes = config.audioAttributes;
+        if (attributes == null) {
+            attributes = new AudioAttributes.Builder()
+                                 .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
+                                 .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                                 .build();
+        }
+
+        AudioTrack.Builder builder = new AudioTrack.Builder()
+                                             .setAudioAttributes(attributes)
+                                             .setAudioFormat(new AudioFormat.Builder()
+                                                                     .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                                                                     .setSampleRate(sampleRate)
+                                                                     .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                                                                     .build())
+                                             .setTransferMode(AudioTrack.MODE_STREAM)
+                                             .setBufferSizeInBytes(Math.max(frames * 2,
+                                                     AudioTrack.getMinBufferSize(sampleRate,
+                                                             AudioFormat.CHANNEL_OUT_MONO,
+                                                             AudioFormat.ENCODING_PCM_16BIT)));
+        if (config.useLowLatency && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+        }
+
+        return builder.build();
+    }
+
+    private int getOutputSampleRate() {
+        if (config.outputSampleRate > 0) {
+            return config.outputSampleRate;
+        }
+
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager != null) {
+            String rate = audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE);
+            if (rate != null) {
+                try {
+                    return Integer.parseInt(rate);
+                } catch (NumberFormatException e) {
+                    // Fall back to the default.
+                }
+            }
+        }
+
+        return 48000;
+    }
+
+    /**
+     * The playout underruns of all the AudioTracks the ADM has used, or -1 if
+     * they can't be read. The ADM doesn't expose its AudioTrack, so it's
+     * looked up by reflection on the private JavaAudioDeviceModule.audioOutput
+     * and WebRtcAudioTrack.audioTrack fields. This is best-effort: the fields
+     * may be renamed or removed by a WebRTC update, and the underruns of a
+     * track released between two reads are only counted when its stop is
+     * reported.
+     */
+    private synchronized int getPlayoutUnderruns() {
+        AudioTrack audioTrack = getAudioTrack();
+        if (underrunsUnavailable) {
+            return -1;
+        }
+
+        return pastUnderruns + (audioTrack != null ? audioTrack.getUnderrunCount() : 0);
+    }
+
+    @Nullable
+    private synchronized AudioTrack getAudioTrack() {
+        if (underrunsUnavailable || audioDeviceModule == null) {
+            return null;
+        }
+
+        try {
+            if (audioOutputField == null) {
+                audioOutputField = JavaAudioDeviceModule.class.getDeclaredField("audioOutput");
+                audioOutputField.setAccessible(true);
+            }
+            Object audioOutput = audioOutputField.get(audioDeviceModule);
+            if (audioOutput == null) {
+                return null;
+            }
+            if (audioTrackField == null) {
+                audioTrackField = audioOutput.getClass().getDeclaredField("audioTrack");
+                audioTrackField.setAccessible(true);
+            }
+            return (AudioTrack) audioTrackField.get(audioOutput);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Log.w(TAG, "Playout underruns are not available", e);
+            underrunsUnavailable = true;
+            return null;
+        }
+    }
+
+    @Override
+    public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples samples) {
+        if (delegate != null) {
+            delegate.onWebRtcAudioRecordSamplesReady(samples);
+        }
+
+        long now = System.nanoTime();
+        byte[] data = samples.getData();
+        int channels = samples.getChannelCount();
+        int sampleRate = samples.getSampleRate();
+        if (samples.getAudioFormat() != AudioFormat.ENCODING_PCM_16BIT || channels <= 0 || sampleRate <= 0) {
+            return;
+        }
+
+        int frames = data.length / 2 / channels;
+        long durationNs = frames * 1000000000L / sampleRate;
+
+        // Buffers are delivered as they are recorded, one arriving much later
+        // than its duration means audio was lost.
+        if (lastSamplesNs != 0 && now - lastSamplesNs > 2 * durationNs + 5000000) {
+            recordGlitches++;
+        }
+        lastSamplesNs = now;
+
+        long startNs;
+        synchronized (probeLock) {
+            startNs = probeStartNs;
+        }
+
+        int threshold = Math.max(PROBE_MIN_THRESHOLD, backgroundPeak * PROBE_MARGIN);
+        int peak = 0;
+        int onset = -1;
+        for (int i = 0; i + 1 < data.length; i += 2) {
+            int magnitude = Math.abs((short) ((data[i + 1] << 8) | (data[i] & 0xff)));
+            if (magnitude > peak) {
+                peak = magnitude;
+            }
+            if (onset < 0 && magnitude > threshold) {
+                onset = i / 2 / channels;
+            }
+        }
+
+        if (startNs > 0 && onset >= 0) {
+            // The onset was recorded the remainder of the buffer before the
+            // buffer was delivered.
+            long detectedNs = now - (frames - onset) * 1000000000L / sampleRate;
+            synchronized (probeLock) {
+                if (probeStartNs > 0 && probeDetectedNs == 0) {
+                    probeDetectedNs = Math.max(detectedNs, probeStartNs);
+                    probeLock.notifyAll();
+                }
+            }
+        } else if (startNs == 0) {
+            // Track the background level while not probing, decaying slowly.
+            backgroundPeak = Math.max(peak, backgroundPeak - backgroundPeak / 16);
+        }
+    }
+
+    @Override
+    public void onWebRtcAudioRecordStart() {
+        recording = true;
+        recordStarts++;
+        lastSamplesNs = 0;
+    }
+
+    @Override
+    public void onWebRtcAudioRecordStop() {
+        recording = false;
+    }
+
+    @Override
+    public void onWebRtcAudioTrackStart() {
+        playing = true;
+        playoutStarts++;
+    }
+
+    @Override
+    public void onWebRtcAudioTrackStop() {
+        playing = false;
+
+        // The AudioTrack is released right after, keep its count.
+        synchronized (this) {
+            AudioTrack audioTrack = getAudioTrack();
+            if (audioTrack != null) {
+                pastUnderruns += audioTrack.getUnderrunCount();
+            }
+        }
+    }
+
+    @Override
+    public void onWebRtcAudioRecordInitError(String errorMessage) {
+        onError("Record init error: " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioRecordStartError(
+            JavaAudioDeviceModule.AudioRecordStartErrorCode errorCode, String errorMessage) {
+        onError("Record start error " + errorCode + ": " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioRecordError(String errorMessage) {
+        onError("Record error: " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioTrackInitError(String errorMessage) {
+        onError("Playout init error: " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioTrackStartError(
+            JavaAudioDeviceModule.AudioTrackStartErrorCode errorCode, String errorMessage) {
+        onError("Playout start error " + errorCode + ": " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioTrackError(String errorMessage) {
+        onError("Playout error: " + errorMessage);
+    }
+
+    private synchronized void onError(String error) {
+        Log.e(TAG, error);
+        errors++;
+        lastError = error;
+    }
+}
@@ -0,0 +1,474 @@
+package com.oney.WebRTCModule;
+
+import android.content.Context;
+import android.os.Process;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtcCertificatePem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Generates and keeps the certificates handed out by
+ * <tt>RTCPeerConnection.generateCertificate</tt>.
+ *
+ * Key generation (RSA in particular) can take over a second, so it happens on
+ * a low priority background thread instead of the shared executor. A spare
+ * ECDSA and RSA certificate is generated ahead of time, when the store
+ * starts, so that requests with the default expiry complete immediately.
+ *
+ * Both the spares and the issued certificates are persisted in the app's
+ * private storage, encrypted with a key kept in the Android Keystore, so
+ * certificate ids remain valid across restarts. Nothing is persisted if the
+ * Keystore can't be used. The issued certificates are bounded and evicted in
+ * LRU order and on expiry.
+ */
+class CertificateStore {
+    private static final String TAG = CertificateStore.class.getSimpleName();
+
+    private static final String FILE_NAME = "webrtc-certificates.bin";
+    /**
+     * The file older versions stored the certificates in, unencrypted.
+     */
+    private static final String LEGACY_FILE_NAME = "webrtc-certificates.json";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "WebRTCModuleCertificateStore";
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_BITS = 128;
+
+    static final long DEFAULT_EXPIRES_SECONDS = 2592000L; // 30 days
+
+    /**
+     * How far off a spare certificate's remaining lifetime can be from the
+     * requested one and still be used.
+     */
+    private static final long EXPIRES_TOLERANCE_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Maximum number of issued certificates kept, least recently used ones
+     * are evicted first.
+     */
+    private static final int MAX_ISSUED = 64;
+
+    interface Callback {
+        void onCertificate(String id, RtcCertificatePem certificate, long expiresAtMs);
+
+        void onError(Exception e);
+    }
+
+    private static class Entry {
+        final PeerConnection.KeyType keyType;
+        final RtcCertificatePem certificate;
+        final long expiresAtMs;
+
+        Entry(PeerConnection.KeyType keyType, RtcCertificatePem certificate, long expiresAtMs) {
+            this.keyType = keyType;
+            this.certificate = certificate;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAtMs <= now;
+        }
+    }
+
+    private final File file;
+    private final ExecutorService executor;
+
+    private final Map<PeerConnection.KeyType, Deque<Entry>> spares = new EnumMap<>(PeerConnection.KeyType.class);
+    private final LinkedHashMap<String, Entry> issued = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ISSUED;
+        }
+    };
+
+    private volatile boolean loaded;
+
+    CertificateStore(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "CertificateStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (PeerConnection.KeyType keyType : PeerConnection.KeyType.values()) {
+            spares.put(keyType, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Loads the persisted certificates and makes sure there is a spare
+     * certificate of each key type.
+     */
+    void start() {
+        execute(() -> {
+            load();
+            loaded = true;
+            for (PeerConnection.KeyType keyType : PeerConnection.KeyType.values()) {
+                refill(keyType);
+            }
+        });
+    }
+
+    /**
+     * Stops the background thread. Certificates being generated are
+     * abandoned and nothing is persisted afterwards.
+     */
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Whether the persisted certificates have been loaded. Until then only
+     * the certificates issued since the store started are known.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gets an issued certificate. Can be called on any thread, it never waits
+     * for the disk or the Keystore, see {@link #isLoaded()}.
+     */
+    @Nullable
+    synchronized RtcCertificatePem get(String id) {
+        Entry entry = issued.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            issued.remove(id);
+            return null;
+        }
+
+        return entry.certificate;
+    }
+
+    /**
+     * Issues a certificate, taking a spare one if it matches the requested
+     * expiry or generating one otherwise. The callback is invoked on the
+     * background thread, unless a spare was available.
+     */
+    void generate(PeerConnection.KeyType keyType, long expiresSeconds, Callback callback) {
+        long now = System.currentTimeMillis();
+        long expiresAtMs = now + expiresSeconds * 1000;
+        Entry spare = takeSpare(keyType, expiresAtMs, now);
+
+        if (spare != null) {
+            callback.onCertificate(issue(spare), spare.certificate, spare.expiresAtMs);
+            execute(() -> refill(keyType));
+            return;
+        }
+
+        boolean submitted = execute(() -> {
+            Entry entry;
+            try {
+                RtcCertificatePem certificate = RtcCertificatePem.generateCertificate(keyType, expiresSeconds);
+                entry = new Entry(keyType, certificate, expiresAtMs);
+            } catch (Exception e) {
+                callback.onError(e);
+                return;
+            }
+
+            callback.onCertificate(issue(entry), entry.certificate, entry.expiresAtMs);
+            refill(keyType);
+        });
+        if (!submitted) {
+            callback.onError(new IllegalStateException("The certificate store is stopped"));
+        }
+    }
+
+    private boolean execute(Runnable runnable) {
+        try {
+            executor.execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private synchronized Entry takeSpare(PeerConnection.KeyType keyType, long expiresAtMs, long now) {
+        Iterator<Entry> it = spares.get(keyType).iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.isExpired(now)) {
+                it.remove();
+            } else if (Math.abs(entry.expiresAtMs - expiresAtMs) <= EXPIRES_TOLERANCE_MS) {
+                it.remove();
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    private String issue(Entry entry) {
+        String id = UUID.randomUUID().toString();
+        synchronized (this) {
+            issued.put(id, entry);
+        }
+        execute(this::save);
+
+        return id;
+    }
+
+    /**
+     * Generates a spare certificate with the default expiry, if there is none
+     * which is fresh enough. Must be called on the background thread.
+     */
+    private void refill(PeerConnection.KeyType keyType) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<Entry> it = spares.get(keyType).iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                // Retire spares which can no longer match a default request.
+                if (entry.expiresAtMs - now < DEFAULT_EXPIRES_SECONDS * 1000 - EXPIRES_TOLERANCE_MS) {
+                    it.remove();
+                }
+            }
+            if (!spares.get(keyType).isEmpty()) {
+                return;
+            }
+        }
+
+        try {
+            long start = System.nanoTime();
+            RtcCertificatePem certificate = RtcCertificatePem.generateCertificate(keyType, DEFAULT_EXPIRES_SECONDS);
+            Log.d(TAG,
+                    "Generated spare " + keyType + " certificate in " + (System.nanoTime() - start) / 1000000
+                            + "ms");
+
+            synchronized (this) {
+                spares.get(keyType).add(new Entry(keyType, certificate, now + DEFAULT_EXPIRES_SECONDS * 1000));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to generate a spare " + keyType + " certificate", e);
+            return;
+        }
+
+        save();
+    }
+
+    private void load() {
+        File legacyFile = new File(file.getParentFile(), LEGACY_FILE_NAME);
+        if (legacyFile.exists() && !legacyFile.delete()) {
+            Log.w(TAG, "Failed to delete " + legacyFile);
+        }
+
+        if (!file.exists()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+
+            JSONObject json = new JSONObject(new String(decrypt(data, read), StandardCharsets.UTF_8));
+            JSONArray spareArray = json.optJSONArray("spares");
+            JSONArray issuedArray = json.optJSONArray("issued");
+
+            synchronized (this) {
+                for (int i = 0; spareArray != null && i < spareArray.length(); i++) {
+                    Entry entry = entryFromJSON(spareArray.getJSONObject(i));
+                    if (!entry.isExpired(now)) {
+                        spares.get(entry.keyType).add(entry);
+                    }
+                }
+                // Stored in LRU order, least recently used first. Certificates
+                // issued while loading are more recent, so they are put last.
+                Map<String, Entry> issuedMeanwhile = new LinkedHashMap<>(issued);
+                issued.clear();
+                for (int i = 0; issuedArray != null && i < issuedArray.length(); i++) {
+                    JSONObject item = issuedArray.getJSONObject(i);
+                    Entry entry = entryFromJSON(item);
+                    if (!entry.isExpired(now)) {
+                        issued.put(item.getString("id"), entry);
+                    }
+                }
+                issued.putAll(issuedMeanwhile);
+            }
+        } catch (IOException | JSONException | GeneralSecurityException | RuntimeException e) {
+            // Also the case when the Keystore key is gone, e.g. after a
+            // backup was restored on another device.
+            Log.w(TAG, "Failed to load the persisted certificates, discarding them", e);
+            if (!file.delete()) {
+                Log.w(TAG, "Failed to delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Persists the certificates. Must be called on the background thread.
+     */
+    private void save() {
+        long now = System.currentTimeMillis();
+        JSONObject json = new JSONObject();
+
+        try {
+            synchronized (this) {
+                JSONArray spareArray = new JSONArray();
+                for (Deque<Entry> entries : spares.values()) {
+                    for (Entry entry : entries) {
+                        if (!entry.isExpired(now)) {
+                            spareArray.put(entryToJSON(entry));
+                        }
+                    }
+                }
+
+                JSONArray issuedArray = new JSONArray();
+                Iterator<Map.Entry<String, Entry>> it = issued.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Entry> item = it.next();
+                    if (item.getValue().isExpired(now)) {
+                        it.remove();
+                        continue;
+                    }
+                    issuedArray.put(entryToJSON(item.getValue()).put("id", item.getKey()));
+                }
+
+                json.put("spares", spareArray);
+                json.put("issued", issuedArray);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to serialize the certificates", e);
+            return;
+        }
+
+        byte[] data;
+        try {
+            data = encrypt(json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            // Never persist the private keys in the clear.
+            Log.w(TAG, "Failed to encrypt the certificates, not persisting them", e);
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Failed to delete " + file);
+            }
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist the certificates", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w(TAG, "Failed to persist the certificates");
+        }
+    }
+
+    /**
+     * Encrypts the given data with the Keystore key. The result is the length
+     * of the IV, the IV and the ciphertext.
+     */
+    private static byte[] encrypt(byte[] data) throws GeneralSecurityException, IOException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, getKey());
+        byte[] iv = cipher.getIV();
+        byte[] ciphertext = cipher.doFinal(data);
+
+        return ByteBuffer.allocate(1 + iv.length + ciphertext.length)
+                .put((byte) iv.length)
+                .put(iv)
+                .put(ciphertext)
+                .array();
+    }
+
+    private static byte[] decrypt(byte[] data, int length) throws GeneralSecurityException, IOException {
+        int ivLength = length > 0 ? data[0] : 0;
+        if (ivLength <= 0 || 1 + ivLength >= length) {
+            throw new GeneralSecurityException("Malformed certificates file");
+        }
+
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, getKey(), new GCMParameterSpec(GCM_TAG_BITS, data, 1, ivLength));
+        return cipher.doFinal(data, 1 + ivLength, length - 1 - ivLength);
+    }
+
+    /**
+     * Returns the Keystore key the certificates are encrypted with, creating
+     * it if needed. The key never leaves the Keystore.
+     */
+    private static SecretKey getKey() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+
+        Key key = keyStore.getKey(KEY_ALIAS, null);
+        if (key instanceof SecretKey) {
+            return (SecretKey) key;
+        }
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec
+                               .Builder(KEY_ALIAS, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                               .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                               .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                               .setKeySize(256)
+                               .build());
+        return generator.generateKey();
+    }
+
+    private static JSONObject entryToJSON(Entry entry) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("keyType", entry.keyType.name());
+        json.put("expiresAt", entry.expiresAtMs);
+        json.put("privateKey", entry.certificate.privateKey);
+        json.put("certificate", entry.certificate.certificate);
+        return json;
+    }
+
+    private static Entry entryFromJSON(JSONObject json) throws JSONException {
+        return new Entry(PeerConnection.KeyType.valueOf(json.getString("keyType")),
+                new RtcCertificatePem(json.getString("privateKey"), json.getString("certificate")),
+                json.getLong("expiresAt"));
+    }
+}
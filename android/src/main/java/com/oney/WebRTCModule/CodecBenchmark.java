@@ -0,0 +1,551 @@
+package com.oney.WebRTCModule;
+
+import android.content.Context;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.EncodedImage;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.RtpCapabilities;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoFrame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ranks the video encoders of the device by encoding a short synthetic clip
+ * through each of them, at a couple of resolutions, and measuring the frame
+ * rate they sustain and the CPU time they take.
+ *
+ * The results are persisted in the app's private storage and reused as long
+ * as the system build, the codecs the encoder factory offers and the video
+ * encoders of the device stay the same. The ranking
+ * prefers the codecs which encode the largest resolution in real time, the
+ * cheapest first, and is turned into an order for
+ * <tt>RTCRtpTransceiver.setCodecPreferences</tt>.
+ */
+class CodecBenchmark {
+    private static final String TAG = CodecBenchmark.class.getSimpleName();
+
+    private static final String FILE_NAME = "webrtc-codec-benchmark.json";
+
+    static final int DEFAULT_FRAMES = 90;
+
+    private static final int[][] RESOLUTIONS = {{640, 360, 800}, {1280, 720, 2000}};
+    private static final int FRAME_RATE = 30;
+
+    /**
+     * Distinct frames of the synthetic clip, which is looped.
+     */
+    private static final int CLIP_FRAMES = 30;
+
+    /**
+     * Frames which can be in an asynchronous encoder at once, more are not
+     * fed until some come out.
+     */
+    private static final int MAX_IN_FLIGHT = 3;
+    private static final long OUTPUT_TIMEOUT_MS = 300;
+
+    interface Callback {
+        void onResults(JSONObject results);
+
+        void onError(Exception e);
+    }
+
+    private final File file;
+    private final VideoEncoderFactory encoderFactory;
+
+    @Nullable
+    private JSONObject results;
+    private boolean loaded;
+    private boolean running;
+
+    @Nullable
+    private String encoderNames;
+
+    CodecBenchmark(Context context, VideoEncoderFactory encoderFactory) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.encoderFactory = encoderFactory;
+    }
+
+    /**
+     * Gets the persisted results, if any were obtained with the current
+     * configuration.
+     */
+    @Nullable
+    synchronized JSONObject getResults() {
+        if (!loaded) {
+            loaded = true;
+            results = load();
+        }
+
+        // The offered codecs can change, e.g. with the hardware allowlist.
+        if (results != null && !getConfiguration().equals(results.optString("configuration"))) {
+            return null;
+        }
+
+        return results;
+    }
+
+    /**
+     * Describes what the results depend on: the system build, the codecs the
+     * encoder factory offers and the names of the video encoder
+     * implementations of the device.
+     */
+    private synchronized String getConfiguration() {
+        StringBuilder configuration = new StringBuilder(Build.FINGERPRINT);
+        for (VideoCodecInfo codecInfo : encoderFactory.getSupportedCodecs()) {
+            configuration.append('|').append(codecInfo.name).append(new TreeMap<>(codecInfo.params));
+        }
+
+        if (encoderNames == null) {
+            StringBuilder names = new StringBuilder();
+            try {
+                for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                    if (!info.isEncoder()) {
+                        continue;
+                    }
+                    for (String type : info.getSupportedTypes()) {
+                        if (type.startsWith("video/")) {
+                            names.append('|').append(info.getName());
+                            break;
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to list the video encoders", e);
+            }
+            encoderNames = names.toString();
+        }
+        configuration.append(encoderNames);
+
+        return configuration.toString();
+    }
+
+    /**
+     * Runs the benchmark on a background thread, unless there are persisted
+     * results and it's not forced.
+     */
+    void run(boolean force, int frames, Callback callback) {
+        synchronized (this) {
+            JSONObject cached = getResults();
+            if (cached != null && !force) {
+                callback.onResults(cached);
+                return;
+            }
+            if (running) {
+                callback.onError(new IllegalStateException("The codec benchmark is already running"));
+                return;
+            }
+            running = true;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                JSONObject results = benchmark(Math.max(FRAME_RATE, frames));
+                synchronized (this) {
+                    this.results = results;
+                }
+                save(results);
+                callback.onResults(results);
+            } catch (Exception e) {
+                Log.w(TAG, "Codec benchmark failed", e);
+                callback.onError(e);
+            } finally {
+                synchronized (this) {
+                    running = false;
+                }
+            }
+        }, "CodecBenchmark");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private JSONObject benchmark(int frames) throws JSONException {
+        String configuration = getConfiguration();
+        List<JSONObject> codecs = new ArrayList<>();
+
+        for (VideoCodecInfo codecInfo : encoderFactory.getSupportedCodecs()) {
+            JSONObject codec = new JSONObject();
+            codec.put("name", codecInfo.name);
+            codec.put("params", new JSONObject(codecInfo.params));
+
+            JSONArray resolutions = new JSONArray();
+            for (int[] resolution : RESOLUTIONS) {
+                JSONObject result = encodeClip(codecInfo, resolution[0], resolution[1], resolution[2], frames);
+                if (result == null) {
+                    break;
+                }
+                codec.put("implementation", result.remove("implementation"));
+                codec.put("hardware", result.remove("hardware"));
+                resolutions.put(result);
+            }
+            if (resolutions.length() == 0) {
+                continue;
+            }
+            codec.put("resolutions", resolutions);
+            codecs.add(codec);
+        }
+
+        // Real time at the largest resolution first, the cheapest first.
+        // Then the fastest ones.
+        codecs.sort((a, b) -> {
+            JSONObject ra = largestResolution(a);
+            JSONObject rb = largestResolution(b);
+            boolean realTimeA = isRealTime(a);
+            boolean realTimeB = isRealTime(b);
+            if (realTimeA != realTimeB) {
+                return realTimeA ? -1 : 1;
+            }
+            if (realTimeA) {
+                return Double.compare(ra.optDouble("cpuMsPerFrame"), rb.optDouble("cpuMsPerFrame"));
+            }
+            return Double.compare(rb.optDouble("fps"), ra.optDouble("fps"));
+        });
+
+        JSONObject results = new JSONObject();
+        results.put("configuration", configuration);
+        results.put("timestamp", System.currentTimeMillis());
+        results.put("codecs", new JSONArray(codecs));
+        return results;
+    }
+
+    /**
+     * Whether the codec encoded all the resolutions in real time.
+     */
+    private static boolean isRealTime(JSONObject codec) {
+        JSONArray resolutions = codec.optJSONArray("resolutions");
+        if (resolutions == null || resolutions.length() < RESOLUTIONS.length) {
+            return false;
+        }
+
+        return largestResolution(codec).optDouble("fps") >= FRAME_RATE;
+    }
+
+    private static JSONObject largestResolution(JSONObject codec) {
+        JSONArray resolutions = codec.optJSONArray("resolutions");
+        JSONObject result = resolutions != null ? resolutions.optJSONObject(resolutions.length() - 1) : null;
+        return result != null ? result : new JSONObject();
+    }
+
+    /**
+     * Encodes the synthetic clip at the given resolution, as fast as the
+     * encoder takes it. Returns {@code null} if the encoder can't be used.
+     */
+    @Nullable
+    private JSONObject encodeClip(VideoCodecInfo codecInfo, int width, int height, int kbps, int frames)
+            throws JSONException {
+        VideoEncoder encoder = encoderFactory.createEncoder(codecInfo);
+        if (encoder == null) {
+            return null;
+        }
+
+        Object lock = new Object();
+        int[] encoded = new int[1];
+        long[] encodedBytes = new long[1];
+        long[] lastOutputNs = new long[1];
+
+        VideoEncoder.Settings settings = new VideoEncoder.Settings(Runtime.getRuntime().availableProcessors(),
+                width,
+                height,
+                kbps,
+                FRAME_RATE,
+                1,
+                false,
+                new VideoEncoder.Capabilities(false));
+        VideoCodecStatus status = encoder.initEncode(settings, (image, info) -> {
+            ByteBuffer buffer = image.buffer;
+            synchronized (lock) {
+                encoded[0]++;
+                encodedBytes[0] += buffer != null ? buffer.remaining() : 0;
+                lastOutputNs[0] = System.nanoTime();
+                lock.notifyAll();
+            }
+        });
+        if (status != VideoCodecStatus.OK) {
+            Log.w(TAG, "Failed to initialize " + codecInfo.name + " at " + width + "x" + height + ": " + status);
+            encoder.release();
+            return null;
+        }
+        String implementation = encoder.getImplementationName();
+        boolean hardware = encoder.isHardwareEncoder();
+        encoder.setRates(new VideoEncoder.RateControlParameters(
+                new VideoEncoder.BitrateAllocation(new int[][] {{kbps * 1000}}), FRAME_RATE));
+
+        JavaI420Buffer[] clip = createClip(width, height);
+        int accepted = 0;
+        int dropped = 0;
+        long startNs = System.nanoTime();
+        long startCpuMs = Process.getElapsedCpuTime();
+
+        try {
+            for (int i = 0; i < frames; i++) {
+                // Frames which don't come out in time were dropped by the
+                // encoder's rate control.
+                synchronized (lock) {
+                    long deadline = System.nanoTime() + OUTPUT_TIMEOUT_MS * 1000000;
+                    while (accepted - encoded[0] - dropped > MAX_IN_FLIGHT && System.nanoTime() < deadline) {
+                        waitOn(lock, deadline);
+                    }
+                    if (accepted - encoded[0] - dropped > MAX_IN_FLIGHT) {
+                        dropped = accepted - encoded[0];
+                    }
+                }
+
+                JavaI420Buffer buffer = clip[i % CLIP_FRAMES];
+                buffer.retain();
+                VideoFrame frame = new VideoFrame(buffer, 0, i * (1000000000L / FRAME_RATE));
+                EncodedImage.FrameType frameType =
+                        i == 0 ? EncodedImage.FrameType.VideoFrameKey : EncodedImage.FrameType.VideoFrameDelta;
+                status = encoder.encode(frame, new VideoEncoder.EncodeInfo(new EncodedImage.FrameType[] {frameType}));
+                frame.release();
+
+                if (status == VideoCodecStatus.OK) {
+                    accepted++;
+                } else if (status != VideoCodecStatus.NO_OUTPUT) {
+                    Log.w(TAG, "Failed to encode " + codecInfo.name + " at " + width + "x" + height + ": " + status);
+                    return null;
+                }
+            }
+
+            synchronized (lock) {
+                long deadline = System.nanoTime() + OUTPUT_TIMEOUT_MS * 1000000;
+                while (encoded[0] < accepted && System.nanoTime() < deadline) {
+                    waitOn(lock, deadline);
+                }
+            }
+        } finally {
+            encoder.release();
+            for (JavaI420Buffer buffer : clip) {
+                buffer.release();
+            }
+        }
+
+        long cpuMs = Process.getElapsedCpuTime() - startCpuMs;
+        JSONObject result = new JSONObject();
+        synchronized (lock) {
+            int count = Math.max(1, encoded[0]);
+            double seconds = Math.max(1, lastOutputNs[0] - startNs) / 1e9;
+            result.put("width", width);
+            result.put("height", height);
+            result.put("frames", frames);
+            result.put("encoded", encoded[0]);
+            result.put("fps", encoded[0] / seconds);
+            result.put("cpuMsPerFrame", (double) cpuMs / count);
+            result.put("kbps", encodedBytes[0] * 8 / 1000.0 / Math.max(1.0, (double) encoded[0]) * FRAME_RATE);
+        }
+        result.put("implementation", implementation);
+        result.put("hardware", hardware);
+
+        Log.d(TAG, "Benchmarked " + codecInfo.name + " " + codecInfo.params + ": " + result);
+
+        return result;
+    }
+
+    private static void waitOn(Object lock, long deadlineNs) {
+        try {
+            lock.wait(Math.max(1, (deadlineNs - System.nanoTime()) / 1000000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A moving gradient with a fixed noise texture scrolling over it, so the
+     * frames are neither static nor trivially compressible.
+     */
+    private static JavaI420Buffer[] createClip(int width, int height) {
+        byte[] noise = new byte[256 * 256];
+        int seed = 0x2545F491;
+        for (int i = 0; i < noise.length; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            noise[i] = (byte) (seed & 0x3f);
+        }
+
+        JavaI420Buffer[] clip = new JavaI420Buffer[CLIP_FRAMES];
+        for (int t = 0; t < CLIP_FRAMES; t++) {
+            JavaI420Buffer buffer = JavaI420Buffer.allocate(width, height);
+
+            ByteBuffer y = buffer.getDataY();
+            int strideY = buffer.getStrideY();
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    int value = (col + row + t * 8) / 4 + noise[((row + t * 3) & 0xff) * 256 + ((col + t * 5) & 0xff)];
+                    y.put(row * strideY + col, (byte) (value & 0xff));
+                }
+            }
+
+            ByteBuffer u = buffer.getDataU();
+            ByteBuffer v = buffer.getDataV();
+            int chromaWidth = (width + 1) / 2;
+            int chromaHeight = (height + 1) / 2;
+            for (int row = 0; row < chromaHeight; row++) {
+                for (int col = 0; col < chromaWidth; col++) {
+                    u.put(row * buffer.getStrideU() + col, (byte) (128 + (col + t * 4) % 64 - 32));
+                    v.put(row * buffer.getStrideV() + col, (byte) (128 + (row + t * 2) % 64 - 32));
+                }
+            }
+
+            clip[t] = buffer;
+        }
+
+        return clip;
+    }
+
+    /**
+     * Orders the given send capabilities of the video codecs by the ranking,
+     * the ones which weren't benchmarked, such as RTX, keeping their order
+     * after the ranked ones.
+     */
+    static List<RtpCapabilities.CodecCapability> orderCapabilities(
+            JSONObject results, List<RtpCapabilities.CodecCapability> capabilities) {
+        List<RtpCapabilities.CodecCapability> ordered = new ArrayList<>();
+        List<RtpCapabilities.CodecCapability> remaining = new ArrayList<>(capabilities);
+
+        JSONArray codecs = results.optJSONArray("codecs");
+        for (int i = 0; codecs != null && i < codecs.length(); i++) {
+            JSONObject codec = codecs.optJSONObject(i);
+            if (codec == null) {
+                continue;
+            }
+            Iterator<RtpCapabilities.CodecCapability> it = remaining.iterator();
+            while (it.hasNext()) {
+                RtpCapabilities.CodecCapability capability = it.next();
+                if (matches(codec, capability)) {
+                    ordered.add(capability);
+                    it.remove();
+                }
+            }
+        }
+
+        ordered.addAll(remaining);
+        return ordered;
+    }
+
+    /**
+     * Whether the capability is of the benchmarked codec: same name and same
+     * value for the parameters both have, such as the H.264 profile.
+     */
+    private static boolean matches(JSONObject codec, RtpCapabilities.CodecCapability capability) {
+        if (!codec.optString("name").equalsIgnoreCase(capability.name)) {
+            return false;
+        }
+
+        JSONObject params = codec.optJSONObject("params");
+        if (params == null || capability.parameters == null) {
+            return true;
+        }
+        for (Map.Entry<String, String> parameter : capability.parameters.entrySet()) {
+            String value = params.optString(parameter.getKey(), null);
+            if (value != null && !value.equalsIgnoreCase(parameter.getValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static WritableMap toWritableMap(JSONObject results) throws JSONException {
+        WritableArray codecs = Arguments.createArray();
+        JSONArray codecArray = results.getJSONArray("codecs");
+        for (int i = 0; i < codecArray.length(); i++) {
+            JSONObject codec = codecArray.getJSONObject(i);
+
+            WritableMap params = Arguments.createMap();
+            JSONObject paramsJson = codec.getJSONObject("params");
+            Iterator<String> keys = paramsJson.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                params.putString(key, paramsJson.getString(key));
+            }
+
+            WritableArray resolutions = Arguments.createArray();
+            JSONArray resolutionArray = codec.getJSONArray("resolutions");
+            for (int j = 0; j < resolutionArray.length(); j++) {
+                JSONObject resolution = resolutionArray.getJSONObject(j);
+                WritableMap map = Arguments.createMap();
+                map.putInt("width", resolution.getInt("width"));
+                map.putInt("height", resolution.getInt("height"));
+                map.putInt("frames", resolution.getInt("frames"));
+                map.putInt("encoded", resolution.getInt("encoded"));
+                map.putDouble("fps", resolution.getDouble("fps"));
+                map.putDouble("cpuMsPerFrame", resolution.getDouble("cpuMsPerFrame"));
+                map.putDouble("kbps", resolution.getDouble("kbps"));
+                resolutions.pushMap(map);
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putString("name", codec.getString("name"));
+            map.putMap("params", params);
+            map.putString("implementation", codec.optString("implementation"));
+            map.putBoolean("hardware", codec.optBoolean("hardware"));
+            map.putArray("resolutions", resolutions);
+            codecs.pushMap(map);
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putDouble("timestamp", results.getLong("timestamp"));
+        map.putArray("codecs", codecs);
+        return map;
+    }
+
+    @Nullable
+    private JSONObject load() {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+
+            // Checked against the current configuration by getResults.
+            return new JSONObject(new String(data, 0, read, StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to load the codec benchmark results", e);
+            return null;
+        }
+    }
+
+    private void save(JSONObject results) {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(results.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save the codec benchmark results", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.oney.WebRTCModule;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in compact encoding of the high rate events. Instead of a map with the
+ * same string keys over and over, such events are sent as a flat array of
+ * values whose positions are given by a schema the JS side fetches once.
+ * Nested objects are flattened, a field named <tt>a.b</tt> being the
+ * <tt>b</tt> key of the <tt>a</tt> object.
+ *
+ * String ids, such as DataChannel tags and track ids, are interned: the first
+ * time an id is used it is assigned a small integer handle, announced with a
+ * {@link #HANDLE_EVENT} event of <tt>[handle, id]</tt>, and the handle is sent
+ * instead. <tt>[handle]</tt> announces that a handle is no longer used.
+ *
+ * Events are only encoded this way once the JS side has fetched the schema,
+ * so it can always decode them.
+ */
+class CompactEvents {
+    static final String HANDLE_EVENT = "compactEventHandle";
+
+    /**
+     * Fields of the encoded events, in order.
+     */
+    private static final Map<String, String[]> SCHEMA = new LinkedHashMap<>();
+
+    /**
+     * Fields which carry an interned handle.
+     */
+    private static final String[] HANDLE_FIELDS = {"reactTag", "trackId"};
+
+    static {
+        SCHEMA.put("dataChannelReceiveMessage", new String[] {"peerConnectionId", "reactTag", "type", "data"});
+        SCHEMA.put("dataChannelDidChangeBufferedAmount",
+                new String[] {"peerConnectionId", "reactTag", "bufferedAmount"});
+        SCHEMA.put("mediaStreamTrackMuteChanged", new String[] {"pcId", "trackId", "muted"});
+        SCHEMA.put("peerConnectionGotICECandidate",
+                new String[] {"pcId",
+                        "candidate.sdpMLineIndex",
+                        "candidate.sdpMid",
+                        "candidate.candidate",
+                        "sdp.type",
+                        "sdp.sdp"});
+    }
+
+    private final WebRTCModule webRTCModule;
+    private final boolean allowed;
+    private volatile boolean enabled;
+
+    private final Map<String, Integer> handles = new HashMap<>();
+    private int nextHandle;
+
+    CompactEvents(WebRTCModule webRTCModule, boolean allowed) {
+        this.webRTCModule = webRTCModule;
+        this.allowed = allowed;
+    }
+
+    /**
+     * Whether events are to be encoded compactly. Can be called on any thread.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the schema of the encoded events, <tt>{events: {name: [fields]},
+     * handleFields: [fields]}</tt>, and starts encoding them. Returns
+     * {@code null}, and keeps the regular encoding, if the compact one is not
+     * enabled in the options.
+     */
+    @Nullable
+    WritableMap getSchema() {
+        if (!allowed) {
+            return null;
+        }
+
+        WritableMap events = Arguments.createMap();
+        for (Map.Entry<String, String[]> entry : SCHEMA.entrySet()) {
+            events.putArray(entry.getKey(), Arguments.fromArray(entry.getValue()));
+        }
+
+        WritableMap schema = Arguments.createMap();
+        schema.putMap("events", events);
+        schema.putArray("handleFields", Arguments.fromArray(HANDLE_FIELDS));
+
+        enabled = true;
+
+        return schema;
+    }
+
+    /**
+     * Gets the handle of the given id, announcing it if it's new. The
+     * announcement is sent before the handle is returned, so it reaches the
+     * JS side before any event using it.
+     */
+    synchronized int intern(String id) {
+        Integer handle = handles.get(id);
+        if (handle != null) {
+            return handle;
+        }
+
+        handle = nextHandle++;
+        handles.put(id, handle);
+
+        WritableArray params = Arguments.createArray();
+        params.pushInt(handle);
+        params.pushString(id);
+        webRTCModule.sendCompactEvent(HANDLE_EVENT, params);
+
+        return handle;
+    }
+
+    /**
+     * Releases the handle of the given id, if it has one. Must only be called
+     * once no more events will be sent for it.
+     */
+    synchronized void release(String id) {
+        Integer handle = handles.remove(id);
+        if (handle == null) {
+            return;
+        }
+
+        WritableArray params = Arguments.createArray();
+        params.pushInt(handle);
+        webRTCModule.sendCompactEvent(HANDLE_EVENT, params);
+    }
+}
@@ -0,0 +1,688 @@
+package com.oney.WebRTCModule;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.DataChannel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in framing protocol on top of a {@link DataChannel} which lifts the
+ * SCTP message size limit. Both ends must enable it, and the channel must be
+ * ordered and reliable.
+ *
+ * Every framed message is sent as binary and starts with a flags byte. Small
+ * messages are sent whole right away. Large ones are split into chunks of a
+ * bounded size, each with a header made of the message id, its total length
+ * and the chunk offset. Chunks of all the pending large messages are sent
+ * round-robin, and only while the channel's buffered amount is below a high
+ * watermark, so small messages sent in the meantime get interleaved instead
+ * of waiting behind megabytes of queued data.
+ *
+ * Received chunks are reassembled into buffers taken from a pool, which are
+ * reused across messages. Progress is reported at most every
+ * {@link #PROGRESS_INTERVAL_MS} per message.
+ *
+ * Files can be streamed the same way, read from disk chunk by chunk as the
+ * channel drains and written to disk on the receiving side, without their
+ * contents ever crossing the bridge.
+ */
+class DataChannelFramer {
+    private static final String TAG = DataChannelFramer.class.getSimpleName();
+
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    // flags, message id, total length, offset
+    private static final int CHUNK_HEADER_SIZE = 1 + 4 + 8 + 8;
+
+    /**
+     * Largest chunk, so a chunk and its header fit in 64 KiB, the SCTP
+     * message size every WebRTC implementation accepts.
+     */
+    static final int MAX_CHUNK_SIZE = 64 * 1024 - CHUNK_HEADER_SIZE;
+
+    /**
+     * Largest message which will be reassembled in memory, larger ones are
+     * dropped. Files are not limited.
+     */
+    static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    private static final int FLAG_TEXT = 0x1;
+    private static final int FLAG_CHUNK = 0x2;
+    private static final int FLAG_FILE = 0x4;
+    private static final int FLAG_ABORT = 0x8;
+
+    private static final long HIGH_WATERMARK = 1024 * 1024;
+    private static final long LOW_WATERMARK = 256 * 1024;
+
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    /**
+     * Received files are written on their own thread, so disk I/O doesn't
+     * block the network thread.
+     */
+    private static final ExecutorService fileWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DataChannelFileWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Most bytes of received files waiting to be written, across all the
+     * channels. A file whose chunks arrive faster than the disk takes them is
+     * aborted once this is exceeded, instead of piling up in memory.
+     */
+    private static final int MAX_PENDING_FILE_BYTES = 16 * 1024 * 1024;
+
+    private static final Semaphore pendingFileBytes = new Semaphore(MAX_PENDING_FILE_BYTES);
+
+    interface Listener {
+        /**
+         * Called on the network thread with a complete message. The data is
+         * only valid during the call.
+         */
+        void onMessage(byte[] data, int offset, int length, boolean binary);
+
+        /**
+         * Called when a large message or a file makes progress, at a limited
+         * rate.
+         *
+         * @param sending whether the message is being sent or received.
+         * @param path the path of the file, if the message is one.
+         */
+        void onProgress(boolean sending, int messageId, @Nullable String path, long bytes, long total);
+    }
+
+    interface Completion {
+        void onComplete(@Nullable Exception error);
+    }
+
+    private interface Source {
+        int read(ByteBuffer dst, long position) throws IOException;
+
+        void close();
+    }
+
+    private static class ArraySource implements Source {
+        private final byte[] data;
+
+        ArraySource(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) {
+            int length = (int) Math.min(dst.remaining(), data.length - position);
+            dst.put(data, (int) position, length);
+            return length;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static class FileSource implements Source {
+        private final FileInputStream stream;
+        private final FileChannel channel;
+
+        FileSource(File file) throws IOException {
+            this.stream = new FileInputStream(file);
+            this.channel = stream.getChannel();
+        }
+
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public void close() {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Nothing to do, the file was only read.
+            }
+        }
+    }
+
+    private static class OutgoingMessage {
+        final int id;
+        final int flags;
+        final Source source;
+        final long length;
+        @Nullable
+        final String path;
+        @Nullable
+        final Completion completion;
+        long sent;
+        long lastProgressAt;
+
+        OutgoingMessage(int id,
+                int flags,
+                Source source,
+                long length,
+                @Nullable String path,
+                @Nullable Completion completion) {
+            this.id = id;
+            this.flags = flags;
+            this.source = source;
+            this.length = length;
+            this.path = path;
+            this.completion = completion;
+        }
+
+        void complete(@Nullable Exception error) {
+            source.close();
+            if (completion != null) {
+                completion.onComplete(error);
+            }
+        }
+    }
+
+    private static class IncomingMessage {
+        final boolean binary;
+        final long total;
+        // Where the message goes: a reassembly buffer, a file or nowhere.
+        @Nullable
+        final byte[] buffer;
+        @Nullable
+        final FileSink sink;
+        long received;
+        long lastProgressAt;
+
+        IncomingMessage(boolean binary, long total, @Nullable byte[] buffer, @Nullable FileSink sink) {
+            this.binary = binary;
+            this.total = total;
+            this.buffer = buffer;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * A file an incoming file is written to. Only touched on the file writer
+     * thread, but for its creation.
+     */
+    private static class FileSink {
+        final File file;
+        final Completion completion;
+        @Nullable
+        FileOutputStream stream;
+        boolean finished;
+
+        FileSink(File file, Completion completion) {
+            this.file = file;
+            this.completion = completion;
+        }
+
+        void write(byte[] data, int length) {
+            if (finished) {
+                return;
+            }
+
+            try {
+                if (stream == null) {
+                    stream = new FileOutputStream(file);
+                }
+                stream.getChannel().write(ByteBuffer.wrap(data, 0, length));
+            } catch (IOException e) {
+                finish(e);
+            }
+        }
+
+        void finish(@Nullable Exception error) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+
+            try {
+                if (stream == null) {
+                    stream = new FileOutputStream(file);
+                }
+                stream.getFD().sync();
+                stream.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                file.delete();
+            }
+
+            completion.onComplete(error);
+        }
+    }
+
+    private final DataChannel dataChannel;
+    private final Listener listener;
+    private final int chunkSize;
+    private final int maxMessageSize;
+
+    // Sending state, only accessed in the executor.
+    private final ArrayDeque<OutgoingMessage> outgoing = new ArrayDeque<>();
+    private final ByteBuffer frameBuffer;
+    private int nextMessageId;
+    private final AtomicBoolean pumpScheduled = new AtomicBoolean();
+
+    // Receiving state, accessed on the network thread, and on the executor
+    // and the signaling thread when the framer or the channel is closed, so
+    // it's guarded by the lock.
+    private final Object receiveLock = new Object();
+    private final Map<Integer, IncomingMessage> incoming = new HashMap<>();
+    private final Queue<FileSink> pendingFileSinks = new ArrayDeque<>();
+    private boolean receiveClosed;
+    private final ByteArrayPool pool = new ByteArrayPool();
+
+    DataChannelFramer(DataChannel dataChannel, Listener listener, int chunkSize, int maxMessageSize) {
+        this.dataChannel = dataChannel;
+        this.listener = listener;
+        this.chunkSize = Math.max(1024, Math.min(MAX_CHUNK_SIZE, chunkSize));
+        this.maxMessageSize = maxMessageSize;
+        this.frameBuffer = ByteBuffer.allocate(CHUNK_HEADER_SIZE + this.chunkSize);
+    }
+
+    /**
+     * Sends a message. Must be called in the executor.
+     */
+    void send(byte[] data, boolean binary) {
+        int flags = binary ? 0 : FLAG_TEXT;
+
+        if (data.length <= chunkSize) {
+            frameBuffer.clear();
+            frameBuffer.put((byte) flags);
+            frameBuffer.put(data);
+            frameBuffer.flip();
+            dataChannel.send(new DataChannel.Buffer(frameBuffer, true));
+            return;
+        }
+
+        outgoing.add(new OutgoingMessage(nextMessageId++, flags, new ArraySource(data), data.length, null, null));
+        pump();
+    }
+
+    /**
+     * Streams a file, reading it as the channel drains. The completion is
+     * invoked in the executor once the last chunk has been handed over to the
+     * channel. Must be called in the executor.
+     */
+    void sendFile(File file, Completion completion) {
+        FileSource source;
+        long length;
+        try {
+            source = new FileSource(file);
+            length = source.size();
+        } catch (IOException e) {
+            completion.onComplete(e);
+            return;
+        }
+
+        outgoing.add(new OutgoingMessage(nextMessageId++, FLAG_FILE, source, length, file.getPath(), completion));
+        pump();
+    }
+
+    /**
+     * Writes the next file the remote end sends to the given file. Can be
+     * called on any thread. The completion is invoked on the file writer
+     * thread.
+     */
+    void receiveFile(File file, Completion completion) {
+        FileSink sink = new FileSink(file, completion);
+        synchronized (receiveLock) {
+            if (!receiveClosed) {
+                pendingFileSinks.add(sink);
+                return;
+            }
+        }
+
+        fileWriter.execute(() -> sink.finish(new IOException("The DataChannel was closed")));
+    }
+
+    /**
+     * Sends chunks of the pending messages, round-robin, until the channel
+     * has enough data buffered. Must be called in the executor.
+     */
+    void pump() {
+        pumpScheduled.set(false);
+
+        DataChannel.State state = dataChannel.state();
+        if (state == DataChannel.State.CLOSING || state == DataChannel.State.CLOSED) {
+            for (OutgoingMessage message : outgoing) {
+                message.complete(new IOException("The DataChannel was closed"));
+            }
+            outgoing.clear();
+            return;
+        }
+        if (state != DataChannel.State.OPEN) {
+            return;
+        }
+
+        while (!outgoing.isEmpty() && dataChannel.bufferedAmount() < HIGH_WATERMARK) {
+            OutgoingMessage message = outgoing.poll();
+            int length = (int) Math.min(chunkSize, message.length - message.sent);
+
+            frameBuffer.clear();
+            frameBuffer.put((byte) (FLAG_CHUNK | message.flags));
+            frameBuffer.putInt(message.id);
+            frameBuffer.putLong(message.length);
+            frameBuffer.putLong(message.sent);
+            frameBuffer.limit(CHUNK_HEADER_SIZE + length);
+
+            try {
+                while (frameBuffer.hasRemaining()) {
+                    if (message.source.read(frameBuffer, message.sent + frameBuffer.position() - CHUNK_HEADER_SIZE)
+                            < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read message " + message.id, e);
+                sendAbort(message);
+                message.complete(e);
+                continue;
+            }
+            frameBuffer.flip();
+
+            if (!dataChannel.send(new DataChannel.Buffer(frameBuffer, true))) {
+                Log.w(TAG, "Failed to send a chunk, dropping message " + message.id);
+                message.complete(new IOException("Failed to send"));
+                continue;
+            }
+            message.sent += length;
+
+            boolean done = message.sent == message.length;
+            long now = SystemClock.elapsedRealtime();
+            if (done || now - message.lastProgressAt >= PROGRESS_INTERVAL_MS) {
+                message.lastProgressAt = now;
+                listener.onProgress(true, message.id, message.path, message.sent, message.length);
+            }
+            if (done) {
+                message.complete(null);
+            } else {
+                outgoing.add(message);
+            }
+        }
+    }
+
+    private void sendAbort(OutgoingMessage message) {
+        frameBuffer.clear();
+        frameBuffer.put((byte) (FLAG_CHUNK | FLAG_ABORT | message.flags));
+        frameBuffer.putInt(message.id);
+        frameBuffer.putLong(message.length);
+        frameBuffer.putLong(message.sent);
+        frameBuffer.flip();
+        dataChannel.send(new DataChannel.Buffer(frameBuffer, true));
+    }
+
+    /**
+     * Stops framing: the messages being sent are aborted and fail with the
+     * given error, and so do the files being or waiting to be received. Later
+     * messages are dropped. Must be called in the executor.
+     */
+    void close(Exception error) {
+        boolean open = dataChannel.state() == DataChannel.State.OPEN;
+        for (OutgoingMessage message : outgoing) {
+            // Let the remote end drop what it got so far.
+            if (open && message.sent > 0) {
+                sendAbort(message);
+            }
+            message.complete(error);
+        }
+        outgoing.clear();
+
+        failIncoming(error);
+    }
+
+    /**
+     * Stops receiving: fails the files being or waiting to be received and
+     * drops the partially received messages, and the ones which arrive later.
+     */
+    private void failIncoming(Exception error) {
+        List<FileSink> sinks = new ArrayList<>();
+        synchronized (receiveLock) {
+            receiveClosed = true;
+            for (IncomingMessage message : incoming.values()) {
+                if (message.buffer != null) {
+                    pool.release(message.buffer);
+                }
+                if (message.sink != null) {
+                    sinks.add(message.sink);
+                }
+            }
+            incoming.clear();
+            sinks.addAll(pendingFileSinks);
+            pendingFileSinks.clear();
+        }
+
+        for (FileSink sink : sinks) {
+            fileWriter.execute(() -> sink.finish(error));
+        }
+    }
+
+    /**
+     * Called by the observer of the channel on the signaling thread.
+     */
+    void onBufferedAmountChange() {
+        if (dataChannel.bufferedAmount() < LOW_WATERMARK && pumpScheduled.compareAndSet(false, true)) {
+            ThreadUtils.runOnExecutor("dataChannelPump", this::pump);
+        }
+    }
+
+    /**
+     * Called by the observer of the channel when its state changes.
+     */
+    void onStateChange() {
+        if (pumpScheduled.compareAndSet(false, true)) {
+            ThreadUtils.runOnExecutor("dataChannelPump", this::pump);
+        }
+
+        if (dataChannel.state() == DataChannel.State.CLOSED) {
+            // No more messages will be received, fail the files being or
+            // waiting to be received.
+            failIncoming(new IOException("The DataChannel was closed"));
+        }
+    }
+
+    /**
+     * Called by the observer of the channel on the network thread.
+     */
+    void onMessage(DataChannel.Buffer buffer) {
+        ByteBuffer data = buffer.data;
+        if (!buffer.binary || !data.hasRemaining()) {
+            Log.w(TAG, "Dropping a message which is not framed");
+            return;
+        }
+
+        int flags = data.get();
+        boolean binary = (flags & FLAG_TEXT) == 0;
+
+        if ((flags & FLAG_CHUNK) == 0) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            listener.onMessage(bytes, 0, bytes.length, binary);
+            return;
+        }
+
+        if (data.remaining() < CHUNK_HEADER_SIZE - 1) {
+            Log.w(TAG, "Dropping a truncated chunk");
+            return;
+        }
+
+        int id = data.getInt();
+        long total = data.getLong();
+        long offset = data.getLong();
+        int length = data.remaining();
+        boolean file = (flags & FLAG_FILE) != 0;
+
+        IncomingMessage message;
+        boolean done;
+        boolean progress = false;
+        synchronized (receiveLock) {
+            if (receiveClosed) {
+                return;
+            }
+
+            message = incoming.get(id);
+            if (message == null && offset == 0 && (flags & FLAG_ABORT) == 0) {
+                message = startMessage(id, binary, file, total);
+            }
+            if (message == null || (flags & FLAG_ABORT) != 0 || offset != message.received
+                    || offset + length > message.total) {
+                if ((flags & FLAG_ABORT) == 0) {
+                    Log.w(TAG, "Dropping message " + id + ", chunk at " + offset + " is out of sequence");
+                }
+                if (message != null) {
+                    failMessage(id, message, new IOException("The message was aborted"));
+                }
+                return;
+            }
+
+            if (message.buffer != null) {
+                data.get(message.buffer, (int) offset, length);
+            } else if (message.sink != null) {
+                FileSink sink = message.sink;
+                if (pendingFileBytes.tryAcquire(length)) {
+                    byte[] chunk = pool.acquire(length);
+                    data.get(chunk, 0, length);
+                    fileWriter.execute(() -> {
+                        sink.write(chunk, length);
+                        pool.release(chunk);
+                        pendingFileBytes.release(length);
+                    });
+                } else {
+                    Log.w(TAG, "Aborting file " + id + ", too much data is waiting to be written");
+                    fileWriter.execute(
+                            () -> sink.finish(new IOException("The file could not be written fast enough")));
+
+                    // Drop the rest of it.
+                    IncomingMessage dropped = new IncomingMessage(true, message.total, null, null);
+                    dropped.received = message.received;
+                    incoming.put(id, dropped);
+                    message = dropped;
+                }
+            }
+            message.received += length;
+
+            done = message.received == message.total;
+            long now = SystemClock.elapsedRealtime();
+            if ((message.buffer != null || message.sink != null)
+                    && (done || now - message.lastProgressAt >= PROGRESS_INTERVAL_MS)) {
+                message.lastProgressAt = now;
+                progress = true;
+            }
+            if (done) {
+                // From here on the message is only touched on this thread.
+                incoming.remove(id);
+            }
+        }
+
+        if (progress) {
+            String path = message.sink != null ? message.sink.file.getPath() : null;
+            listener.onProgress(false, id, path, message.received, message.total);
+        }
+
+        if (done) {
+            if (message.buffer != null) {
+                listener.onMessage(message.buffer, 0, (int) message.total, message.binary);
+                pool.release(message.buffer);
+            } else if (message.sink != null) {
+                FileSink sink = message.sink;
+                fileWriter.execute(() -> sink.finish(null));
+            }
+        }
+    }
+
+    // Must be called with the receive lock held.
+    private IncomingMessage startMessage(int id, boolean binary, boolean file, long total) {
+        IncomingMessage message;
+        if (file) {
+            FileSink sink = pendingFileSinks.poll();
+            if (sink == null) {
+                Log.w(TAG, "Dropping file " + id + ", nothing is waiting for it");
+            }
+            message = new IncomingMessage(true, total, null, sink);
+        } else if (total <= 0 || total > maxMessageSize) {
+            Log.w(TAG, "Dropping message " + id + " of " + total + " bytes");
+            message = new IncomingMessage(binary, total, null, null);
+        } else {
+            message = new IncomingMessage(binary, total, pool.acquire((int) total), null);
+        }
+
+        incoming.put(id, message);
+
+        return message;
+    }
+
+    // Must be called with the receive lock held.
+    private void failMessage(int id, IncomingMessage message, Exception error) {
+        incoming.remove(id);
+        if (message.buffer != null) {
+            pool.release(message.buffer);
+        }
+        if (message.sink != null) {
+            FileSink sink = message.sink;
+            fileWriter.execute(() -> sink.finish(error));
+        }
+    }
+
+    /**
+     * Pool of reassembly buffers, in power of two size classes, which retains
+     * a bounded number of bytes.
+     */
+    private static class ByteArrayPool {
+        private static final int MIN_SIZE = 64 * 1024;
+        private static final long MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+
+        private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+        private long retainedBytes;
+
+        synchronized byte[] acquire(int size) {
+            Iterator<byte[]> it = free.iterator();
+            while (it.hasNext()) {
+                byte[] array = it.next();
+                if (array.length >= size && array.length <= 2L * Math.max(size, MIN_SIZE)) {
+                    it.remove();
+                    retainedBytes -= array.length;
+                    return array;
+                }
+            }
+
+            int capacity = MIN_SIZE;
+            while (capacity < size && capacity > 0) {
+                capacity <<= 1;
+            }
+            return new byte[capacity > 0 ? capacity : size];
+        }
+
+        synchronized void release(byte[] array) {
+            if (retainedBytes + array.length > MAX_RETAINED_BYTES) {
+                return;
+            }
+            free.add(array);
+            retainedBytes += array.length;
+        }
+    }
+}
@@ -5,10 +5,14 @@ import android.util.Base64;
 import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import org.webrtc.DataChannel;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 class DataChannelWrapper implements DataChannel.Observer {
@@ -16,11 +20,20 @@ class DataChannelWrapper implements DataChannel.Observer {
     private final DataChannel mDataChannel;
     private final int peerConnectionId;
     private final WebRTCModule webRTCModule;
+    private final boolean orderedAndReliable;
 
-    DataChannelWrapper(WebRTCModule webRTCModule, int peerConnectionId, String reactTag, DataChannel dataChannel) {
+    @Nullable
+    private volatile DataChannelFramer framer;
+
+    DataChannelWrapper(WebRTCModule webRTCModule,
+            int peerConnectionId,
+            String reactTag,
+            DataChannel dataChannel,
+            boolean orderedAndReliable) {
         this.webRTCModule = webRTCModule;
         this.peerConnectionId = peerConnectionId;
         this.reactTag = reactTag;
+        this.orderedAndReliable = orderedAndReliable;
         mDataChannel = dataChannel;
     }
 
@@ -32,6 +45,114 @@ class DataChannelWrapper implements DataChannel.Observer {
         return reactTag;
     }
 
+    /**
+     * Enables or disables the {@link DataChannelFramer} framing protocol,
+     * which the remote end must use as well. Pending framed messages and file
+     * transfers fail when it's disabled or re-enabled. Must be called in the
+     * executor.
+     *
+     * @return false if framing can't be enabled because the channel is
+     * unordered or unreliable.
+     */
+    boolean setFramed(boolean framed, int chunkSize) {
+        if (framed && !orderedAndReliable) {
+            return false;
+        }
+
+        DataChannelFramer previous = this.framer;
+        if (previous != null) {
+            framer = null;
+            previous.close(new IOException("Framing was " + (framed ? "reconfigured" : "disabled")));
+        }
+        if (!framed) {
+            return true;
+        }
+
+        framer = new DataChannelFramer(mDataChannel, new DataChannelFramer.Listener() {
+            @Override
+            public void onMessage(byte[] data, int offset, int length, boolean binary) {
+                sendMessageEvent(data, offset, length, binary);
+            }
+
+            @Override
+            public void onProgress(
+                    boolean sending, int messageId, @Nullable String path, long bytes, long total) {
+                WritableMap params = Arguments.createMap();
+                params.putString("reactTag", reactTag);
+                params.putInt("peerConnectionId", peerConnectionId);
+                params.putString("direction", sending ? "send" : "receive");
+                params.putInt("messageId", messageId);
+                if (path != null) {
+                    params.putString("path", path);
+                }
+                params.putDouble("bytes", bytes);
+                params.putDouble("total", total);
+
+                webRTCModule.sendEvent("dataChannelMessageProgress", params);
+            }
+        }, chunkSize, DataChannelFramer.DEFAULT_MAX_MESSAGE_SIZE);
+        return true;
+    }
+
+    /**
+     * Stops framing, failing the pending framed messages and file transfers
+     * with the given error. Must be called in the executor, before the
+     * observer is unregistered, as the channel's state changes no longer
+     * reach the framer afterwards.
+     */
+    void close(IOException error) {
+        DataChannelFramer framer = this.framer;
+        if (framer != null) {
+            this.framer = null;
+            framer.close(error);
+        }
+    }
+
+    /**
+     * Sends a message, framed if enabled. Must be called in the executor.
+     */
+    void send(byte[] data, boolean binary) {
+        DataChannelFramer framer = this.framer;
+        if (framer != null) {
+            framer.send(data, binary);
+            return;
+        }
+
+        mDataChannel.send(new DataChannel.Buffer(ByteBuffer.wrap(data), binary));
+    }
+
+    /**
+     * Streams a file to the remote end, which must be framed. Must be called
+     * in the executor.
+     *
+     * @return whether framing is enabled.
+     */
+    boolean sendFile(File file, DataChannelFramer.Completion completion) {
+        DataChannelFramer framer = this.framer;
+        if (framer == null) {
+            return false;
+        }
+
+        framer.sendFile(file, completion);
+        return true;
+    }
+
+    /**
+     * Writes the next file the remote end streams to the given file. Must be
+     * called in the executor.
+     *
+     * @return whether framing is enabled.
+     */
+    boolean receiveFile(File file, DataChannelFramer.Completion completion) {
+        DataChannelFramer framer = this.framer;
+        if (framer == null) {
+            return false;
+        }
+
+        framer.receiveFile(file, completion);
+        return true;
+    }
+
     @Nullable
     public String dataChannelStateString(DataChannel.State dataChannelState) {
         switch (dataChannelState) {
@@ -49,6 +170,22 @@ class DataChannelWrapper implements DataChannel.Observer {
 
     @Override
     public void onBufferedAmountChange(long amount) {
+        DataChannelFramer framer = this.framer;
+        if (framer != null) {
+            framer.onBufferedAmountChange();
+        }
+
+        CompactEvents compactEvents = webRTCModule.compactEvents;
+        if (compactEvents.isEnabled()) {
+            WritableArray params = Arguments.createArray();
+            params.pushInt(peerConnectionId);
+            params.pushInt(compactEvents.intern(reactTag));
+            params.pushDouble(amount);
+
+            webRTCModule.sendCompactEvent("dataChannelDidChangeBufferedAmount", params);
+            return;
+        }
+
         WritableMap params = Arguments.createMap();
         params.putString("reactTag", reactTag);
         params.putInt("peerConnectionId", peerConnectionId);
@@ -59,9 +196,11 @@ class DataChannelWrapper implements DataChannel.Observer {
 
     @Override
     public void onMessage(DataChannel.Buffer buffer) {
-        WritableMap params = Arguments.createMap();
-        params.putString("reactTag", reactTag);
-        params.putInt("peerConnectionId", peerConnectionId);
+        DataChannelFramer framer = this.framer;
+        if (framer != null) {
+            framer.onMessage(buffer);
+            return;
+        }
 
         byte[] bytes;
         if (buffer.data.hasArray()) {
@@ -71,15 +210,35 @@ class DataChannelWrapper implements DataChannel.Observer {
             buffer.data.get(bytes);
         }
 
+        sendMessageEvent(bytes, 0, bytes.length, buffer.binary);
+    }
+
+    private void sendMessageEvent(byte[] bytes, int offset, int length, boolean binary) {
         String type;
         String data;
-        if (buffer.binary) {
+        if (binary) {
             type = "binary";
-            data = Base64.encodeToString(bytes, Base64.NO_WRAP);
+            data = Base64.encodeToString(bytes, offset, length, Base64.NO_WRAP);
         } else {
             type = "text";
-            data = new String(bytes, StandardCharsets.UTF_8);
+            data = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+
+        CompactEvents compactEvents = webRTCModule.compactEvents;
+        if (compactEvents.isEnabled()) {
+            WritableArray params = Arguments.createArray();
+            params.pushInt(peerConnectionId);
+            params.pushInt(compactEvents.intern(reactTag));
+            params.pushString(type);
+            params.pushString(data);
+
+            webRTCModule.sendCompactEvent("dataChannelReceiveMessage", params);
+            return;
         }
+
+        WritableMap params = Arguments.createMap();
+        params.putString("reactTag", reactTag);
+        params.putInt("peerConnectionId", peerConnectionId);
         params.putString("type", type);
         params.putString("data", data);
 
@@ -88,6 +247,11 @@ class DataChannelWrapper implements DataChannel.Observer {
 
     @Override
     public void onStateChange() {
+        DataChannelFramer framer = this.framer;
+        if (framer != null) {
+            framer.onStateChange();
+        }
+
         WritableMap params = Arguments.createMap();
         params.putString("reactTag", reactTag);
         params.putInt("peerConnectionId", peerConnectionId);
@@ -0,0 +1,262 @@
+package com.oney.WebRTCModule;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableMap;
+import com.oney.WebRTCModule.webrtcutils.HardwareDecoderBudget;
+
+import org.webrtc.RtpParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Defaults matched to what the device can handle, picked from a coarse
+ * classification of it: core count, RAM, hardware H.264 support and OpenGL ES
+ * version as a proxy for the GPU.
+ *
+ * Apps can start from {@link #detect(Context)} or {@link #forTier(Tier)},
+ * change any of the public fields and set the result as
+ * {@link WebRTCModuleOptions#performanceProfile}. With
+ * {@link WebRTCModuleOptions#enablePerformanceProfile} the detected profile is
+ * applied as is.
+ */
+public class DevicePerformanceProfile {
+    private static final String TAG = DevicePerformanceProfile.class.getSimpleName();
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    public enum Tier { LOW, MID, HIGH }
+
+    public Tier tier;
+
+    /**
+     * Caps of the camera capture. The width and height caps apply to the long
+     * and the short side respectively, so they hold in both orientations.
+     */
+    public int maxCaptureWidth;
+    public int maxCaptureHeight;
+    public int maxCaptureFrameRate;
+
+    /**
+     * Whether to use the hardware video encoders and decoders, unless the
+     * factories are set in the options.
+     */
+    public boolean hardwareVideoCodecs;
+
+    /**
+     * How many simulcast encodings can be active, the ones with the largest
+     * resolution beyond it are deactivated.
+     */
+    public int maxSimulcastLayers;
+
+    /**
+     * Whether video effects can be enabled on camera tracks.
+     */
+    public boolean videoEffects;
+
+    // What the classification was based on, for reporting.
+    int cores;
+    long totalMemory;
+    boolean lowRamDevice;
+    boolean hardwareEncoder;
+    int glEsVersion;
+
+    /**
+     * Returns the defaults of the given tier, assuming a hardware encoder is
+     * available.
+     */
+    public static DevicePerformanceProfile forTier(Tier tier) {
+        DevicePerformanceProfile profile = new DevicePerformanceProfile();
+        profile.tier = tier;
+        profile.hardwareVideoCodecs = true;
+
+        switch (tier) {
+            case LOW:
+                profile.maxCaptureWidth = 640;
+                profile.maxCaptureHeight = 480;
+                profile.maxCaptureFrameRate = 15;
+                profile.maxSimulcastLayers = 1;
+                profile.videoEffects = false;
+                break;
+            case MID:
+                profile.maxCaptureWidth = 1280;
+                profile.maxCaptureHeight = 720;
+                profile.maxCaptureFrameRate = 30;
+                profile.maxSimulcastLayers = 2;
+                profile.videoEffects = true;
+                break;
+            case HIGH:
+                profile.maxCaptureWidth = 1920;
+                profile.maxCaptureHeight = 1080;
+                profile.maxCaptureFrameRate = 30;
+                profile.maxSimulcastLayers = 3;
+                profile.videoEffects = true;
+                break;
+        }
+
+        return profile;
+    }
+
+    /**
+     * Classifies the device and returns the defaults of its tier.
+     */
+    public static DevicePerformanceProfile detect(Context context) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long totalMemory = 0;
+        boolean lowRamDevice = false;
+        int glEsVersion = 0;
+
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+            activityManager.getMemoryInfo(memoryInfo);
+            totalMemory = memoryInfo.totalMem;
+            lowRamDevice = activityManager.isLowRamDevice();
+            glEsVersion = activityManager.getDeviceConfigurationInfo().reqGlEsVersion;
+        }
+
+        boolean hardwareEncoder = hasHardwareEncoder(MediaFormat.MIMETYPE_VIDEO_AVC);
+
+        Tier tier;
+        if (lowRamDevice || totalMemory < 3 * GB || cores <= 4) {
+            tier = Tier.LOW;
+        } else if (totalMemory >= 6 * GB && cores >= 8 && hardwareEncoder && glEsVersion >= 0x30002) {
+            tier = Tier.HIGH;
+        } else {
+            tier = Tier.MID;
+        }
+
+        DevicePerformanceProfile profile = forTier(tier);
+        profile.cores = cores;
+        profile.totalMemory = totalMemory;
+        profile.lowRamDevice = lowRamDevice;
+        profile.hardwareEncoder = hardwareEncoder;
+        profile.glEsVersion = glEsVersion;
+        // Without a hardware encoder the hardware factories only add the cost
+        // of an EGL context.
+        profile.hardwareVideoCodecs = hardwareEncoder;
+
+        Log.d(TAG,
+                "Device classified as " + tier + ": " + cores + " cores, " + totalMemory / (1024 * 1024)
+                        + "MB RAM, hardware encoder: " + hardwareEncoder + ", GLES 0x"
+                        + Integer.toHexString(glEsVersion));
+
+        return profile;
+    }
+
+    /**
+     * Returns the camera constraints capped to this profile, keeping the
+     * aspect ratio. A width or a height given alone is capped too.
+     */
+    ReadableMap capVideoConstraints(ReadableMap constraints) {
+        int width = getInt(constraints, "width");
+        int height = getInt(constraints, "height");
+        int frameRate = getInt(constraints, "frameRate");
+
+        WritableMap capped = Arguments.createMap();
+        capped.merge(constraints);
+
+        if (width > 0 && height > 0) {
+            int longSide = Math.max(width, height);
+            int shortSide = Math.min(width, height);
+            double scale = Math.min(1.0,
+                    Math.min((double) maxCaptureWidth / longSide, (double) maxCaptureHeight / shortSide));
+            if (scale < 1.0) {
+                capped.putInt("width", (int) Math.round(width * scale));
+                capped.putInt("height", (int) Math.round(height * scale));
+            }
+        } else if (width > maxCaptureWidth) {
+            // With a single dimension the other one comes from the camera
+            // formats, which are in the sensor orientation: width is the long side.
+            capped.putInt("width", maxCaptureWidth);
+        } else if (height > maxCaptureHeight) {
+            capped.putInt("height", maxCaptureHeight);
+        }
+        if (frameRate > maxCaptureFrameRate) {
+            capped.putInt("frameRate", maxCaptureFrameRate);
+        }
+
+        return capped;
+    }
+
+    /**
+     * Deactivates the active encodings beyond {@link #maxSimulcastLayers},
+     * starting with the ones with the largest resolution.
+     */
+    void limitSimulcastLayers(List<RtpParameters.Encoding> encodings) {
+        List<RtpParameters.Encoding> active = new ArrayList<>();
+        for (RtpParameters.Encoding encoding : encodings) {
+            if (encoding.active) {
+                active.add(encoding);
+            }
+        }
+
+        active.sort((a, b) -> Double.compare(scaleOf(b), scaleOf(a)));
+        for (int i = Math.max(1, maxSimulcastLayers); i < active.size(); i++) {
+            active.get(i).active = false;
+        }
+    }
+
+    WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putString("tier", tier.name().toLowerCase(Locale.ROOT));
+        map.putInt("maxCaptureWidth", maxCaptureWidth);
+        map.putInt("maxCaptureHeight", maxCaptureHeight);
+        map.putInt("maxCaptureFrameRate", maxCaptureFrameRate);
+        map.putBoolean("hardwareVideoCodecs", hardwareVideoCodecs);
+        map.putInt("maxSimulcastLayers", maxSimulcastLayers);
+        map.putBoolean("videoEffects", videoEffects);
+
+        WritableMap device = Arguments.createMap();
+        device.putInt("cores", cores);
+        device.putDouble("totalMemory", totalMemory);
+        device.putBoolean("lowRamDevice", lowRamDevice);
+        device.putBoolean("hardwareEncoder", hardwareEncoder);
+        device.putInt("glEsVersion", glEsVersion);
+        map.putMap("device", device);
+
+        return map;
+    }
+
+    private static double scaleOf(RtpParameters.Encoding encoding) {
+        return encoding.scaleResolutionDownBy != null ? encoding.scaleResolutionDownBy : 1.0;
+    }
+
+    private static int getInt(ReadableMap map, String key) {
+        if (map.hasKey(key) && map.getType(key) == ReadableType.Number) {
+            return map.getInt(key);
+        }
+
+        return 0;
+    }
+
+    private static boolean hasHardwareEncoder(String mimeType) {
+        try {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo info : codecList.getCodecInfos()) {
+                if (!info.isEncoder() || !HardwareDecoderBudget.isHardware(info)) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(mimeType)) {
+                        return true;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to probe the hardware encoders", e);
+        }
+
+        return false;
+    }
+}
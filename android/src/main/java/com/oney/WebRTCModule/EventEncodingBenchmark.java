@@ -0,0 +1,76 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.UUID;
+
+/**
+ * Compares building a <tt>dataChannelReceiveMessage</tt> event payload as a
+ * map and in the {@link CompactEvents} encoding, in time and in the size of
+ * the JSON the bridge serializes it to.
+ */
+class EventEncodingBenchmark {
+    private static final int PEER_CONNECTION_ID = 1;
+    private static final int HANDLE = 0;
+
+    // A typical small text message, such as a chat or a signaling message.
+    private static final String DATA = "{\"type\":\"chat\",\"text\":\"Hello there!\",\"ts\":1700000000000}";
+
+    static WritableMap run(int iterations) {
+        iterations = Math.max(1, iterations);
+        String reactTag = UUID.randomUUID().toString();
+
+        // Warm up, so both encodings are measured with the JNI paths resolved
+        // and the code compiled.
+        for (int i = 0; i < Math.min(iterations, 1000); i++) {
+            buildMap(reactTag);
+            buildArray();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            buildMap(reactTag);
+        }
+        long mapNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            buildArray();
+        }
+        long compactNs = System.nanoTime() - start;
+
+        int mapBytes = new JSONObject(buildMap(reactTag).toHashMap()).toString().length();
+        int compactBytes = new JSONArray(buildArray().toArrayList()).toString().length();
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("iterations", iterations);
+        result.putDouble("mapNsPerEvent", (double) mapNs / iterations);
+        result.putDouble("compactNsPerEvent", (double) compactNs / iterations);
+        result.putInt("mapBytesPerEvent", mapBytes);
+        result.putInt("compactBytesPerEvent", compactBytes);
+        return result;
+    }
+
+    private static WritableMap buildMap(String reactTag) {
+        WritableMap params = Arguments.createMap();
+        params.putString("reactTag", reactTag);
+        params.putInt("peerConnectionId", PEER_CONNECTION_ID);
+        params.putString("type", "text");
+        params.putString("data", DATA);
+        return params;
+    }
+
+    private static WritableArray buildArray() {
+        WritableArray params = Arguments.createArray();
+        params.pushInt(PEER_CONNECTION_ID);
+        params.pushInt(HANDLE);
+        params.pushString("text");
+        params.pushString(DATA);
+        return params;
+    }
+}
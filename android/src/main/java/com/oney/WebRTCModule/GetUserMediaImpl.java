@@ -9,6 +9,7 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 import android.os.Build;
 
+import androidx.annotation.Nullable;
 import androidx.core.util.Consumer;
 
 import com.facebook.react.bridge.Arguments;
@@ -64,6 +65,9 @@ class GetUserMediaImpl {
     private Intent mediaProjectionPermissionResultData;
     private boolean createConfigForDefaultDisplay = false;
     private float resolutionScale = 1.0f;
+    private boolean contentAdaptive = false;
+    private int idleFrameRate = ScreenContentAdapter.DEFAULT_IDLE_FPS;
+    private ScreenRegionCropper.Region screenRegion;
 
     GetUserMediaImpl(WebRTCModule webRTCModule, ReactApplicationContext reactContext) {
         this.webRTCModule = webRTCModule;
@@ -82,7 +86,7 @@ class GetUserMediaImpl {
 
                     mediaProjectionPermissionResultData = data;
 
-                    ThreadUtils.runOnExecutor(() -> {
+                    ThreadUtils.runOnExecutor("onActivityResult", () -> {
                         MediaProjectionService.launch(activity);
                         createScreenStream();
                     });
@@ -109,6 +113,7 @@ class GetUserMediaImpl {
 
         // surfaceTextureHelper is initialized for videoTrack only, so its null here.
         tracks.put(id, new TrackPrivate(track, audioSource, /* videoCapturer */ null, /* surfaceTextureHelper */ null));
+        registerTrack(id, false);
 
         return track;
     }
@@ -181,6 +186,12 @@ class GetUserMediaImpl {
         return private_ == null ? null : private_.track;
     }
 
+    VideoFrameMetrics getFrameMetrics(String id) {
+        TrackPrivate private_ = tracks.get(id);
+
+        return private_ == null ? null : private_.frameMetrics;
+    }
+
     /**
      * Implements {@code getUserMedia}. Note that at this point constraints have
      * been normalized and permissions have been granted. The constraints only
@@ -201,6 +212,11 @@ class GetUserMediaImpl {
 
             Log.d(TAG, "getUserMedia(video): " + videoConstraintsMap);
 
+            DevicePerformanceProfile performanceProfile = webRTCModule.performanceProfile;
+            if (performanceProfile != null) {
+                videoConstraintsMap = performanceProfile.capVideoConstraints(videoConstraintsMap);
+            }
+
             Activity currentActivity = this.reactContext.getCurrentActivity();
             if (currentActivity == null) {
                 errorCallback.invoke("Error", "No current Activity.");
@@ -245,12 +261,27 @@ class GetUserMediaImpl {
     void disposeTrack(String id) {
         TrackPrivate track = tracks.remove(id);
         if (track != null) {
-            track.dispose();
+            track.dispose(webRTCModule.resources);
+        }
+    }
+
+    private void registerTrack(String id, boolean video) {
+        ResourceRegistry resources = webRTCModule.resources;
+        resources.register(ResourceRegistry.LOCAL_TRACK, id);
+        resources.register(ResourceRegistry.MEDIA_SOURCE, id, ResourceRegistry.LOCAL_TRACK, id);
+        if (video) {
+            resources.register(ResourceRegistry.VIDEO_CAPTURER, id, ResourceRegistry.LOCAL_TRACK, id);
+            resources.register(ResourceRegistry.SURFACE_TEXTURE_HELPER, id, ResourceRegistry.LOCAL_TRACK, id);
         }
     }
 
     void applyConstraints(String trackId, ReadableMap constraints, Promise promise) {
         TrackPrivate track = tracks.get(trackId);
+        DevicePerformanceProfile performanceProfile = webRTCModule.performanceProfile;
+        if (performanceProfile != null && track != null
+                && track.videoCaptureController instanceof CameraCaptureController) {
+            constraints = performanceProfile.capVideoConstraints(constraints);
+        }
         if (track != null && track.videoCaptureController instanceof AbstractVideoCaptureController) {
             AbstractVideoCaptureController captureController =
                     (AbstractVideoCaptureController) track.videoCaptureController;
@@ -269,6 +300,18 @@ class GetUserMediaImpl {
         }
     }
 
+    void setScreenCaptureRegion(String trackId, @Nullable ReadableMap region, Promise promise) {
+        TrackPrivate track = tracks.get(trackId);
+        if (track == null || !(track.videoCaptureController instanceof ScreenCaptureController)) {
+            promise.reject(new Exception("Screen capture track not found!"));
+            return;
+        }
+
+        ScreenCaptureController captureController = (ScreenCaptureController) track.videoCaptureController;
+        captureController.setRegion(ScreenRegionCropper.Region.fromReadableMap(region));
+        promise.resolve(captureController.getSettings());
+    }
+
     void initializeConstraints(ReadableMap constraints) {
 
         // Handle the incoming params
@@ -281,6 +324,9 @@ class GetUserMediaImpl {
         // Default values
         boolean createConfigForDefaultDisplay = false;
         float scale = 1.0f;
+        boolean contentAdaptive = false;
+        int idleFrameRate = ScreenContentAdapter.DEFAULT_IDLE_FPS;
+        ScreenRegionCropper.Region screenRegion = null;
 
         if (androidConstraints != null) {
             // MediaProjectionConfig need API level 34
@@ -293,14 +339,28 @@ class GetUserMediaImpl {
                 && androidConstraints.getType("resolutionScale") == ReadableType.Number) {
                 scale = (float) androidConstraints.getDouble("resolutionScale");
             }
+            if (androidConstraints.hasKey("contentAdaptive")
+                && androidConstraints.getType("contentAdaptive") == ReadableType.Boolean) {
+                contentAdaptive = androidConstraints.getBoolean("contentAdaptive");
+            }
+            if (androidConstraints.hasKey("idleFrameRate")
+                && androidConstraints.getType("idleFrameRate") == ReadableType.Number) {
+                idleFrameRate = androidConstraints.getInt("idleFrameRate");
+            }
+            if (androidConstraints.hasKey("crop") && androidConstraints.getType("crop") == ReadableType.Map) {
+                screenRegion = ScreenRegionCropper.Region.fromReadableMap(androidConstraints.getMap("crop"));
+            }
         }
 
         this.createConfigForDefaultDisplay = createConfigForDefaultDisplay;
         // Force the value in [0, 1]
         this.resolutionScale = Math.max(0.0f, Math.min(1.0f, scale));
+        this.contentAdaptive = contentAdaptive;
+        this.idleFrameRate = Math.max(1, idleFrameRate);
+        this.screenRegion = screenRegion;
 
         Log.d(TAG, "initializeConstraints: createConfigForDefaultDisplay=" + this.createConfigForDefaultDisplay
-            + " resolutionScale=" + this.resolutionScale);
+            + " resolutionScale=" + this.resolutionScale + " contentAdaptive=" + this.contentAdaptive);
     }
 
     void getDisplayMedia(final ReadableMap constraints, Promise promise) {
@@ -415,6 +475,7 @@ class GetUserMediaImpl {
 
         Log.d(TAG, "MediaStream id: " + streamId);
         webRTCModule.localStreams.put(streamId, mediaStream);
+        webRTCModule.resources.register(ResourceRegistry.LOCAL_STREAM, streamId);
 
         successCallback.accept(streamId, tracksInfo);
     }
@@ -425,6 +486,10 @@ class GetUserMediaImpl {
         int height = displayMetrics.heightPixels;
         ScreenCaptureController screenCaptureController = new ScreenCaptureController(
                 reactContext.getCurrentActivity(), width, height, mediaProjectionPermissionResultData, resolutionScale);
+        if (contentAdaptive) {
+            screenCaptureController.setContentAdaptive(idleFrameRate);
+        }
+        screenCaptureController.setRegion(screenRegion);
         return createVideoTrack(screenCaptureController);
     }
 
@@ -451,12 +516,15 @@ class GetUserMediaImpl {
         videoCaptureController.setCapturerEventsListener(eventsEmitter);
 
         VideoSource videoSource = pcFactory.createVideoSource(videoCapturer.isScreencast());
-        videoCapturer.initialize(surfaceTextureHelper, reactContext, videoSource.getCapturerObserver());
+        videoCapturer.initialize(surfaceTextureHelper,
+                reactContext,
+                videoCaptureController.createCapturerObserver(videoSource.getCapturerObserver()));
 
         VideoTrack track = pcFactory.createVideoTrack(id, videoSource);
 
         track.setEnabled(true);
         tracks.put(id, new TrackPrivate(track, videoSource, videoCaptureController, surfaceTextureHelper));
+        registerTrack(id, true);
 
         videoCaptureController.startCapture();
 
@@ -476,6 +544,12 @@ class GetUserMediaImpl {
             VideoSource videoSource = (VideoSource) track.mediaSource;
             SurfaceTextureHelper surfaceTextureHelper = track.surfaceTextureHelper;
 
+            DevicePerformanceProfile performanceProfile = webRTCModule.performanceProfile;
+            if (names != null && performanceProfile != null && !performanceProfile.videoEffects) {
+                Log.w(TAG, "Video effects are disabled by the " + performanceProfile.tier + " performance profile");
+                return;
+            }
+
             if (names != null) {
                 List<VideoFrameProcessor> processors =
                         names.toArrayList()
@@ -494,9 +568,11 @@ class GetUserMediaImpl {
 
                 VideoEffectProcessor videoEffectProcessor = new VideoEffectProcessor(processors, surfaceTextureHelper);
                 videoSource.setVideoProcessor(videoEffectProcessor);
+                track.setVideoEffectProcessor(videoEffectProcessor);
 
             } else {
                 videoSource.setVideoProcessor(null);
+                track.setVideoEffectProcessor(null);
             }
         }
     }
@@ -521,6 +597,17 @@ class GetUserMediaImpl {
 
         private final SurfaceTextureHelper surfaceTextureHelper;
 
+        /**
+         * The {@code VideoEffectProcessor} set on {@link #mediaSource}, if any.
+         */
+        private VideoEffectProcessor videoEffectProcessor;
+
+        /**
+         * The {@code VideoFrameMetrics} observing the frames of {@link #track}
+         * if it is a {@link VideoTrack}.
+         */
+        public final VideoFrameMetrics frameMetrics;
+
         /**
          * Whether this object has been disposed or not.
          */
@@ -543,13 +630,37 @@ class GetUserMediaImpl {
             this.videoCaptureController = videoCaptureController;
             this.surfaceTextureHelper = surfaceTextureHelper;
             this.disposed = false;
+
+            if (track instanceof VideoTrack) {
+                this.frameMetrics = new VideoFrameMetrics();
+                ((VideoTrack) track).addSink(frameMetrics);
+            } else {
+                this.frameMetrics = null;
+            }
         }
 
-        public void dispose() {
+        /**
+         * Sets the {@code VideoEffectProcessor} in use, releasing the previous one.
+         */
+        void setVideoEffectProcessor(VideoEffectProcessor videoEffectProcessor) {
+            if (this.videoEffectProcessor != null) {
+                this.videoEffectProcessor.release();
+            }
+            this.videoEffectProcessor = videoEffectProcessor;
+        }
+
+        /**
+         * Disposes the native objects, unregistering each from the given
+         * registry once it is.
+         */
+        public void dispose(ResourceRegistry resources) {
             if (!disposed) {
+                String id = track.id();
+
                 if (videoCaptureController != null) {
                     if (videoCaptureController.stopCapture()) {
                         videoCaptureController.dispose();
+                        resources.unregister(ResourceRegistry.VIDEO_CAPTURER, id);
                     }
                 }
 
@@ -559,13 +670,24 @@ class GetUserMediaImpl {
                  * called. This also means that the caller can reuse the SurfaceTextureHelper to initialize a new
                  * VideoCapturer once the previous VideoCapturer has been disposed. */
 
+                // Releases the GL resources of the effects on the texture thread, which must be
+                // done before the SurfaceTextureHelper below releases its EGL context.
+                setVideoEffectProcessor(null);
+
                 if (surfaceTextureHelper != null) {
                     surfaceTextureHelper.stopListening();
                     surfaceTextureHelper.dispose();
+                    resources.unregister(ResourceRegistry.SURFACE_TEXTURE_HELPER, id);
+                }
+
+                if (frameMetrics != null) {
+                    ((VideoTrack) track).removeSink(frameMetrics);
                 }
 
                 mediaSource.dispose();
+                resources.unregister(ResourceRegistry.MEDIA_SOURCE, id);
                 track.dispose();
+                resources.unregister(ResourceRegistry.LOCAL_TRACK, id);
                 disposed = true;
             }
         }
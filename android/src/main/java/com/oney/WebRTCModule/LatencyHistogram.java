@@ -0,0 +1,83 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with power-of-two buckets. Recording is a
+ * couple of atomic increments, so it is cheap enough to be used on every task
+ * or frame. Percentiles are approximated by the upper bound of the bucket they
+ * fall in, which is good enough to tell a 2ms operation from a 200ms one.
+ */
+final class LatencyHistogram {
+    /**
+     * Bucket {@code i} holds durations in {@code [2^(i-1), 2^i)} microseconds,
+     * bucket 0 holds anything below 1us and the last bucket is open-ended.
+     */
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void recordNanos(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = micros <= 0 ? 0 : Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long max;
+        while (micros > (max = maxMicros.get())) {
+            if (maxMicros.compareAndSet(max, micros)) {
+                break;
+            }
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the approximate value, in milliseconds, below which the given
+     * fraction of the recorded durations fall.
+     *
+     * @param fraction the percentile as a value in {@code [0, 1]}.
+     */
+    double getPercentileMs(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                // The upper bound of the bucket, capped by the largest value seen.
+                return Math.min(1L << i, maxMicros.get()) / 1000.0;
+            }
+        }
+
+        return maxMicros.get() / 1000.0;
+    }
+
+    WritableMap toWritableMap() {
+        long total = count.get();
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", total);
+        map.putDouble("meanMs", total == 0 ? 0 : totalMicros.get() / 1000.0 / total);
+        map.putDouble("p50Ms", getPercentileMs(0.5));
+        map.putDouble("p90Ms", getPercentileMs(0.9));
+        map.putDouble("p99Ms", getPercentileMs(0.99));
+        map.putDouble("maxMs", maxMicros.get() / 1000.0);
+        return map;
+    }
+}
@@ -1,5 +1,6 @@
 package com.oney.WebRTCModule;
 
+import android.net.Uri;
 import android.util.Base64;
 import android.util.Log;
 
@@ -16,6 +17,7 @@ import org.webrtc.IceCandidate;
 import org.webrtc.MediaStream;
 import org.webrtc.MediaStreamTrack;
 import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
 import org.webrtc.RTCStatsReport;
 import org.webrtc.RtpReceiver;
 import org.webrtc.RtpSender;
@@ -23,25 +25,32 @@ import org.webrtc.RtpTransceiver;
 import org.webrtc.SessionDescription;
 import org.webrtc.VideoTrack;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 class PeerConnectionObserver implements PeerConnection.Observer {
     private final static String TAG = WebRTCModule.TAG;
 
     private final Map<String, DataChannelWrapper> dataChannels;
-    private final int id;
+    private int id;
     private int transceiverNextId = 0;
 
     private PeerConnection peerConnection;
     final Map<String, String> remoteStreamIds; // Stream ID -> React tag
     final Map<String, MediaStream> remoteStreams; // React tag -> MediaStream
     final Map<String, MediaStreamTrack> remoteTracks;
-    private final VideoTrackAdapter videoTrackAdapters;
+    // React tag -> IDs of the tracks the remote end has it contain
+    private final Map<String, Set<String>> remoteStreamTracks;
+    private VideoTrackAdapter videoTrackAdapters;
     private final WebRTCModule webRTCModule;
 
     PeerConnectionObserver(WebRTCModule webRTCModule, int id) {
@@ -51,13 +60,54 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         this.remoteStreamIds = new HashMap<>();
         this.remoteStreams = new HashMap<>();
         this.remoteTracks = new HashMap<>();
+        this.remoteStreamTracks = new HashMap<>();
         this.videoTrackAdapters = new VideoTrackAdapter(webRTCModule, id);
     }
 
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Hands a pre-warmed observer over to the JS PeerConnection with the given
+     * id. Must be called in the executor, before any track has been added.
+     */
+    void setId(int id) {
+        this.id = id;
+        this.videoTrackAdapters = new VideoTrackAdapter(webRTCModule, id);
+    }
+
+    /**
+     * Whether this is a pre-warmed PeerConnection which has not been claimed
+     * yet, JS doesn't know about it.
+     */
+    boolean isPooled() {
+        return id == PeerConnectionPool.POOLED_ID;
+    }
+
     PeerConnection getPeerConnection() {
         return peerConnection;
     }
 
+    /**
+     * Sends an event about this PeerConnection, unless it's still pooled.
+     */
+    private void sendEvent(String eventName, WritableMap params) {
+        if (isPooled()) {
+            Log.d(TAG, "Dropping " + eventName + " for a pooled PeerConnection");
+            return;
+        }
+        webRTCModule.sendEvent(eventName, params);
+    }
+
+    private void sendCompactEvent(String eventName, WritableArray params) {
+        if (isPooled()) {
+            Log.d(TAG, "Dropping " + eventName + " for a pooled PeerConnection");
+            return;
+        }
+        webRTCModule.sendCompactEvent(eventName, params);
+    }
+
     void setPeerConnection(PeerConnection peerConnection) {
         this.peerConnection = peerConnection;
     }
@@ -80,8 +130,10 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
         // Remove DataChannel observers
         for (DataChannelWrapper dcw : dataChannels.values()) {
+            dcw.close(new IOException("The PeerConnection was disposed"));
             DataChannel dataChannel = dcw.getDataChannel();
             dataChannel.unregisterObserver();
+            webRTCModule.compactEvents.release(dcw.getReactTag());
         }
 
         // At this point there should be no local MediaStreams in the associated
@@ -89,12 +141,36 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         // by the PeerConnection instance (RtpReceivers, RtpSenders, etc.)
         peerConnection.dispose();
 
+        ResourceRegistry resources = webRTCModule.resources;
+        for (String trackId : remoteTracks.keySet()) {
+            resources.unregister(ResourceRegistry.REMOTE_TRACK, trackId);
+        }
+        for (String streamReactTag : remoteStreams.keySet()) {
+            resources.unregister(ResourceRegistry.REMOTE_STREAM, streamReactTag);
+        }
+        for (String reactTag : dataChannels.keySet()) {
+            resources.unregister(ResourceRegistry.DATA_CHANNEL, reactTag);
+        }
+
         remoteStreamIds.clear();
         remoteStreams.clear();
+        remoteStreamTracks.clear();
         remoteTracks.clear();
         dataChannels.clear();
     }
 
+    private void registerResource(String kind, String id) {
+        webRTCModule.resources.register(kind, id, ResourceRegistry.PEER_CONNECTION, String.valueOf(this.id));
+    }
+
+    VideoFrameMetrics getFrameMetrics(String trackId) {
+        return videoTrackAdapters.getFrameMetrics(trackId);
+    }
+
+    void setRemoteVideoPaused(VideoTrack track, boolean paused) {
+        videoTrackAdapters.setPaused(track, paused);
+    }
+
     public synchronized int getNextTransceiverId() {
         return transceiverNextId++;
     }
@@ -169,9 +245,11 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             return null;
         }
         final String reactTag = UUID.randomUUID().toString();
-        DataChannelWrapper dcw = new DataChannelWrapper(webRTCModule, id, reactTag, dataChannel);
+        boolean orderedAndReliable = init.ordered && init.maxRetransmits < 0 && init.maxRetransmitTimeMs < 0;
+        DataChannelWrapper dcw = new DataChannelWrapper(webRTCModule, id, reactTag, dataChannel, orderedAndReliable);
         dataChannels.put(reactTag, dcw);
         dataChannel.registerObserver(dcw);
+        registerResource(ResourceRegistry.DATA_CHANNEL, reactTag);
 
         WritableMap info = Arguments.createMap();
         info.putInt("peerConnectionId", id);
@@ -205,9 +283,12 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             return;
         }
 
+        dcw.close(new IOException("The DataChannel was disposed"));
         DataChannel dataChannel = dcw.getDataChannel();
         dataChannel.unregisterObserver();
         dataChannels.remove(reactTag);
+        webRTCModule.compactEvents.release(reactTag);
+        webRTCModule.resources.unregister(ResourceRegistry.DATA_CHANNEL, reactTag);
     }
 
     void dataChannelSend(String reactTag, String data, String type) {
@@ -226,15 +307,139 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             Log.e(TAG, "Unsupported data type: " + type);
             return;
         }
-        ByteBuffer byteBuffer = ByteBuffer.wrap(byteArray);
-        DataChannel.Buffer buffer = new DataChannel.Buffer(byteBuffer, type.equals("binary"));
-        dcw.getDataChannel().send(buffer);
+        dcw.send(byteArray, type.equals("binary"));
+    }
+
+    void dataChannelSetFramed(String reactTag, boolean framed, int chunkSize) {
+        DataChannelWrapper dcw = dataChannels.get(reactTag);
+        if (dcw == null) {
+            Log.d(TAG, "dataChannelSetFramed() dataChannel is null");
+            return;
+        }
+
+        if (!dcw.setFramed(framed, chunkSize)) {
+            Log.w(TAG, "dataChannelSetFramed() framing needs an ordered and reliable DataChannel");
+        }
+    }
+
+    void dataChannelSendFile(String reactTag, String path, Promise promise) {
+        DataChannelWrapper dcw = dataChannels.get(reactTag);
+        if (dcw == null) {
+            Log.d(TAG, "dataChannelSendFile() dataChannel is null");
+            promise.reject("E_INVALID_STATE", "DataChannel not found");
+            return;
+        }
+
+        File file = toFile(path);
+        if (!dcw.sendFile(file, error -> resolveFileTransfer(promise, file, error))) {
+            promise.reject("E_INVALID_STATE", "DataChannel is not framed");
+        }
+    }
+
+    void dataChannelReceiveToFile(String reactTag, String path, Promise promise) {
+        DataChannelWrapper dcw = dataChannels.get(reactTag);
+        if (dcw == null) {
+            Log.d(TAG, "dataChannelReceiveToFile() dataChannel is null");
+            promise.reject("E_INVALID_STATE", "DataChannel not found");
+            return;
+        }
+
+        File file = toFile(path);
+        if (!dcw.receiveFile(file, error -> resolveFileTransfer(promise, file, error))) {
+            promise.reject("E_INVALID_STATE", "DataChannel is not framed");
+        }
+    }
+
+    /**
+     * The file at the given path or <tt>file://</tt> URI.
+     */
+    private static File toFile(String path) {
+        if (path.startsWith("file://")) {
+            String uriPath = Uri.parse(path).getPath();
+            if (uriPath != null) {
+                return new File(uriPath);
+            }
+        }
+
+        return new File(path);
+    }
+
+    private static void resolveFileTransfer(Promise promise, File file, @Nullable Exception error) {
+        if (error != null) {
+            promise.reject("E_OPERATION_ERROR", error.getMessage(), error);
+            return;
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putString("path", file.getPath());
+        result.putDouble("bytes", file.length());
+        promise.resolve(result);
     }
 
     void getStats(Promise promise) {
         peerConnection.getStats(rtcStatsReport -> promise.resolve(StringUtils.statsToJSON(rtcStatsReport)));
     }
 
+    void getStats(StatsFilter filter, Promise promise) {
+        peerConnection.getStats(rtcStatsReport -> promise.resolve(StringUtils.statsToJSON(rtcStatsReport, filter)));
+    }
+
+    /**
+     * Resolves with the codec and the implementation each video stream is
+     * actually using, as reported by the stats: <tt>[{direction, ssrc, mid,
+     * rid, mimeType, implementation, powerEfficient}]</tt>.
+     */
+    void getCodecImplementations(Promise promise) {
+        peerConnection.getStats(report -> {
+            Map<String, RTCStats> statsMap = report.getStatsMap();
+            WritableArray streams = Arguments.createArray();
+
+            for (RTCStats stats : statsMap.values()) {
+                boolean outbound = "outbound-rtp".equals(stats.getType());
+                if (!outbound && !"inbound-rtp".equals(stats.getType())) {
+                    continue;
+                }
+
+                Map<String, Object> members = stats.getMembers();
+                if (!"video".equals(members.get("kind"))) {
+                    continue;
+                }
+
+                WritableMap stream = Arguments.createMap();
+                stream.putString("direction", outbound ? "send" : "receive");
+                Object ssrc = members.get("ssrc");
+                if (ssrc instanceof Number) {
+                    stream.putDouble("ssrc", ((Number) ssrc).doubleValue());
+                }
+                putString(stream, "mid", members.get("mid"));
+                putString(stream, "rid", members.get("rid"));
+
+                RTCStats codec = statsMap.get(String.valueOf(members.get("codecId")));
+                if (codec != null) {
+                    putString(stream, "mimeType", codec.getMembers().get("mimeType"));
+                }
+
+                putString(stream,
+                        "implementation",
+                        members.get(outbound ? "encoderImplementation" : "decoderImplementation"));
+                Object powerEfficient = members.get(outbound ? "powerEfficientEncoder" : "powerEfficientDecoder");
+                if (powerEfficient instanceof Boolean) {
+                    stream.putBoolean("powerEfficient", (Boolean) powerEfficient);
+                }
+
+                streams.pushMap(stream);
+            }
+
+            promise.resolve(streams);
+        });
+    }
+
+    private static void putString(WritableMap map, String key, @Nullable Object value) {
+        if (value instanceof String) {
+            map.putString(key, (String) value);
+        }
+    }
+
     public void receiverGetStats(String receiverId, Promise promise) {
         RtpReceiver targetReceiver = null;
         for (RtpReceiver r : peerConnection.getReceivers()) {
@@ -277,7 +482,24 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     public void onIceCandidate(final IceCandidate candidate) {
         Log.d(TAG, "onIceCandidate");
 
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onIceCandidate", () -> {
+            CompactEvents compactEvents = webRTCModule.compactEvents;
+            if (compactEvents.isEnabled()) {
+                // Can be null when doing a rollback.
+                SessionDescription newSdp = peerConnection.getLocalDescription();
+
+                WritableArray params = Arguments.createArray();
+                params.pushInt(id);
+                params.pushInt(candidate.sdpMLineIndex);
+                params.pushString(candidate.sdpMid);
+                params.pushString(candidate.sdp);
+                params.pushString(newSdp != null ? newSdp.type.canonicalForm() : null);
+                params.pushString(newSdp != null ? newSdp.description : null);
+
+                sendCompactEvent("peerConnectionGotICECandidate", params);
+                return;
+            }
+
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", id);
 
@@ -298,7 +520,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             }
             params.putMap("sdp", newSdpMap);
 
-            webRTCModule.sendEvent("peerConnectionGotICECandidate", params);
+            sendEvent("peerConnectionGotICECandidate", params);
         });
     }
 
@@ -307,22 +529,22 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
     @Override
     public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onIceConnectionChange", () -> {
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", id);
             params.putString("iceConnectionState", iceConnectionStateString(iceConnectionState));
-            webRTCModule.sendEvent("peerConnectionIceConnectionChanged", params);
+            sendEvent("peerConnectionIceConnectionChanged", params);
         });
     }
 
     @Override
     public void onConnectionChange(PeerConnection.PeerConnectionState peerConnectionState) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onConnectionChange", () -> {
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", id);
             params.putString("connectionState", peerConnectionStateString(peerConnectionState));
 
-            webRTCModule.sendEvent("peerConnectionStateChanged", params);
+            sendEvent("peerConnectionStateChanged", params);
         });
     }
 
@@ -333,7 +555,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
         Log.d(TAG, "onIceGatheringChange" + iceGatheringState.name());
 
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onIceGatheringChange", () -> {
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", id);
             params.putString("iceGatheringState", iceGatheringStateString(iceGatheringState));
@@ -349,17 +571,20 @@ class PeerConnectionObserver implements PeerConnection.Observer {
                 }
                 params.putMap("sdp", newSdpMap);
             }
-            webRTCModule.sendEvent("peerConnectionIceGatheringChanged", params);
+            sendEvent("peerConnectionIceGatheringChanged", params);
         });
     }
 
     @Override
     public void onDataChannel(DataChannel dataChannel) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onDataChannel", () -> {
             final String reactTag = UUID.randomUUID().toString();
-            DataChannelWrapper dcw = new DataChannelWrapper(webRTCModule, id, reactTag, dataChannel);
+            // The reliability of a remote channel can't be read from it, the
+            // app is trusted to only frame reliable ones.
+            DataChannelWrapper dcw = new DataChannelWrapper(webRTCModule, id, reactTag, dataChannel, true);
             dataChannels.put(reactTag, dcw);
             dataChannel.registerObserver(dcw);
+            registerResource(ResourceRegistry.DATA_CHANNEL, reactTag);
 
             WritableMap info = Arguments.createMap();
             info.putInt("peerConnectionId", id);
@@ -380,26 +605,32 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             params.putInt("pcId", id);
             params.putMap("dataChannel", info);
 
-            webRTCModule.sendEvent("peerConnectionDidOpenDataChannel", params);
+            sendEvent("peerConnectionDidOpenDataChannel", params);
         });
     }
 
     @Override
     public void onRenegotiationNeeded() {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onRenegotiationNeeded", () -> {
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", id);
-            webRTCModule.sendEvent("peerConnectionOnRenegotiationNeeded", params);
+            sendEvent("peerConnectionOnRenegotiationNeeded", params);
         });
     }
 
     @Override
     public void onSignalingChange(PeerConnection.SignalingState signalingState) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onSignalingChange", () -> {
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", id);
             params.putString("signalingState", signalingStateString(signalingState));
-            webRTCModule.sendEvent("peerConnectionSignalingStateChanged", params);
+            sendEvent("peerConnectionSignalingStateChanged", params);
+
+            // A negotiation just completed, transceivers may have stopped.
+            if (signalingState == PeerConnection.SignalingState.STABLE
+                    && WebRTCModuleOptions.getInstance().reclaimRemoteStreams) {
+                reclaimRemoteStreams(null);
+            }
         });
     }
 
@@ -411,7 +642,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     public void onAddTrack(final RtpReceiver receiver, final MediaStream[] mediaStreams) {
         Log.d(TAG, "onAddTrack");
 
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onAddTrack", () -> {
             RtpTransceiver transceiver = null;
             for (RtpTransceiver t : this.peerConnection.getTransceivers()) {
                 if (Objects.equals(t.getReceiver().id(), receiver.id())) {
@@ -436,6 +667,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
                     videoTrackAdapters.addAdapter((VideoTrack) track);
                 }
                 remoteTracks.put(track.id(), track);
+                registerResource(ResourceRegistry.REMOTE_TRACK, track.id());
             }
 
             WritableMap params = Arguments.createMap();
@@ -452,6 +684,8 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
                 // Make sure the stored stream is updated in case we get a new reference.
                 remoteStreams.put(streamReactTag, stream);
+                registerResource(ResourceRegistry.REMOTE_STREAM, streamReactTag);
+                remoteStreamTracks.computeIfAbsent(streamReactTag, k -> new HashSet<>()).add(track.id());
 
                 streams.pushMap(SerializeUtils.serializeStream(id, streamReactTag, stream));
             }
@@ -462,7 +696,11 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             params.putMap("transceiver", SerializeUtils.serializeTransceiver(id, transceiver));
             params.putInt("pcId", this.id);
 
-            webRTCModule.sendEvent("peerConnectionOnTrack", params);
+            sendEvent("peerConnectionOnTrack", params);
+
+            if (!existingTrack && track.kind().equals(MediaStreamTrack.VIDEO_TRACK_KIND)) {
+                webRTCModule.remoteVideoSubscriptions.evaluate();
+            }
         });
     }
 
@@ -480,15 +718,108 @@ class PeerConnectionObserver implements PeerConnection.Observer {
      */
     @Override
     public void onRemoveTrack(RtpReceiver receiver) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("onRemoveTrack", () -> {
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", this.id);
             params.putString("receiverId", receiver.id());
 
-            webRTCModule.sendEvent("peerConnectionOnRemoveTrack", params);
+            sendEvent("peerConnectionOnRemoveTrack", params);
+
+            if (WebRTCModuleOptions.getInstance().reclaimRemoteStreams) {
+                MediaStreamTrack track = receiver.track();
+                reclaimRemoteStreams(track != null ? track.id() : null);
+            }
         });
     };
 
+    /**
+     * Drops the remote tracks whose transceiver has stopped, removes them and
+     * the given removed track from the remote streams, and drops the streams
+     * left without tracks, so the remote state follows the active
+     * participants instead of growing with every one ever seen. JS is told
+     * with a <tt>peerConnectionRemoteStreamsReclaimed</tt> event. Must be
+     * called in the executor.
+     *
+     * Tracks whose transceiver is only inactive are kept, as the transceiver
+     * can be reused.
+     */
+    private void reclaimRemoteStreams(@Nullable String removedTrackId) {
+        if (peerConnection == null) {
+            return;
+        }
+
+        Set<String> liveTrackIds = new HashSet<>();
+        for (RtpTransceiver transceiver : peerConnection.getTransceivers()) {
+            MediaStreamTrack track = transceiver.getReceiver().track();
+            if (!transceiver.isStopped() && track != null) {
+                liveTrackIds.add(track.id());
+            }
+        }
+
+        WritableArray reclaimedTracks = Arguments.createArray();
+        boolean reclaimedVideo = false;
+        Set<String> removedTrackIds = new HashSet<>();
+        if (removedTrackId != null) {
+            removedTrackIds.add(removedTrackId);
+        }
+
+        Iterator<Map.Entry<String, MediaStreamTrack>> tracksIt = remoteTracks.entrySet().iterator();
+        while (tracksIt.hasNext()) {
+            Map.Entry<String, MediaStreamTrack> entry = tracksIt.next();
+            if (liveTrackIds.contains(entry.getKey())) {
+                continue;
+            }
+
+            MediaStreamTrack track = entry.getValue();
+            if (track.kind().equals(MediaStreamTrack.VIDEO_TRACK_KIND)) {
+                videoTrackAdapters.removeAdapter((VideoTrack) track);
+                reclaimedVideo = true;
+            }
+            tracksIt.remove();
+            webRTCModule.resources.unregister(ResourceRegistry.REMOTE_TRACK, entry.getKey());
+            removedTrackIds.add(entry.getKey());
+            reclaimedTracks.pushString(entry.getKey());
+        }
+
+        WritableArray reclaimedStreams = Arguments.createArray();
+        Iterator<Map.Entry<String, Set<String>>> streamsIt = remoteStreamTracks.entrySet().iterator();
+        while (streamsIt.hasNext()) {
+            Map.Entry<String, Set<String>> entry = streamsIt.next();
+            Set<String> trackIds = entry.getValue();
+            trackIds.removeAll(removedTrackIds);
+            if (!trackIds.isEmpty()) {
+                continue;
+            }
+
+            String streamReactTag = entry.getKey();
+            streamsIt.remove();
+            MediaStream stream = remoteStreams.remove(streamReactTag);
+            if (stream != null) {
+                remoteStreamIds.remove(stream.getId());
+            }
+            webRTCModule.resources.unregister(ResourceRegistry.REMOTE_STREAM, streamReactTag);
+            reclaimedStreams.pushString(streamReactTag);
+        }
+
+        if (reclaimedTracks.size() == 0 && reclaimedStreams.size() == 0) {
+            return;
+        }
+
+        Log.d(TAG,
+                "Reclaimed " + reclaimedStreams.size() + " remote streams and " + reclaimedTracks.size()
+                        + " remote tracks for " + id);
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("pcId", id);
+        params.putArray("streamIds", reclaimedStreams);
+        params.putArray("trackIds", reclaimedTracks);
+        sendEvent("peerConnectionRemoteStreamsReclaimed", params);
+
+        if (reclaimedVideo) {
+            webRTCModule.remoteVideoSubscriptions.evaluate();
+        }
+    }
+
     // This is only added to compile. Plan B is not supported anymore.
     @Override
     public void onRemoveStream(MediaStream stream) {}
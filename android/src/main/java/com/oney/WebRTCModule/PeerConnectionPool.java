@@ -0,0 +1,186 @@
+package com.oney.WebRTCModule;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Opt-in pool of pre-warmed PeerConnections, created ahead of time from a
+ * template configuration with an ICE candidate pool, so that a
+ * <tt>peerConnectionInit</tt> with the same configuration gets one which has
+ * already gathered its candidates instead of creating it synchronously.
+ *
+ * Idle PeerConnections are replaced after a while, so the gathered candidates
+ * and TURN allocations stay valid.
+ *
+ * All the methods must be called in the executor.
+ */
+class PeerConnectionPool {
+    private static final String TAG = PeerConnectionPool.class.getSimpleName();
+
+    static final long DEFAULT_MAX_IDLE_MS = 120000;
+
+    /**
+     * Candidate pool size used when the template doesn't ask for one.
+     */
+    private static final int DEFAULT_ICE_CANDIDATE_POOL_SIZE = 1;
+
+    /**
+     * Id of the pooled PeerConnections until they are claimed. It can't be
+     * the id of a JS PeerConnection, nor -1 which stands for local tracks.
+     * Their events are not sent until then.
+     */
+    static final int POOLED_ID = Integer.MIN_VALUE;
+
+    interface Factory {
+        @Nullable
+        PeerConnectionObserver create(PeerConnection.RTCConfiguration configuration, int id);
+    }
+
+    private static class Pooled {
+        final PeerConnectionObserver observer;
+        final long createdAt;
+
+        Pooled(PeerConnectionObserver observer) {
+            this.observer = observer;
+            this.createdAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private final Factory factory;
+    private final Deque<Pooled> pool = new ArrayDeque<>();
+
+    private Map<String, Object> template;
+    private PeerConnection.RTCConfiguration configuration;
+    private int size;
+    private long maxIdleMs = DEFAULT_MAX_IDLE_MS;
+    private Timer timer;
+
+    PeerConnectionPool(Factory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Starts keeping {@code size} PeerConnections created from the given
+     * configuration. Any previously pooled one is disposed.
+     *
+     * @param template the JS configuration, which later configurations are
+     * compared to.
+     * @param configuration the parsed configuration.
+     */
+    void configure(
+            Map<String, Object> template, PeerConnection.RTCConfiguration configuration, int size, long maxIdleMs) {
+        clear();
+
+        if (configuration.iceCandidatePoolSize <= 0) {
+            configuration.iceCandidatePoolSize = DEFAULT_ICE_CANDIDATE_POOL_SIZE;
+        }
+
+        this.template = withoutCandidatePoolSize(template);
+        this.configuration = configuration;
+        this.size = Math.max(0, size);
+        this.maxIdleMs = Math.max(10000, maxIdleMs);
+
+        if (this.size == 0) {
+            return;
+        }
+
+        fill();
+
+        timer = new Timer("PeerConnectionPoolTimer", /* isDaemon */ true);
+        long period = Math.max(5000, this.maxIdleMs / 4);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                ThreadUtils.runOnExecutor("peerConnectionPoolRefresh", PeerConnectionPool.this::refresh);
+            }
+        }, period, period);
+    }
+
+    /**
+     * Disposes all the pooled PeerConnections and stops pooling.
+     */
+    void clear() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+
+        for (Pooled pooled : pool) {
+            pooled.observer.dispose();
+        }
+        pool.clear();
+
+        template = null;
+        configuration = null;
+        size = 0;
+    }
+
+    /**
+     * Claims a pooled PeerConnection if the given JS configuration is the
+     * same as the template one, the candidate pool size aside, and hands it
+     * over to the given id.
+     */
+    @Nullable
+    PeerConnectionObserver claim(@Nullable Map<String, Object> configuration, int id) {
+        if (template == null || configuration == null || pool.isEmpty()
+                || !template.equals(withoutCandidatePoolSize(configuration))) {
+            return null;
+        }
+
+        Pooled pooled = pool.poll();
+        Log.d(TAG, "Claimed a PeerConnection idle for " + (SystemClock.elapsedRealtime() - pooled.createdAt) + "ms");
+        pooled.observer.setId(id);
+
+        // Replace it once the claiming call is done.
+        ThreadUtils.runOnExecutor("peerConnectionPoolFill", this::fill);
+
+        return pooled.observer;
+    }
+
+    private void refresh() {
+        if (template == null) {
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Pooled> it = pool.iterator();
+        while (it.hasNext()) {
+            Pooled pooled = it.next();
+            if (now - pooled.createdAt >= maxIdleMs) {
+                it.remove();
+                pooled.observer.dispose();
+            }
+        }
+
+        fill();
+    }
+
+    private void fill() {
+        while (configuration != null && pool.size() < size) {
+            PeerConnectionObserver observer = factory.create(configuration, POOLED_ID);
+            if (observer == null) {
+                Log.w(TAG, "Failed to create a pooled PeerConnection");
+                return;
+            }
+            pool.add(new Pooled(observer));
+        }
+    }
+
+    private static Map<String, Object> withoutCandidatePoolSize(Map<String, Object> configuration) {
+        Map<String, Object> copy = new HashMap<>(configuration);
+        copy.remove("iceCandidatePoolSize");
+        return copy;
+    }
+}
@@ -0,0 +1,318 @@
+package com.oney.WebRTCModule;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpTransceiver;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stops receiving remote video tracks which are not worth decoding, as decided
+ * by a {@link RemoteVideoSubscriptionPolicy}, based on which tracks are bound
+ * to a {@link WebRTCView}. Tracks are resumed as soon as a view binds them
+ * again.
+ *
+ * Unsubscribed tracks are paused locally right away: the renderers of the
+ * views bound to them and their mute detection sink are detached, so their
+ * frames are neither rendered nor inspected. Unsubscribing a track also emits
+ * a <tt>remoteVideoSubscriptionChanged</tt> event, which apps talking to an
+ * SFU can use to stop the forwarding of the stream. Optionally the receive
+ * direction of the transceiver is dropped as well, which requires a
+ * renegotiation to take effect.
+ *
+ * All the methods must be called in the executor.
+ */
+class RemoteVideoSubscriptionManager {
+    private static final String TAG = RemoteVideoSubscriptionManager.class.getSimpleName();
+
+    private final WebRTCModule webRTCModule;
+
+    /**
+     * Sinks of the views rendering each track, by track id.
+     */
+    private final Map<String, List<VideoSink>> renderers = new HashMap<>();
+    private final Map<String, Long> lastRenderedAt = new HashMap<>();
+
+    /**
+     * Keys of the tracks which have been unsubscribed.
+     */
+    private final Set<String> unsubscribed = new HashSet<>();
+
+    /**
+     * Ids of the tracks whose sinks are currently detached.
+     */
+    private final Set<String> pausedTrackIds = new HashSet<>();
+
+    /**
+     * Directions the transceivers had before their receive direction was
+     * dropped, by track key. They are kept until the transceiver stops or the
+     * app sets another direction, even if the track goes away meanwhile.
+     */
+    private final Map<String, RtpTransceiver.RtpTransceiverDirection> savedDirections = new HashMap<>();
+
+    private RemoteVideoSubscriptionPolicy policy;
+    private boolean manageTransceiverDirection;
+
+    RemoteVideoSubscriptionManager(WebRTCModule webRTCModule) {
+        this.webRTCModule = webRTCModule;
+    }
+
+    /**
+     * Installs a new policy, or none to receive every track, and re-evaluates
+     * all the tracks.
+     */
+    void setPolicy(RemoteVideoSubscriptionPolicy policy, boolean manageTransceiverDirection) {
+        this.policy = policy;
+        this.manageTransceiverDirection = manageTransceiverDirection;
+
+        evaluate();
+    }
+
+    /**
+     * Called when a view added its sink to the given track.
+     */
+    void onRendererAttached(VideoTrack track, VideoSink sink) {
+        String trackId = track.id();
+        renderers.computeIfAbsent(trackId, k -> new ArrayList<>()).add(sink);
+        lastRenderedAt.put(trackId, SystemClock.elapsedRealtime());
+
+        // The sink is added again when the track resumes.
+        if (pausedTrackIds.contains(trackId)) {
+            track.removeSink(sink);
+        }
+
+        evaluate();
+    }
+
+    /**
+     * Called when a view is about to remove its sink from the given track.
+     */
+    void onRendererDetached(VideoTrack track, VideoSink sink) {
+        String trackId = track.id();
+        List<VideoSink> sinks = renderers.get(trackId);
+        if (sinks == null || !sinks.remove(sink)) {
+            return;
+        }
+        if (sinks.isEmpty()) {
+            renderers.remove(trackId);
+        }
+        lastRenderedAt.put(trackId, SystemClock.elapsedRealtime());
+
+        evaluate();
+    }
+
+    /**
+     * Called before the app sets the direction of a transceiver, which then
+     * takes precedence over the direction saved when its track was paused.
+     */
+    void onDirectionSet(int pcId, RtpTransceiver transceiver) {
+        MediaStreamTrack track = transceiver.getReceiver().track();
+        if (track != null && savedDirections.remove(pcId + "/" + track.id()) != null) {
+            Log.d(TAG, "Dropping the saved direction of " + pcId + "/" + track.id());
+        }
+    }
+
+    /**
+     * Applies the policy to all the live remote video tracks.
+     */
+    void evaluate() {
+        List<PeerConnectionObserver> observers = webRTCModule.getPeerConnectionObservers();
+        Map<Integer, PeerConnectionObserver> observersById = new HashMap<>();
+        Map<String, PeerConnectionObserver> owners = new HashMap<>();
+        Map<String, VideoTrack> tracks = new HashMap<>();
+        List<RemoteVideoSubscriptionPolicy.Candidate> candidates = new ArrayList<>();
+
+        for (PeerConnectionObserver pco : observers) {
+            observersById.put(pco.getId(), pco);
+            for (MediaStreamTrack track : pco.remoteTracks.values()) {
+                if (!(track instanceof VideoTrack) || !isLive(track)) {
+                    continue;
+                }
+
+                String trackId = track.id();
+                VideoFrameMetrics metrics = pco.getFrameMetrics(trackId);
+                Long renderedAt = lastRenderedAt.get(trackId);
+                RemoteVideoSubscriptionPolicy.Candidate candidate = new RemoteVideoSubscriptionPolicy.Candidate(
+                        pco.getId(),
+                        trackId,
+                        renderers.containsKey(trackId),
+                        renderedAt == null ? 0 : renderedAt,
+                        metrics == null ? 0 : metrics.getPixelsPerSecond());
+
+                candidates.add(candidate);
+                owners.put(candidate.key, pco);
+                tracks.put(candidate.key, (VideoTrack) track);
+            }
+        }
+
+        // Forget about the directions of the transceivers which are stopped,
+        // and the tracks which are gone unless their direction is to be
+        // restored when they come back.
+        Iterator<String> savedIt = savedDirections.keySet().iterator();
+        while (savedIt.hasNext()) {
+            String key = savedIt.next();
+            if (!tracks.containsKey(key) && isTransceiverStopped(observersById, key)) {
+                savedIt.remove();
+            }
+        }
+        unsubscribed.removeIf(key -> !tracks.containsKey(key) && !savedDirections.containsKey(key));
+        Set<String> liveTrackIds = new HashSet<>();
+        for (VideoTrack track : tracks.values()) {
+            liveTrackIds.add(track.id());
+        }
+        pausedTrackIds.retainAll(liveTrackIds);
+
+        Set<String> selected = null;
+        if (policy != null) {
+            try {
+                selected = policy.select(candidates);
+            } catch (Exception e) {
+                Log.w(TAG, "Remote video subscription policy failed", e);
+                return;
+            }
+        }
+
+        for (RemoteVideoSubscriptionPolicy.Candidate candidate : candidates) {
+            boolean subscribe = selected == null || selected.contains(candidate.key);
+            if (subscribe != unsubscribed.contains(candidate.key)) {
+                // A track which came back while unsubscribed has new sinks.
+                if (!subscribe) {
+                    setPaused(owners.get(candidate.key), tracks.get(candidate.key), true);
+                }
+                continue;
+            }
+
+            if (subscribe) {
+                unsubscribed.remove(candidate.key);
+            } else {
+                unsubscribed.add(candidate.key);
+            }
+            apply(owners.get(candidate.key), tracks.get(candidate.key), candidate, subscribe);
+        }
+    }
+
+    private void apply(PeerConnectionObserver pco,
+            VideoTrack track,
+            RemoteVideoSubscriptionPolicy.Candidate candidate,
+            boolean subscribe) {
+        Log.d(TAG, (subscribe ? "Resuming " : "Pausing ") + candidate.key);
+
+        setPaused(pco, track, !subscribe);
+
+        RtpTransceiver transceiver = findTransceiver(pco.getPeerConnection(), track.id());
+
+        if (transceiver != null && !transceiver.isStopped()) {
+            if (!subscribe) {
+                RtpTransceiver.RtpTransceiverDirection direction = transceiver.getDirection();
+                RtpTransceiver.RtpTransceiverDirection paused = withoutReceive(direction);
+                if (manageTransceiverDirection && paused != direction) {
+                    savedDirections.put(candidate.key, direction);
+                    transceiver.setDirection(paused);
+                }
+            } else {
+                RtpTransceiver.RtpTransceiverDirection saved = savedDirections.remove(candidate.key);
+                if (saved != null) {
+                    transceiver.setDirection(saved);
+                }
+            }
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("pcId", candidate.pcId);
+        params.putString("trackId", candidate.trackId);
+        params.putBoolean("subscribed", subscribe);
+        if (transceiver != null) {
+            params.putString("mid", transceiver.getMid());
+            params.putString("direction", SerializeUtils.serializeDirection(transceiver.getDirection()));
+        }
+
+        webRTCModule.sendEvent("remoteVideoSubscriptionChanged", params);
+    }
+
+    /**
+     * Detaches the renderers of the given track, or attaches them again. The
+     * mute detection sink stays attached, its detection is only suspended.
+     */
+    private void setPaused(PeerConnectionObserver pco, VideoTrack track, boolean paused) {
+        String trackId = track.id();
+        if (paused == pausedTrackIds.contains(trackId)) {
+            return;
+        }
+
+        List<VideoSink> sinks = renderers.get(trackId);
+        if (sinks != null) {
+            for (VideoSink sink : sinks) {
+                if (paused) {
+                    track.removeSink(sink);
+                } else {
+                    track.addSink(sink);
+                }
+            }
+        }
+        pco.setRemoteVideoPaused(track, paused);
+
+        if (paused) {
+            pausedTrackIds.add(trackId);
+        } else {
+            pausedTrackIds.remove(trackId);
+        }
+    }
+
+    private static boolean isTransceiverStopped(Map<Integer, PeerConnectionObserver> observersById, String key) {
+        int separator = key.indexOf('/');
+        PeerConnectionObserver pco = observersById.get(Integer.parseInt(key.substring(0, separator)));
+        RtpTransceiver transceiver =
+                pco == null ? null : findTransceiver(pco.getPeerConnection(), key.substring(separator + 1));
+        return transceiver == null || transceiver.isStopped();
+    }
+
+    private static RtpTransceiver findTransceiver(PeerConnection peerConnection, String trackId) {
+        if (peerConnection == null) {
+            return null;
+        }
+
+        for (RtpTransceiver transceiver : peerConnection.getTransceivers()) {
+            MediaStreamTrack track = transceiver.getReceiver().track();
+            if (track != null && trackId.equals(track.id())) {
+                return transceiver;
+            }
+        }
+
+        return null;
+    }
+
+    private static RtpTransceiver.RtpTransceiverDirection withoutReceive(
+            RtpTransceiver.RtpTransceiverDirection direction) {
+        switch (direction) {
+            case SEND_RECV:
+                return RtpTransceiver.RtpTransceiverDirection.SEND_ONLY;
+            case RECV_ONLY:
+                return RtpTransceiver.RtpTransceiverDirection.INACTIVE;
+            default:
+                return direction;
+        }
+    }
+
+    private static boolean isLive(MediaStreamTrack track) {
+        try {
+            return track.state() == MediaStreamTrack.State.LIVE;
+        } catch (IllegalStateException e) {
+            // The track has been disposed.
+            return false;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.oney.WebRTCModule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which remote video tracks should keep being received and decoded.
+ * Tracks which are not selected are unsubscribed by the
+ * {@code RemoteVideoSubscriptionManager}. A custom policy can be installed
+ * through {@link WebRTCModuleOptions#remoteVideoSubscriptionPolicy}.
+ */
+public interface RemoteVideoSubscriptionPolicy {
+    /**
+     * Selects the tracks to keep subscribed.
+     *
+     * @param candidates all the live remote video tracks.
+     * @return the {@link Candidate#key}s of the tracks to keep subscribed.
+     */
+    Set<String> select(List<Candidate> candidates);
+
+    /**
+     * A remote video track as seen by a {@link RemoteVideoSubscriptionPolicy}.
+     */
+    class Candidate {
+        public final String key;
+        public final int pcId;
+        public final String trackId;
+
+        /**
+         * Whether the track is currently rendered by at least one view.
+         */
+        public final boolean rendered;
+
+        /**
+         * The last time, in {@code SystemClock.elapsedRealtime} milliseconds,
+         * the track was bound to a view or 0 if it never was.
+         */
+        public final long lastRenderedAtMs;
+
+        /**
+         * The decoded pixels per second of the track, as last measured while
+         * it was being received, or 0 if unknown.
+         */
+        public final double pixelsPerSecond;
+
+        public Candidate(
+                int pcId, String trackId, boolean rendered, long lastRenderedAtMs, double pixelsPerSecond) {
+            this.key = pcId + "/" + trackId;
+            this.pcId = pcId;
+            this.trackId = trackId;
+            this.rendered = rendered;
+            this.lastRenderedAtMs = lastRenderedAtMs;
+            this.pixelsPerSecond = pixelsPerSecond;
+        }
+    }
+
+    /**
+     * Keeps only the tracks which are rendered.
+     */
+    static RemoteVideoSubscriptionPolicy visibleOnly() {
+        return candidates -> {
+            Set<String> selected = new HashSet<>();
+            for (Candidate candidate : candidates) {
+                if (candidate.rendered) {
+                    selected.add(candidate.key);
+                }
+            }
+            return selected;
+        };
+    }
+
+    /**
+     * Keeps at most {@code n} tracks, rendered ones first and then the most
+     * recently rendered ones.
+     */
+    static RemoteVideoSubscriptionPolicy lastN(int n) {
+        return candidates -> {
+            Set<String> selected = new HashSet<>();
+            for (Candidate candidate : byActivity(candidates)) {
+                if (selected.size() >= n) {
+                    break;
+                }
+                selected.add(candidate.key);
+            }
+            return selected;
+        };
+    }
+
+    /**
+     * Keeps rendered tracks, in order of activity, as long as their combined
+     * decoded pixel rate fits in the given budget. The most active rendered
+     * track is always kept.
+     */
+    static RemoteVideoSubscriptionPolicy maxPixelsPerSecond(double budget) {
+        return candidates -> {
+            Set<String> selected = new HashSet<>();
+            double total = 0;
+            for (Candidate candidate : byActivity(candidates)) {
+                if (!candidate.rendered) {
+                    break;
+                }
+                if (!selected.isEmpty() && total + candidate.pixelsPerSecond > budget) {
+                    continue;
+                }
+                selected.add(candidate.key);
+                total += candidate.pixelsPerSecond;
+            }
+            return selected;
+        };
+    }
+
+    /**
+     * Sorts candidates with the rendered ones first, each group by most
+     * recent render.
+     */
+    static List<Candidate> byActivity(List<Candidate> candidates) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        Collections.sort(sorted, (a, b) -> {
+            if (a.rendered != b.rendered) {
+                return a.rendered ? -1 : 1;
+            }
+            return Long.compare(b.lastRenderedAtMs, a.lastRenderedAtMs);
+        });
+        return sorted;
+    }
+}
@@ -0,0 +1,304 @@
+package com.oney.WebRTCModule;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Keeps track of the native objects the module creates and which are only
+ * released when JS asks for it: PeerConnections, DataChannels, streams,
+ * tracks and the sources, capturers and capture threads behind local tracks.
+ * Each is recorded with its owner, its age and where it was created.
+ *
+ * A periodic check flags the resources which look leaked: the ones whose
+ * owner has been released without them, and the local tracks which have not
+ * been part of any stream nor sent by any PeerConnection for a while. A flag
+ * is cleared if the condition stops holding.
+ */
+class ResourceRegistry {
+    private static final String TAG = ResourceRegistry.class.getSimpleName();
+
+    static final long DEFAULT_LEAK_CHECK_INTERVAL_MS = 60000;
+
+    static final String PEER_CONNECTION = "peerConnection";
+    static final String DATA_CHANNEL = "dataChannel";
+    static final String LOCAL_STREAM = "localStream";
+    static final String LOCAL_TRACK = "localTrack";
+    static final String REMOTE_STREAM = "remoteStream";
+    static final String REMOTE_TRACK = "remoteTrack";
+    static final String MEDIA_SOURCE = "mediaSource";
+    static final String VIDEO_CAPTURER = "videoCapturer";
+    static final String SURFACE_TEXTURE_HELPER = "surfaceTextureHelper";
+
+    /**
+     * How long a local track can go unreferenced before it is flagged, so the
+     * ones being moved between streams are not.
+     */
+    private static final long UNREFERENCED_GRACE_MS = 30000;
+
+    /**
+     * Helpers which only forward to {@link #register}, skipped when looking
+     * for the creation site of a resource.
+     */
+    private static final Set<String> REGISTER_WRAPPERS = new HashSet<>(
+            Arrays.asList(GetUserMediaImpl.class.getName() + ".registerTrack",
+                    PeerConnectionObserver.class.getName() + ".registerResource"));
+
+    interface ReferenceChecker {
+        /**
+         * Whether the given local track is part of a stream or sent by a
+         * PeerConnection. Called in the executor.
+         */
+        boolean isReferenced(String trackId);
+    }
+
+    private static class Resource {
+        final String kind;
+        final String id;
+        @Nullable
+        final String owner;
+        final String site;
+        final long createdAt;
+        @Nullable
+        String leakReason;
+        /**
+         * When a local track was first seen unreferenced, 0 if it's
+         * referenced.
+         */
+        long unreferencedSince;
+
+        Resource(String kind, String id, @Nullable String owner, String site) {
+            this.kind = kind;
+            this.id = id;
+            this.owner = owner;
+            this.site = site;
+            this.createdAt = SystemClock.elapsedRealtime();
+        }
+
+        WritableMap toWritableMap(long now) {
+            WritableMap map = Arguments.createMap();
+            map.putString("kind", kind);
+            map.putString("id", id);
+            if (owner != null) {
+                map.putString("owner", owner);
+            }
+            map.putString("site", site);
+            map.putDouble("ageMs", now - createdAt);
+            if (leakReason != null) {
+                map.putString("leak", leakReason);
+            }
+            return map;
+        }
+    }
+
+    private final WebRTCModule webRTCModule;
+    private final ReferenceChecker referenceChecker;
+    private final Map<String, Resource> resources = new LinkedHashMap<>();
+
+    @Nullable
+    private Timer timer;
+
+    ResourceRegistry(WebRTCModule webRTCModule, ReferenceChecker referenceChecker) {
+        this.webRTCModule = webRTCModule;
+        this.referenceChecker = referenceChecker;
+    }
+
+    /**
+     * Starts checking for leaks periodically, unless the interval is 0.
+     */
+    void start(long intervalMs) {
+        if (intervalMs <= 0) {
+            return;
+        }
+
+        timer = new Timer("ResourceLeakDetector", /* isDaemon */ true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                ThreadUtils.runOnExecutor("resourceLeakCheck", ResourceRegistry.this::checkLeaks);
+            }
+        }, intervalMs, intervalMs);
+    }
+
+    /**
+     * Stops checking for leaks.
+     */
+    void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    static String key(String kind, String id) {
+        return kind + "/" + id;
+    }
+
+    /**
+     * Records a resource, owned by the given resource if any. Registering
+     * an already registered resource keeps its original record.
+     */
+    void register(String kind, String id, @Nullable String ownerKind, @Nullable String ownerId) {
+        String key = key(kind, id);
+        String owner = ownerKind != null && ownerId != null ? key(ownerKind, ownerId) : null;
+
+        synchronized (this) {
+            if (resources.containsKey(key)) {
+                return;
+            }
+        }
+
+        Resource resource = new Resource(kind, id, owner, getCallSite());
+        synchronized (this) {
+            if (!resources.containsKey(key)) {
+                resources.put(key, resource);
+            }
+        }
+    }
+
+    void register(String kind, String id) {
+        register(kind, id, null, null);
+    }
+
+    synchronized void unregister(String kind, String id) {
+        resources.remove(key(kind, id));
+    }
+
+    /**
+     * Returns <tt>{resources: [...], counts: {kind: count}, leaks: count}</tt>,
+     * each resource with its kind, id, owner, age, creation site and leak
+     * reason if it has been flagged.
+     */
+    synchronized WritableMap getReport() {
+        long now = SystemClock.elapsedRealtime();
+        WritableArray list = Arguments.createArray();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int leaks = 0;
+
+        for (Resource resource : resources.values()) {
+            list.pushMap(resource.toWritableMap(now));
+            Integer count = counts.get(resource.kind);
+            counts.put(resource.kind, count == null ? 1 : count + 1);
+            if (resource.leakReason != null) {
+                leaks++;
+            }
+        }
+
+        WritableMap countsMap = Arguments.createMap();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            countsMap.putInt(entry.getKey(), entry.getValue());
+        }
+
+        WritableMap report = Arguments.createMap();
+        report.putArray("resources", list);
+        report.putMap("counts", countsMap);
+        report.putInt("leaks", leaks);
+        return report;
+    }
+
+    /**
+     * Flags the resources which look leaked, clears the flag of the ones which
+     * don't anymore and reports the newly flagged ones. Must be called in the
+     * executor.
+     */
+    void checkLeaks() {
+        long now = SystemClock.elapsedRealtime();
+        List<Resource> localTracks = new ArrayList<>();
+        List<Resource> flagged = new ArrayList<>();
+
+        synchronized (this) {
+            for (Resource resource : resources.values()) {
+                if (resource.owner != null) {
+                    boolean ownerReleased = !resources.containsKey(resource.owner);
+                    if (ownerReleased && resource.leakReason == null) {
+                        resource.leakReason = "ownerReleased";
+                        flagged.add(resource);
+                    } else if (!ownerReleased && "ownerReleased".equals(resource.leakReason)) {
+                        resource.leakReason = null;
+                    }
+                }
+                if (resource.kind.equals(LOCAL_TRACK)) {
+                    localTracks.add(resource);
+                }
+            }
+        }
+
+        // Checked outside of the lock, it goes through native objects.
+        for (Resource resource : localTracks) {
+            boolean referenced = referenceChecker.isReferenced(resource.id);
+            synchronized (this) {
+                if (referenced) {
+                    resource.unreferencedSince = 0;
+                    if ("unreferenced".equals(resource.leakReason)) {
+                        resource.leakReason = null;
+                    }
+                } else if (resource.unreferencedSince == 0) {
+                    resource.unreferencedSince = now;
+                } else if (now - resource.unreferencedSince > UNREFERENCED_GRACE_MS && resource.leakReason == null) {
+                    resource.leakReason = "unreferenced";
+                    flagged.add(resource);
+                }
+            }
+        }
+
+        if (flagged.isEmpty()) {
+            return;
+        }
+
+        WritableArray list = Arguments.createArray();
+        for (Resource resource : flagged) {
+            Log.w(TAG,
+                    "Possible leak of " + key(resource.kind, resource.id) + " (" + resource.leakReason + "), created "
+                            + (now - resource.createdAt) / 1000 + "s ago at " + resource.site);
+            list.pushMap(resource.toWritableMap(now));
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putArray("resources", list);
+        webRTCModule.sendEvent("resourceLeakDetected", params);
+    }
+
+    /**
+     * Describes where a resource is being created: the executor operation, if
+     * on the executor, and the first caller outside of this class and of the
+     * helpers which wrap it.
+     */
+    private static String getCallSite() {
+        StringBuilder site = new StringBuilder();
+
+        String operation = ThreadUtils.getCurrentOperation();
+        if (operation != null) {
+            site.append(operation).append(' ');
+        }
+
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (!className.equals(ResourceRegistry.class.getName())
+                    && !REGISTER_WRAPPERS.contains(className + '.' + element.getMethodName())) {
+                site.append(className.substring(className.lastIndexOf('.') + 1))
+                        .append('.')
+                        .append(element.getMethodName())
+                        .append(':')
+                        .append(element.getLineNumber());
+                break;
+            }
+        }
+
+        return site.toString();
+    }
+}
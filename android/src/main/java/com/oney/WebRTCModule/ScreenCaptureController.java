@@ -8,6 +8,9 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.OrientationEventListener;
 
+import androidx.annotation.Nullable;
+
+import org.webrtc.CapturerObserver;
 import org.webrtc.ScreenCapturerAndroid;
 import org.webrtc.VideoCapturer;
 
@@ -25,6 +28,18 @@ public class ScreenCaptureController extends AbstractVideoCaptureController {
 
     private final Context context;
 
+    /**
+     * Frame rate to drop to while the content is static or 0 to forward all
+     * the captured frames.
+     */
+    private int idleFps;
+
+    @Nullable
+    private ScreenRegionCropper.Region region;
+
+    @Nullable
+    private ScreenRegionCropper regionCropper;
+
     public ScreenCaptureController(Context context, int width, int height, Intent mediaProjectionPermissionResultData, float resolutionScale) {
         super((int)(width * resolutionScale), (int)(height * resolutionScale), DEFAULT_FPS);
 
@@ -41,7 +56,7 @@ public class ScreenCaptureController extends AbstractVideoCaptureController {
 
                 // Pivot to the executor thread because videoCapturer.changeCaptureFormat runs in the main
                 // thread and may deadlock.
-                ThreadUtils.runOnExecutor(() -> {
+                ThreadUtils.runOnExecutor("onOrientationChanged", () -> {
                     try {
                         videoCapturer.changeCaptureFormat(width, height, DEFAULT_FPS);
                     } catch (Exception ex) {
@@ -57,11 +72,70 @@ public class ScreenCaptureController extends AbstractVideoCaptureController {
         }
     }
 
+    /**
+     * Makes the capture drop frames whose content didn't change, sending only
+     * periodic refresh frames at the given frame rate while it's static.
+     * Must be called before the capturer is initialized.
+     */
+    public void setContentAdaptive(int idleFps) {
+        this.idleFps = idleFps;
+    }
+
+    /**
+     * Restricts the capture to a region of the display, scaled to an output
+     * size, or captures the whole display if none. Can be called while
+     * capturing.
+     */
+    public void setRegion(@Nullable ScreenRegionCropper.Region region) {
+        this.region = region;
+        if (regionCropper != null) {
+            regionCropper.setRegion(region);
+        }
+    }
+
+    @Override
+    public CapturerObserver createCapturerObserver(CapturerObserver sourceObserver) {
+        CapturerObserver observer = sourceObserver;
+        if (idleFps > 0) {
+            // Crop first, so only changes in the shared region count.
+            observer = new ScreenContentAdapter(observer, DEFAULT_FPS, idleFps);
+        }
+
+        regionCropper = new ScreenRegionCropper(observer, region);
+        return regionCropper;
+    }
+
     @Override
     public String getDeviceId() {
         return "screen-capture";
     }
 
+    /**
+     * The width of the frames after the region, if any, is applied.
+     */
+    @Override
+    public int getWidth() {
+        ScreenRegionCropper.Region region = this.region;
+        if (region == null) {
+            return super.getWidth();
+        }
+
+        return region.getOutputSize(region.getCropRect(super.getWidth(), super.getHeight())).width;
+    }
+
+    /**
+     * The height of the frames after the region, if any, is applied.
+     */
+    @Override
+    public int getHeight() {
+        ScreenRegionCropper.Region region = this.region;
+        if (region == null) {
+            return super.getHeight();
+        }
+
+        return region.getOutputSize(region.getCropRect(super.getWidth(), super.getHeight())).height;
+    }
+
     @Override
     public void dispose() {
         MediaProjectionService.abort(context);
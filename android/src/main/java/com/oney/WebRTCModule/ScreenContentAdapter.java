@@ -0,0 +1,141 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sits between the screen capturer and the {@link org.webrtc.VideoSource} and
+ * adapts the frame rate to the content. Every frame is downsampled on the GPU
+ * to a half resolution luma thumbnail which is compared with the one of the
+ * previous frame. Halving the size makes the bilinear sampling of the
+ * conversion average every 2x2 block of pixels, so even a caret or a typed
+ * character changes the thumbnail, which a smaller one would skip over. While
+ * the content changes frames are forwarded at up to the motion
+ * frame rate, while it's static only periodic refresh frames are forwarded at
+ * the idle frame rate, so the encoder can still refine the quality.
+ *
+ * All the frame callbacks happen on the capture thread, which has the GL
+ * context of the frames' textures current.
+ */
+class ScreenContentAdapter implements CapturerObserver {
+    static final int DEFAULT_IDLE_FPS = 2;
+
+    /**
+     * Luma difference above which a thumbnail pixel is considered changed.
+     * Screen content has no sensor noise, this only absorbs YUV conversion
+     * rounding.
+     */
+    private static final int PIXEL_CHANGE_THRESHOLD = 4;
+
+    /**
+     * How long the content has to stay static before switching to the idle
+     * frame rate.
+     */
+    private static final long IDLE_AFTER_NS = 1000000000L;
+
+    private final CapturerObserver observer;
+    private final long motionIntervalNs;
+    private final long idleIntervalNs;
+
+    private byte[] previousThumbnail = new byte[0];
+    private byte[] thumbnail = new byte[0];
+    private boolean hasPreviousThumbnail;
+    private int previousWidth;
+    private int previousHeight;
+
+    private long lastChangeNs;
+    private long lastForwardedNs;
+
+    ScreenContentAdapter(CapturerObserver observer, int motionFps, int idleFps) {
+        this.observer = observer;
+        this.motionIntervalNs = 1000000000L / Math.max(1, motionFps);
+        this.idleIntervalNs = 1000000000L / Math.max(1, Math.min(idleFps, motionFps));
+    }
+
+    @Override
+    public void onCapturerStarted(boolean success) {
+        hasPreviousThumbnail = false;
+        observer.onCapturerStarted(success);
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        observer.onCapturerStopped();
+    }
+
+    @Override
+    public void onFrameCaptured(VideoFrame frame) {
+        long now = System.nanoTime();
+        long sinceForwarded = now - lastForwardedNs;
+
+        // Over the motion frame rate, no need to even look at the frame.
+        if (lastForwardedNs != 0 && sinceForwarded < motionIntervalNs) {
+            return;
+        }
+
+        boolean changed = detectChange(frame);
+        if (changed) {
+            lastChangeNs = now;
+        }
+
+        boolean idle = now - lastChangeNs >= IDLE_AFTER_NS;
+        if (lastForwardedNs != 0 && (idle || !changed) && sinceForwarded < idleIntervalNs) {
+            return;
+        }
+
+        lastForwardedNs = now;
+        observer.onFrameCaptured(frame);
+    }
+
+    private boolean detectChange(VideoFrame frame) {
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        int thumbnailWidth = Math.max(1, width / 2);
+        int thumbnailHeight = Math.max(1, height / 2);
+
+        boolean sameSize = width == previousWidth && height == previousHeight;
+        previousWidth = width;
+        previousHeight = height;
+        if (!sameSize) {
+            thumbnail = new byte[thumbnailWidth * thumbnailHeight];
+            previousThumbnail = new byte[thumbnailWidth * thumbnailHeight];
+        }
+
+        // For texture buffers the scaling is done by the GPU when converting.
+        VideoFrame.Buffer scaled = buffer.cropAndScale(0, 0, width, height, thumbnailWidth, thumbnailHeight);
+        VideoFrame.I420Buffer i420 = scaled.toI420();
+        scaled.release();
+        if (i420 == null) {
+            hasPreviousThumbnail = false;
+            return true;
+        }
+
+        ByteBuffer dataY = i420.getDataY();
+        int strideY = i420.getStrideY();
+        for (int y = 0; y < thumbnailHeight; y++) {
+            dataY.position(y * strideY);
+            dataY.get(thumbnail, y * thumbnailWidth, thumbnailWidth);
+        }
+        i420.release();
+
+        boolean changed = !hasPreviousThumbnail || !sameSize;
+        // Static content converts to the same bytes, only look closer when they differ.
+        if (!changed && !Arrays.equals(thumbnail, previousThumbnail)) {
+            for (int i = 0; !changed && i < thumbnail.length; i++) {
+                changed = Math.abs((thumbnail[i] & 0xff) - (previousThumbnail[i] & 0xff)) > PIXEL_CHANGE_THRESHOLD;
+            }
+        }
+
+        // Swap rather than copy, the thumbnails can be large.
+        byte[] swap = previousThumbnail;
+        previousThumbnail = thumbnail;
+        thumbnail = swap;
+        hasPreviousThumbnail = true;
+
+        return changed;
+    }
+}
@@ -0,0 +1,161 @@
+package com.oney.WebRTCModule;
+
+import android.graphics.Rect;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.Size;
+import org.webrtc.VideoFrame;
+
+/**
+ * Crops the screen capture to a region of the display and scales it to an
+ * output size. Cropping and scaling a texture buffer only updates its
+ * transformation matrix, so both are applied by the single GL pass which
+ * already samples the capture texture, when the encoder or the YUV converter
+ * draws it. The region can be changed at any time, without restarting the
+ * media projection.
+ */
+class ScreenRegionCropper implements CapturerObserver {
+    /**
+     * A region of the display, as fractions of its width and height, and the
+     * size to scale it to.
+     */
+    static class Region {
+        final double x;
+        final double y;
+        final double width;
+        final double height;
+        final int outputWidth;
+        final int outputHeight;
+
+        Region(double x, double y, double width, double height, int outputWidth, int outputHeight) {
+            this.x = clamp(x);
+            this.y = clamp(y);
+            this.width = Math.min(clamp(width), 1 - this.x);
+            this.height = Math.min(clamp(height), 1 - this.y);
+            this.outputWidth = Math.max(0, outputWidth);
+            this.outputHeight = Math.max(0, outputHeight);
+        }
+
+        /**
+         * Parses a <tt>{x, y, width, height, outputWidth?, outputHeight?}</tt>
+         * map, the rectangle being in fractions of the display size.
+         */
+        @Nullable
+        static Region fromReadableMap(@Nullable ReadableMap map) {
+            if (map == null) {
+                return null;
+            }
+
+            return new Region(getDouble(map, "x", 0),
+                    getDouble(map, "y", 0),
+                    getDouble(map, "width", 1),
+                    getDouble(map, "height", 1),
+                    (int) getDouble(map, "outputWidth", 0),
+                    (int) getDouble(map, "outputHeight", 0));
+        }
+
+        /**
+         * The rectangle to crop out of a frame of the given size. Sizes and
+         * offsets are even, so the chroma planes line up.
+         */
+        Rect getCropRect(int frameWidth, int frameHeight) {
+            int cropX = Math.min(even(x * frameWidth), frameWidth - 2);
+            int cropY = Math.min(even(y * frameHeight), frameHeight - 2);
+            int cropWidth = Math.max(2, Math.min(even(width * frameWidth), frameWidth - cropX));
+            int cropHeight = Math.max(2, Math.min(even(height * frameHeight), frameHeight - cropY));
+
+            return new Rect(cropX, cropY, cropX + cropWidth, cropY + cropHeight);
+        }
+
+        /**
+         * The size the given cropped rectangle is scaled to. It's only ever
+         * scaled down, keeping the aspect ratio when only one side of the
+         * output is given.
+         */
+        Size getOutputSize(Rect crop) {
+            int cropWidth = crop.width();
+            int cropHeight = crop.height();
+            int scaledWidth = this.outputWidth;
+            int scaledHeight = this.outputHeight;
+            if (scaledWidth == 0 && scaledHeight == 0) {
+                scaledWidth = cropWidth;
+                scaledHeight = cropHeight;
+            } else if (scaledWidth == 0) {
+                scaledWidth = scaledHeight * cropWidth / cropHeight;
+            } else if (scaledHeight == 0) {
+                scaledHeight = scaledWidth * cropHeight / cropWidth;
+            }
+
+            return new Size(Math.max(2, Math.min(even(scaledWidth), cropWidth)),
+                    Math.max(2, Math.min(even(scaledHeight), cropHeight)));
+        }
+
+        private static double getDouble(ReadableMap map, String key, double defaultValue) {
+            if (map.hasKey(key) && map.getType(key) == ReadableType.Number) {
+                return map.getDouble(key);
+            }
+
+            return defaultValue;
+        }
+
+        private static double clamp(double value) {
+            return Math.max(0, Math.min(1, value));
+        }
+    }
+
+    private final CapturerObserver observer;
+
+    @Nullable
+    private volatile Region region;
+
+    ScreenRegionCropper(CapturerObserver observer, @Nullable Region region) {
+        this.observer = observer;
+        this.region = region;
+    }
+
+    /**
+     * Sets the region to capture, or none to capture the whole display. Can be
+     * called on any thread.
+     */
+    void setRegion(@Nullable Region region) {
+        this.region = region;
+    }
+
+    @Override
+    public void onCapturerStarted(boolean success) {
+        observer.onCapturerStarted(success);
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        observer.onCapturerStopped();
+    }
+
+    @Override
+    public void onFrameCaptured(VideoFrame frame) {
+        Region region = this.region;
+        if (region == null) {
+            observer.onFrameCaptured(frame);
+            return;
+        }
+
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        Rect crop = region.getCropRect(buffer.getWidth(), buffer.getHeight());
+        Size output = region.getOutputSize(crop);
+
+        VideoFrame.Buffer cropped =
+                buffer.cropAndScale(crop.left, crop.top, crop.width(), crop.height(), output.width, output.height);
+        VideoFrame croppedFrame = new VideoFrame(cropped, frame.getRotation(), frame.getTimestampNs());
+        observer.onFrameCaptured(croppedFrame);
+        croppedFrame.release();
+    }
+
+    private static int even(double value) {
+        return ((int) value) & ~1;
+    }
+}
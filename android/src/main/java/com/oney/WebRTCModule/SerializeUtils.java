@@ -1,5 +1,7 @@
 package com.oney.WebRTCModule;
 
+import androidx.annotation.Nullable;
+
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
@@ -313,6 +315,15 @@ public class SerializeUtils {
     }
 
     public static RtpTransceiver.RtpTransceiverInit parseTransceiverOptions(ReadableMap map) {
+        return parseTransceiverOptions(map, null);
+    }
+
+    /**
+     * Parses the transceiver options, limiting the active simulcast encodings
+     * to what the given performance profile allows.
+     */
+    static RtpTransceiver.RtpTransceiverInit parseTransceiverOptions(
+            ReadableMap map, @Nullable DevicePerformanceProfile performanceProfile) {
         if (map == null) {
             return null;
         }
@@ -343,6 +354,9 @@ public class SerializeUtils {
                     sendEncodings.add(SerializeUtils.parseEncoding(encoding));
                 }
             }
+            if (performanceProfile != null) {
+                performanceProfile.limitSimulcastLayers(sendEncodings);
+            }
         }
 
         return new RtpTransceiver.RtpTransceiverInit(direction, streamIds, sendEncodings);
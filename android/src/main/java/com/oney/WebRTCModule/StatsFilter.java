@@ -0,0 +1,83 @@
+package com.oney.WebRTCModule;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+
+import org.webrtc.RTCStats;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes which entries of an {@code RTCStatsReport} should be serialized
+ * and which of their members should be kept. An empty set means "everything",
+ * so a filter built from a {@code null} selector matches the full report. The
+ * <tt>timestamp</tt>, <tt>type</tt> and <tt>id</tt> members are always kept.
+ */
+class StatsFilter {
+    final Set<String> types;
+    final Set<String> ids;
+    final Set<String> fields;
+
+    StatsFilter(Set<String> types, Set<String> ids, Set<String> fields) {
+        this.types = types;
+        this.ids = ids;
+        this.fields = fields;
+    }
+
+    /**
+     * Builds a filter from a JS selector of the form
+     * <tt>{ types?: string[], ids?: string[], fields?: string[] }</tt>.
+     *
+     * @param selector the selector or {@code null} for no filtering.
+     * @return the matching {@code StatsFilter}.
+     */
+    static StatsFilter fromReadableMap(@Nullable ReadableMap selector) {
+        if (selector == null) {
+            return new StatsFilter(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        }
+
+        return new StatsFilter(
+                readStringSet(selector, "types"), readStringSet(selector, "ids"), readStringSet(selector, "fields"));
+    }
+
+    private static Set<String> readStringSet(ReadableMap map, String key) {
+        if (!map.hasKey(key) || map.getType(key) != ReadableType.Array) {
+            return Collections.emptySet();
+        }
+
+        ReadableArray array = map.getArray(key);
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < array.size(); i++) {
+            if (array.getType(i) == ReadableType.String) {
+                result.add(array.getString(i));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether the filter has an explicit id list, in which case the report
+     * can be looked up by key instead of being iterated as a whole.
+     */
+    boolean hasIds() {
+        return !ids.isEmpty();
+    }
+
+    boolean matches(RTCStats stats) {
+        if (!types.isEmpty() && !types.contains(stats.getType())) {
+            return false;
+        }
+
+        return ids.isEmpty() || ids.contains(stats.getId());
+    }
+
+    boolean includesField(String field) {
+        return fields.isEmpty() || fields.contains(field);
+    }
+}
@@ -2,6 +2,8 @@ package com.oney.WebRTCModule;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import org.webrtc.PeerConnection;
 import org.webrtc.RTCStats;
 import org.webrtc.RTCStatsReport;
@@ -21,41 +23,76 @@ public class StringUtils {
      * in JSON format
      */
     public static String statsToJSON(RTCStatsReport report) {
-        StringBuilder builder = new StringBuilder("[");
-
-        boolean firstKey = true;
+        return statsToJSON(report, null);
+    }
 
+    /**
+     * Constructs a JSON <tt>String</tt> representation of the entries of a
+     * specific <tt>RTCStatsReport</tt> which match the given filter. Entries
+     * and members which are filtered out are skipped before anything is
+     * appended, so the cost is proportional to what has been asked for.
+     * <p>
+     * @param report the <tt>RTCStatsReport</tt>s to represent in JSON
+     *               format
+     * @param filter the {@link StatsFilter} to apply or {@code null} to
+     *               serialize the whole report
+     * @return a <tt>String</tt> which represents the selected part of the
+     * specified <tt>report</tt> in JSON format
+     */
+    static String statsToJSON(RTCStatsReport report, @Nullable StatsFilter filter) {
+        StringBuilder builder = new StringBuilder("[");
         Map<String, RTCStats> statsMap = report.getStatsMap();
 
-        for (String key : report.getStatsMap().keySet()) {
-            if (firstKey) {
-                firstKey = false;
-            } else {
-                builder.append(",");
+        if (filter != null && filter.hasIds()) {
+            // Look the requested entries up directly rather than walking
+            // every candidate and transport in the report.
+            boolean first = true;
+            for (String id : filter.ids) {
+                RTCStats stats = statsMap.get(id);
+                if (stats != null && filter.matches(stats)) {
+                    first = appendStats(builder, stats, filter, first);
+                }
             }
+        } else {
+            boolean first = true;
+            for (RTCStats stats : statsMap.values()) {
+                if (filter == null || filter.matches(stats)) {
+                    first = appendStats(builder, stats, filter, first);
+                }
+            }
+        }
 
-            builder.append("[\"").append(key).append("\",{");
+        builder.append("]");
 
-            RTCStats stats = statsMap.get(key);
-            builder.append("\"timestamp\":")
-                    .append(stats.getTimestampUs() / 1000.0)
-                    .append(",\"type\":\"")
-                    .append(stats.getType())
-                    .append("\",\"id\":\"")
-                    .append(stats.getId())
-                    .append("\"");
+        return builder.toString();
+    }
 
-            for (Map.Entry<String, Object> entry : stats.getMembers().entrySet()) {
-                builder.append(",").append("\"").append(entry.getKey()).append("\":");
-                appendValue(builder, entry.getValue());
-            }
+    private static boolean appendStats(
+            StringBuilder builder, RTCStats stats, @Nullable StatsFilter filter, boolean first) {
+        if (!first) {
+            builder.append(",");
+        }
 
-            builder.append("}]");
+        builder.append("[\"").append(stats.getId()).append("\",{");
+        builder.append("\"timestamp\":")
+                .append(stats.getTimestampUs() / 1000.0)
+                .append(",\"type\":\"")
+                .append(stats.getType())
+                .append("\",\"id\":\"")
+                .append(stats.getId())
+                .append("\"");
+
+        for (Map.Entry<String, Object> entry : stats.getMembers().entrySet()) {
+            if (filter != null && !filter.includesField(entry.getKey())) {
+                continue;
+            }
+            builder.append(",").append("\"").append(entry.getKey()).append("\":");
+            appendValue(builder, entry.getValue());
         }
 
-        builder.append("]");
+        builder.append("}]");
 
-        return builder.toString();
+        return false;
     }
 
     private static void appendValue(StringBuilder builder, Object value) {
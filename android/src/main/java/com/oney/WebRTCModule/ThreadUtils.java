@@ -1,41 +1,248 @@
 package com.oney.WebRTCModule;
 
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 final class ThreadUtils {
+    private static final String TAG = ThreadUtils.class.getSimpleName();
+
+    /**
+     * Tasks which run for longer than this are reported by the watchdog,
+     * unless {@link WebRTCModuleOptions#executorSlowTaskThresholdMs} says
+     * otherwise.
+     */
+    static final long DEFAULT_SLOW_TASK_THRESHOLD_MS = 500;
+
+    private static volatile Thread executorThread;
+
     /**
      * Thread which will be used to call all WebRTC PeerConnection APIs. They
      * they don't run on the calling thread anyway, we are deferring the calls
      * to this thread to avoid (potentially) blocking the calling thread.
+     *
+     * This is the equivalent of {@code Executors.newSingleThreadExecutor()},
+     * but keeping the concrete type gives us access to the queue depth.
+     */
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "WebRTCModule");
+                executorThread = thread;
+                return thread;
+            });
+
+    /**
+     * Queueing and running times of the executor tasks, by operation name.
+     */
+    private static final Map<String, OperationMetrics> metrics = new ConcurrentHashMap<>();
+
+    private static final Timer watchdogTimer = new Timer("ExecutorWatchdog", /* isDaemon */ true);
+
+    private static volatile long slowTaskThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_TASK_THRESHOLD_MS);
+
+    private static TimerTask watchdogTask;
+
+    /**
+     * State of the task currently running on the executor thread, if any.
+     * Written by the executor thread only and read by the watchdog.
      */
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static volatile String runningTaskName;
+    private static volatile long runningTaskStartNanos;
+    private static volatile long runningTaskSeq;
+    private static volatile long lastReportedTaskSeq = -1;
+
+    static {
+        scheduleWatchdog(DEFAULT_SLOW_TASK_THRESHOLD_MS);
+    }
 
     /**
      * Runs the given {@link Runnable} on the executor.
+     * @param name the name of the operation, used for metrics.
      * @param runnable
      */
-    public static void runOnExecutor(Runnable runnable) {
-        executor.execute(runnable);
+    public static void runOnExecutor(String name, Runnable runnable) {
+        executor.execute(new MeasuredTask<>(name, runnable, null));
     }
 
     /**
      * Submits the given {@link Callable} to be run on the executor.
+     * @param name the name of the operation, used for metrics.
      * @param callable
      * @return Future.
      */
-    public static <T> Future<T> submitToExecutor(Callable<T> callable) {
-        return executor.submit(callable);
+    public static <T> Future<T> submitToExecutor(String name, Callable<T> callable) {
+        return executor.submit((Callable<T>) new MeasuredTask<>(name, null, callable));
     }
 
     /**
      * Submits the given {@link Runnable} to be run on the executor.
+     * @param name the name of the operation, used for metrics.
      * @param runnable
      * @return Future.
      */
-    public static Future<?> submitToExecutor(Runnable runnable) {
-        return executor.submit(runnable);
+    public static Future<?> submitToExecutor(String name, Runnable runnable) {
+        return executor.submit((Runnable) new MeasuredTask<>(name, runnable, null));
+    }
+
+    static void setSlowTaskThresholdMs(long thresholdMs) {
+        slowTaskThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        scheduleWatchdog(thresholdMs);
+    }
+
+    /**
+     * (Re)schedules the watchdog so it checks the running task twice per
+     * threshold, which reports a slow task at most 1.5 thresholds after it
+     * started.
+     */
+    private static synchronized void scheduleWatchdog(long thresholdMs) {
+        if (watchdogTask != null) {
+            watchdogTask.cancel();
+        }
+
+        long periodMs = Math.max(thresholdMs / 2, 1);
+        watchdogTask = new TimerTask() {
+            @Override
+            public void run() {
+                checkRunningTask();
+            }
+        };
+        watchdogTimer.schedule(watchdogTask, periodMs, periodMs);
+    }
+
+    /**
+     * Returns the name of the operation being run, if called in the executor.
+     */
+    @Nullable
+    static String getCurrentOperation() {
+        return Thread.currentThread() == executorThread ? runningTaskName : null;
+    }
+
+    /**
+     * Returns a snapshot of the executor metrics: the current queue depth, the
+     * operation currently running and the wait / run time percentiles of every
+     * operation seen so far. Safe to call from any thread.
+     */
+    static WritableMap getMetrics() {
+        WritableMap result = Arguments.createMap();
+        result.putInt("queueDepth", executor.getQueue().size());
+
+        String running = runningTaskName;
+        if (running != null) {
+            result.putString("runningOperation", running);
+            result.putDouble("runningForMs", (System.nanoTime() - runningTaskStartNanos) / 1e6);
+        }
+
+        WritableMap operations = Arguments.createMap();
+        for (Map.Entry<String, OperationMetrics> entry : metrics.entrySet()) {
+            WritableMap operation = Arguments.createMap();
+            operation.putMap("wait", entry.getValue().wait.toWritableMap());
+            operation.putMap("run", entry.getValue().run.toWritableMap());
+            operations.putMap(entry.getKey(), operation);
+        }
+        result.putMap("operations", operations);
+
+        return result;
+    }
+
+    private static void checkRunningTask() {
+        String name = runningTaskName;
+        long seq = runningTaskSeq;
+        if (name == null || seq == lastReportedTaskSeq) {
+            return;
+        }
+
+        long elapsedNanos = System.nanoTime() - runningTaskStartNanos;
+        if (elapsedNanos > slowTaskThresholdNanos && name.equals(runningTaskName) && seq == runningTaskSeq) {
+            lastReportedTaskSeq = seq;
+            Log.w(TAG,
+                    "Executor task " + name + " has been running for " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                            + "ms, " + executor.getQueue().size() + " tasks queued behind it");
+        }
+    }
+
+    private static class OperationMetrics {
+        final LatencyHistogram wait = new LatencyHistogram();
+        final LatencyHistogram run = new LatencyHistogram();
+    }
+
+    /**
+     * Wraps a task so the time it spends in the queue and the time it takes to
+     * run are recorded under its operation name.
+     */
+    private static class MeasuredTask<T> implements Runnable, Callable<T> {
+        private final String name;
+        private final Runnable runnable;
+        private final Callable<T> callable;
+        private final long enqueuedNanos;
+
+        MeasuredTask(String name, Runnable runnable, Callable<T> callable) {
+            this.name = name;
+            this.runnable = runnable;
+            this.callable = callable;
+            this.enqueuedNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            try {
+                call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public T call() throws Exception {
+            long startNanos = System.nanoTime();
+            long seq = runningTaskSeq + 1;
+            runningTaskStartNanos = startNanos;
+            runningTaskName = name;
+            runningTaskSeq = seq;
+
+            try {
+                if (callable != null) {
+                    return callable.call();
+                }
+                runnable.run();
+                return null;
+            } finally {
+                long endNanos = System.nanoTime();
+                runningTaskName = null;
+
+                OperationMetrics operation = metrics.get(name);
+                if (operation == null) {
+                    operation = new OperationMetrics();
+                    OperationMetrics existing = metrics.putIfAbsent(name, operation);
+                    if (existing != null) {
+                        operation = existing;
+                    }
+                }
+                operation.wait.recordNanos(startNanos - enqueuedNanos);
+                operation.run.recordNanos(endNanos - startNanos);
+
+                // Tasks the watchdog caught while running were reported already.
+                if (endNanos - startNanos > slowTaskThresholdNanos && lastReportedTaskSeq != seq) {
+                    Log.w(TAG,
+                            "Executor task " + name + " took " + TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos)
+                                    + "ms after waiting " + TimeUnit.NANOSECONDS.toMillis(startNanos - enqueuedNanos)
+                                    + "ms in the queue");
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,164 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects frame pipeline metrics for a single video track: frame rate,
+ * inter-frame interval jitter, resolution changes and, for every view
+ * rendering the track, the frames it drew and the delay between a frame's
+ * delivery to the view and its drawing.
+ *
+ * It is fed from the frame path, so all the state lives in preallocated
+ * primitive arrays used as ring buffers and nothing is allocated per frame.
+ * The derived values are only computed when {@link #toWritableMap()} is called.
+ */
+class VideoFrameMetrics implements VideoSink {
+    /**
+     * Number of most recent frames the windowed metrics are computed over.
+     */
+    private static final int WINDOW_SIZE = 90;
+
+    /**
+     * The rendering metrics of one view. A view only draws the latest frame
+     * delivered to it, so it may draw fewer frames than the track receives.
+     */
+    static class RendererMetrics {
+        private final long[] renderDelayNanos = new long[WINDOW_SIZE];
+        private long framesRendered;
+
+        /**
+         * Records a frame drawn by the view, the given time after it was
+         * delivered to it. Called on the render thread of the view.
+         */
+        synchronized void onFrameRendered(long delayNanos) {
+            renderDelayNanos[(int) (framesRendered % WINDOW_SIZE)] = delayNanos;
+            framesRendered++;
+        }
+    }
+
+    private final long[] arrivalNanos = new long[WINDOW_SIZE];
+    private final List<RendererMetrics> renderers = new CopyOnWriteArrayList<>();
+
+    private long framesReceived;
+    private int width;
+    private int height;
+    private int resolutionChanges;
+
+    /**
+     * Records the arrival of a frame at the track. Called on the capture
+     * thread for local tracks and on the decoder thread for remote ones.
+     */
+    @Override
+    public void onFrame(VideoFrame frame) {
+        long now = System.nanoTime();
+        int frameWidth = frame.getRotatedWidth();
+        int frameHeight = frame.getRotatedHeight();
+
+        synchronized (this) {
+            arrivalNanos[(int) (framesReceived % WINDOW_SIZE)] = now;
+            framesReceived++;
+
+            if (frameWidth != width || frameHeight != height) {
+                if (width != 0 || height != 0) {
+                    resolutionChanges++;
+                }
+                width = frameWidth;
+                height = frameHeight;
+            }
+        }
+    }
+
+    /**
+     * Starts collecting the metrics of a view rendering the track.
+     */
+    RendererMetrics addRenderer() {
+        RendererMetrics renderer = new RendererMetrics();
+        renderers.add(renderer);
+        return renderer;
+    }
+
+    void removeRenderer(RendererMetrics renderer) {
+        renderers.remove(renderer);
+    }
+
+    /**
+     * The decoded pixel rate over the window, i.e. the frame size times the
+     * frame rate.
+     */
+    synchronized double getPixelsPerSecond() {
+        int frames = (int) Math.min(framesReceived, WINDOW_SIZE);
+        if (frames < 2) {
+            return 0;
+        }
+
+        long spanNanos = arrivalNanos[(int) ((framesReceived - 1) % WINDOW_SIZE)]
+                - arrivalNanos[(int) ((framesReceived - frames) % WINDOW_SIZE)];
+        return spanNanos > 0 ? (double) width * height * (frames - 1) * 1e9 / spanNanos : 0;
+    }
+
+    synchronized WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("framesReceived", framesReceived);
+        map.putInt("frameWidth", width);
+        map.putInt("frameHeight", height);
+        map.putInt("resolutionChanges", resolutionChanges);
+
+        // Inter-frame intervals over the window, oldest to newest.
+        int frames = (int) Math.min(framesReceived, WINDOW_SIZE);
+        double framesPerSecond = 0;
+        double intervalMeanMs = 0;
+        double intervalJitterMs = 0;
+        if (frames > 1) {
+            int newest = (int) ((framesReceived - 1) % WINDOW_SIZE);
+            int oldest = (int) ((framesReceived - frames) % WINDOW_SIZE);
+            long spanNanos = arrivalNanos[newest] - arrivalNanos[oldest];
+            int intervals = frames - 1;
+
+            intervalMeanMs = spanNanos / 1e6 / intervals;
+            framesPerSecond = spanNanos > 0 ? intervals * 1e9 / spanNanos : 0;
+
+            double sumOfSquares = 0;
+            for (int i = 1; i < frames; i++) {
+                int current = (oldest + i) % WINDOW_SIZE;
+                int previous = (oldest + i - 1) % WINDOW_SIZE;
+                double deviation = (arrivalNanos[current] - arrivalNanos[previous]) / 1e6 - intervalMeanMs;
+                sumOfSquares += deviation * deviation;
+            }
+            intervalJitterMs = Math.sqrt(sumOfSquares / intervals);
+        }
+        map.putDouble("framesPerSecond", framesPerSecond);
+        map.putDouble("frameIntervalMeanMs", intervalMeanMs);
+        map.putDouble("frameIntervalJitterMs", intervalJitterMs);
+
+        // The views render the same frames, so the one which drew the most
+        // stands for all of them instead of their sum.
+        long framesRendered = 0;
+        int delays = 0;
+        long delaySum = 0;
+        long delayMax = 0;
+        for (RendererMetrics renderer : renderers) {
+            synchronized (renderer) {
+                framesRendered = Math.max(framesRendered, renderer.framesRendered);
+                int rendered = (int) Math.min(renderer.framesRendered, WINDOW_SIZE);
+                for (int i = 0; i < rendered; i++) {
+                    delaySum += renderer.renderDelayNanos[i];
+                    delayMax = Math.max(delayMax, renderer.renderDelayNanos[i]);
+                }
+                delays += rendered;
+            }
+        }
+        map.putInt("renderers", renderers.size());
+        map.putDouble("framesRendered", framesRendered);
+        map.putDouble("renderDelayMeanMs", delays == 0 ? 0 : delaySum / 1e6 / delays);
+        map.putDouble("renderDelayMaxMs", delayMax / 1e6);
+
+        return map;
+    }
+}
@@ -3,6 +3,7 @@ package com.oney.WebRTCModule;
 import android.util.*;
 
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import org.webrtc.VideoFrame;
@@ -59,9 +60,38 @@ public class VideoTrackAdapter {
 
         videoTrack.removeSink(onMuteImpl);
         onMuteImpl.dispose();
+        webRTCModule.compactEvents.release(trackId);
         Log.d(TAG, "Deleted adapter for " + trackId);
     }
 
+    /**
+     * Suspends the mute detection of the given track while it's paused by
+     * the remote video subscriptions. The track may keep receiving frames or
+     * not, depending on whether its transceiver direction is managed, and
+     * neither says whether the remote end muted it. When resumed, the track
+     * gets the initial delay again to start receiving frames.
+     */
+    void setPaused(VideoTrack videoTrack, boolean paused) {
+        TrackMuteUnmuteImpl onMuteImpl = muteImplMap.get(videoTrack.id());
+        if (onMuteImpl == null) {
+            return;
+        }
+
+        onMuteImpl.paused = paused;
+        if (!paused) {
+            onMuteImpl.start();
+        }
+    }
+
+    /**
+     * Returns the frame metrics collected for the given remote track, or
+     * {@code null} if there is no adapter for it.
+     */
+    VideoFrameMetrics getFrameMetrics(String trackId) {
+        TrackMuteUnmuteImpl onMuteImpl = muteImplMap.get(trackId);
+        return onMuteImpl == null ? null : onMuteImpl.frameMetrics;
+    }
+
     /**
      * Implements 'mute'/'unmute' events for remote video tracks through
      * the {@link VideoSink} interface.
@@ -69,9 +99,11 @@ public class VideoTrackAdapter {
     private class TrackMuteUnmuteImpl implements VideoSink {
         private TimerTask emitMuteTask;
         private volatile boolean disposed;
+        private volatile boolean paused;
         private AtomicInteger frameCounter;
         private boolean mutedState;
         private final String trackId;
+        private final VideoFrameMetrics frameMetrics = new VideoFrameMetrics();
 
         TrackMuteUnmuteImpl(String trackId) {
             this.trackId = trackId;
@@ -81,6 +113,7 @@ public class VideoTrackAdapter {
         @Override
         public void onFrame(VideoFrame frame) {
             frameCounter.addAndGet(1);
+            frameMetrics.onFrame(frame);
         }
 
         private void start() {
@@ -100,6 +133,10 @@ public class VideoTrackAdapter {
                         if (disposed) {
                             return;
                         }
+                        if (paused) {
+                            lastFrameNumber = frameCounter.get();
+                            return;
+                        }
                         boolean isMuted = lastFrameNumber == frameCounter.get();
                         if (isMuted != mutedState) {
                             mutedState = isMuted;
@@ -114,13 +151,24 @@ public class VideoTrackAdapter {
         }
 
         private void emitMuteEvent(boolean muted) {
+            Log.d(TAG, (muted ? "Mute" : "Unmute") + " event pcId: " + peerConnectionId + " trackId: " + trackId);
+
+            CompactEvents compactEvents = VideoTrackAdapter.this.webRTCModule.compactEvents;
+            if (compactEvents.isEnabled()) {
+                WritableArray params = Arguments.createArray();
+                params.pushInt(peerConnectionId);
+                params.pushInt(compactEvents.intern(trackId));
+                params.pushBoolean(muted);
+
+                VideoTrackAdapter.this.webRTCModule.sendCompactEvent("mediaStreamTrackMuteChanged", params);
+                return;
+            }
+
             WritableMap params = Arguments.createMap();
             params.putInt("pcId", peerConnectionId);
             params.putString("trackId", trackId);
             params.putBoolean("muted", muted);
 
-            Log.d(TAG, (muted ? "Mute" : "Unmute") + " event pcId: " + peerConnectionId + " trackId: " + trackId);
-
             VideoTrackAdapter.this.webRTCModule.sendEvent("mediaStreamTrackMuteChanged", params);
         }
 
@@ -0,0 +1,206 @@
+package com.oney.WebRTCModule;
+
+import android.media.AudioFormat;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+/**
+ * Lightweight voice activity detector and level meter for the local audio.
+ * It is fed the recorded PCM through the
+ * {@link JavaAudioDeviceModule.SamplesReadyCallback} of the audio device
+ * module, computes the RMS and peak level of every buffer in place and only
+ * reports transitions between speaking and silence, with hysteresis.
+ *
+ * Registering a samples callback makes the ADM copy every recorded buffer, so
+ * this is opt-in: set an instance on {@link WebRTCModuleOptions#voiceActivityDetector}.
+ * When the default ADM is used it will be hooked up automatically. When a
+ * custom {@code audioDeviceModule} is provided, the same instance must also be
+ * passed to {@code JavaAudioDeviceModule.Builder#setSamplesReadyCallback}.
+ */
+public class VoiceActivityDetector implements JavaAudioDeviceModule.SamplesReadyCallback {
+    /**
+     * Level, in dBFS, above which audio is considered speech.
+     */
+    public static final double DEFAULT_SPEAKING_THRESHOLD_DBFS = -45;
+
+    /**
+     * Level, in dBFS, below which audio is considered silence. Levels between
+     * both thresholds keep the current state.
+     */
+    public static final double DEFAULT_SILENCE_THRESHOLD_DBFS = -55;
+
+    /**
+     * How long the level has to stay above the speaking threshold before
+     * switching to speaking.
+     */
+    public static final int DEFAULT_ATTACK_MS = 50;
+
+    /**
+     * How long the level has to stay below the silence threshold before
+     * switching to silence.
+     */
+    public static final int DEFAULT_HANGOVER_MS = 400;
+
+    /**
+     * Level reported for digital silence.
+     */
+    private static final double MIN_LEVEL_DBFS = -127;
+
+    public interface Listener {
+        /**
+         * Called on the audio recording thread when the speaking state changes.
+         *
+         * @param speaking whether speech has been detected.
+         * @param levelDbfs the RMS level of the buffer which caused the change.
+         * @param peakDbfs the peak level of the buffer which caused the change.
+         */
+        void onVoiceActivityChanged(boolean speaking, double levelDbfs, double peakDbfs);
+    }
+
+    @Nullable
+    private final JavaAudioDeviceModule.SamplesReadyCallback delegate;
+
+    private volatile boolean enabled;
+    private volatile Listener listener;
+
+    private volatile double speakingThresholdDbfs = DEFAULT_SPEAKING_THRESHOLD_DBFS;
+    private volatile double silenceThresholdDbfs = DEFAULT_SILENCE_THRESHOLD_DBFS;
+    private volatile int attackMs = DEFAULT_ATTACK_MS;
+    private volatile int hangoverMs = DEFAULT_HANGOVER_MS;
+
+    // State only touched on the audio recording thread.
+    private boolean speaking;
+    private double aboveThresholdMs;
+    private double belowThresholdMs;
+
+    private volatile double levelDbfs = MIN_LEVEL_DBFS;
+    private volatile double peakDbfs = MIN_LEVEL_DBFS;
+
+    public VoiceActivityDetector() {
+        this(null);
+    }
+
+    /**
+     * @param delegate a callback which will also receive the samples, for apps
+     * which already need one on their audio device module.
+     */
+    public VoiceActivityDetector(@Nullable JavaAudioDeviceModule.SamplesReadyCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts or stops the analysis. While disabled the samples are only
+     * forwarded to the delegate, if any.
+     */
+    void setEnabled(boolean enabled) {
+        // The detection state is reset by the recording thread.
+        this.enabled = enabled;
+    }
+
+    void configure(double speakingThresholdDbfs, double silenceThresholdDbfs, int attackMs, int hangoverMs) {
+        this.speakingThresholdDbfs = speakingThresholdDbfs;
+        this.silenceThresholdDbfs = Math.min(silenceThresholdDbfs, speakingThresholdDbfs);
+        this.attackMs = Math.max(0, attackMs);
+        this.hangoverMs = Math.max(0, hangoverMs);
+    }
+
+    /**
+     * The RMS level of the last analyzed buffer, in dBFS.
+     */
+    double getLevelDbfs() {
+        return levelDbfs;
+    }
+
+    /**
+     * The peak level of the last analyzed buffer, in dBFS.
+     */
+    double getPeakDbfs() {
+        return peakDbfs;
+    }
+
+    @Override
+    public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples samples) {
+        if (delegate != null) {
+            delegate.onWebRtcAudioRecordSamplesReady(samples);
+        }
+
+        if (!enabled) {
+            if (speaking || aboveThresholdMs > 0 || belowThresholdMs > 0) {
+                speaking = false;
+                aboveThresholdMs = 0;
+                belowThresholdMs = 0;
+                levelDbfs = MIN_LEVEL_DBFS;
+                peakDbfs = MIN_LEVEL_DBFS;
+            }
+            return;
+        }
+
+        if (samples.getAudioFormat() != AudioFormat.ENCODING_PCM_16BIT) {
+            return;
+        }
+
+        byte[] data = samples.getData();
+        int sampleCount = data.length / 2;
+        if (sampleCount == 0 || samples.getSampleRate() <= 0 || samples.getChannelCount() <= 0) {
+            return;
+        }
+
+        // 16-bit little endian PCM, channels interleaved. Mixing the channels
+        // doesn't matter for a level meter, so treat them as one stream.
+        long sumOfSquares = 0;
+        int peak = 0;
+        for (int i = 0; i + 1 < data.length; i += 2) {
+            int sample = (short) ((data[i + 1] << 8) | (data[i] & 0xff));
+            sumOfSquares += sample * sample;
+            int magnitude = Math.abs(sample);
+            if (magnitude > peak) {
+                peak = magnitude;
+            }
+        }
+
+        double rms = Math.sqrt((double) sumOfSquares / sampleCount) / 32768.0;
+        double level = toDbfs(rms);
+        double peakLevel = toDbfs(peak / 32768.0);
+        double durationMs = sampleCount * 1000.0 / samples.getChannelCount() / samples.getSampleRate();
+
+        levelDbfs = level;
+        peakDbfs = peakLevel;
+
+        if (!speaking) {
+            aboveThresholdMs = level >= speakingThresholdDbfs ? aboveThresholdMs + durationMs : 0;
+            if (aboveThresholdMs > 0 && aboveThresholdMs >= attackMs) {
+                speaking = true;
+                belowThresholdMs = 0;
+                notifyListener(level, peakLevel);
+            }
+        } else {
+            belowThresholdMs = level < silenceThresholdDbfs ? belowThresholdMs + durationMs : 0;
+            if (belowThresholdMs > 0 && belowThresholdMs >= hangoverMs) {
+                speaking = false;
+                aboveThresholdMs = 0;
+                notifyListener(level, peakLevel);
+            }
+        }
+    }
+
+    private void notifyListener(double level, double peakLevel) {
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onVoiceActivityChanged(speaking, level, peakLevel);
+        }
+    }
+
+    private static double toDbfs(double amplitude) {
+        if (amplitude <= 0) {
+            return MIN_LEVEL_DBFS;
+        }
+
+        return Math.max(MIN_LEVEL_DBFS, 20 * Math.log10(amplitude));
+    }
+}
@@ -1,5 +1,6 @@
 package com.oney.WebRTCModule;
 
+import android.media.MediaFormat;
 import android.util.Log;
 import android.util.Pair;
 import android.util.SparseArray;
@@ -21,14 +22,21 @@ import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.module.annotations.ReactModule;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.oney.WebRTCModule.webrtcutils.EncoderHealthMonitor;
 import com.oney.WebRTCModule.webrtcutils.H264AndSoftwareVideoDecoderFactory;
 import com.oney.WebRTCModule.webrtcutils.H264AndSoftwareVideoEncoderFactory;
+import com.oney.WebRTCModule.webrtcutils.HardwareCodecAllowlist;
+import com.oney.WebRTCModule.webrtcutils.HardwareDecoderBudget;
+import com.oney.WebRTCModule.webrtcutils.HybridVideoDecoderFactory;
+import com.oney.WebRTCModule.webrtcutils.HybridVideoEncoderFactory;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.webrtc.*;
 import org.webrtc.audio.AudioDeviceModule;
 import org.webrtc.audio.JavaAudioDeviceModule;
@@ -49,16 +57,45 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     VideoEncoderFactory mVideoEncoderFactory;
     VideoDecoderFactory mVideoDecoderFactory;
     AudioDeviceModule mAudioDeviceModule;
+    VoiceActivityDetector mVoiceActivityDetector;
+    @Nullable
+    AudioDeviceMonitor mAudioDeviceMonitor;
+    @Nullable
+    private HardwareCodecAllowlist hardwareCodecAllowlist;
 
     // Need to expose the peer connection codec factories here to get capabilities
     private final SparseArray<PeerConnectionObserver> mPeerConnectionObservers;
     final Map<String, MediaStream> localStreams;
 
     // Store generated certificates by ID to avoid exposing private keys to JS
-    private static final Map<String, RtcCertificatePem> mCertificates = new HashMap<>();
+    private final CertificateStore certificateStore;
+    private final CodecBenchmark codecBenchmark;
 
     private final GetUserMediaImpl getUserMediaImpl;
 
+    final ResourceRegistry resources;
+
+    /**
+     * The performance profile being applied, if any.
+     */
+    @Nullable
+    final DevicePerformanceProfile performanceProfile;
+
+    /**
+     * The profile detected for the device, only when asked for it while none
+     * is applied.
+     */
+    @Nullable
+    private DevicePerformanceProfile detectedPerformanceProfile;
+
+    private final ActiveSpeakerDetector activeSpeakerDetector;
+
+    final RemoteVideoSubscriptionManager remoteVideoSubscriptions;
+
+    private final PeerConnectionPool peerConnectionPool;
+
+    final CompactEvents compactEvents;
+
     public WebRTCModule(ReactApplicationContext reactContext) {
         super(reactContext);
 
@@ -74,6 +111,16 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         Logging.Severity loggingSeverity = options.loggingSeverity;
         String fieldTrials = options.fieldTrials;
 
+        ThreadUtils.setSlowTaskThresholdMs(options.executorSlowTaskThresholdMs);
+
+        if (options.performanceProfile != null) {
+            performanceProfile = options.performanceProfile;
+        } else if (options.enablePerformanceProfile) {
+            performanceProfile = DevicePerformanceProfile.detect(reactContext);
+        } else {
+            performanceProfile = null;
+        }
+
         PeerConnectionFactory.initialize(PeerConnectionFactory.InitializationOptions.builder(reactContext)
                         .setFieldTrials(fieldTrials)
                         .setNativeLibraryLoader(new LibraryLoader())
@@ -88,17 +135,88 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             // Initialize EGL context required for HW acceleration.
             EglBase.Context eglContext = EglUtils.getRootEglBaseContext();
 
-            if (eglContext != null) {
-                encoderFactory = new H264AndSoftwareVideoEncoderFactory(eglContext);
-                decoderFactory = new H264AndSoftwareVideoDecoderFactory(eglContext);
+            boolean hardwareVideoCodecs = performanceProfile == null || performanceProfile.hardwareVideoCodecs;
+            if (eglContext != null && hardwareVideoCodecs) {
+                EncoderHealthMonitor encoderHealthMonitor = null;
+                if (options.enableEncoderHealthMonitor) {
+                    encoderHealthMonitor = new EncoderHealthMonitor(reactContext);
+                    encoderHealthMonitor.setListener((codecInfo, reason, fallback) -> {
+                        WritableMap params = Arguments.createMap();
+                        params.putString("codec", codecInfo.name);
+                        params.putString("reason", reason);
+                        params.putBoolean("fallback", fallback);
+                        sendEvent("videoEncoderUnhealthy", params);
+                    });
+                }
+
+                if (options.hardwareCodecAllowlist != null) {
+                    hardwareCodecAllowlist = new HardwareCodecAllowlist(options.hardwareCodecAllowlist);
+                    encoderFactory =
+                            new HybridVideoEncoderFactory(eglContext, hardwareCodecAllowlist, encoderHealthMonitor);
+                } else {
+                    encoderFactory = new H264AndSoftwareVideoEncoderFactory(eglContext, encoderHealthMonitor);
+                }
+                HardwareDecoderBudget hardwareDecoderBudget = null;
+                if (options.enableHardwareDecoderBudget) {
+                    int maxHardwareDecoders = options.maxHardwareDecoders > 0
+                            ? options.maxHardwareDecoders
+                            : HardwareDecoderBudget.probeMaxInstances(MediaFormat.MIMETYPE_VIDEO_AVC);
+                    hardwareDecoderBudget = new HardwareDecoderBudget(maxHardwareDecoders);
+                    hardwareDecoderBudget.setListener(freeSlots -> {
+                        WritableMap params = Arguments.createMap();
+                        params.putInt("freeSlots", freeSlots);
+                        sendEvent("hardwareDecoderAvailable", params);
+                    });
+                    Log.d(TAG, "Hardware decoder budget: " + maxHardwareDecoders);
+                }
+
+                if (hardwareCodecAllowlist != null) {
+                    decoderFactory =
+                            new HybridVideoDecoderFactory(eglContext, hardwareCodecAllowlist, hardwareDecoderBudget);
+                } else {
+                    decoderFactory = new H264AndSoftwareVideoDecoderFactory(eglContext, hardwareDecoderBudget);
+                }
             } else {
                 encoderFactory = new SoftwareVideoEncoderFactory();
                 decoderFactory = new SoftwareVideoDecoderFactory();
             }
         }
 
+        VoiceActivityDetector voiceActivityDetector = options.voiceActivityDetector;
+
+        AudioDeviceMonitor audioDeviceMonitor = null;
+
         if (adm == null) {
-            adm = JavaAudioDeviceModule.builder(reactContext).setEnableVolumeLogger(false).createAudioDeviceModule();
+            AudioDeviceConfig audioDeviceConfig =
+                    options.audioDeviceConfig != null ? options.audioDeviceConfig : new AudioDeviceConfig();
+            audioDeviceMonitor = new AudioDeviceMonitor(reactContext, audioDeviceConfig, voiceActivityDetector);
+
+            JavaAudioDeviceModule.Builder admBuilder = audioDeviceConfig.apply(
+                    JavaAudioDeviceModule.builder(reactContext).setEnableVolumeLogger(false));
+            admBuilder.setAudioRecordStateCallback(audioDeviceMonitor)
+                    .setAudioTrackStateCallback(audioDeviceMonitor)
+                    .setAudioRecordErrorCallback(audioDeviceMonitor)
+                    .setAudioTrackErrorCallback(audioDeviceMonitor);
+            if (audioDeviceConfig.enableLatencyMonitor) {
+                // The monitor forwards the samples to the voice activity detector.
+                admBuilder.setSamplesReadyCallback(audioDeviceMonitor);
+            } else if (voiceActivityDetector != null) {
+                admBuilder.setSamplesReadyCallback(voiceActivityDetector);
+            }
+
+            JavaAudioDeviceModule javaAdm = admBuilder.createAudioDeviceModule();
+            audioDeviceMonitor.setAudioDeviceModule(javaAdm);
+            adm = javaAdm;
+        }
+
+        if (voiceActivityDetector != null) {
+            voiceActivityDetector.setListener((speaking, levelDbfs, peakDbfs) -> {
+                WritableMap params = Arguments.createMap();
+                params.putBoolean("speaking", speaking);
+                params.putDouble("level", levelDbfs);
+                params.putDouble("peak", peakDbfs);
+                sendEvent("voiceActivityChanged", params);
+            });
         }
 
         Log.d(TAG, "Using video encoder factory: " + encoderFactory.getClass().getCanonicalName());
@@ -117,8 +235,30 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         mVideoEncoderFactory = encoderFactory;
         mVideoDecoderFactory = decoderFactory;
         mAudioDeviceModule = adm;
+        mVoiceActivityDetector = voiceActivityDetector;
+        mAudioDeviceMonitor = audioDeviceMonitor;
+
+        certificateStore = new CertificateStore(reactContext);
+        certificateStore.start();
+
+        codecBenchmark = new CodecBenchmark(reactContext, encoderFactory);
+
+        resources = new ResourceRegistry(this, this::isLocalTrackReferenced);
+        resources.start(options.resourceLeakCheckIntervalMs);
 
         getUserMediaImpl = new GetUserMediaImpl(this, reactContext);
+        activeSpeakerDetector = new ActiveSpeakerDetector(this);
+
+        peerConnectionPool = new PeerConnectionPool(this::createPeerConnectionObserver);
+
+        compactEvents = new CompactEvents(this, options.enableCompactEvents);
+
+        remoteVideoSubscriptions = new RemoteVideoSubscriptionManager(this);
+        RemoteVideoSubscriptionPolicy subscriptionPolicy = options.remoteVideoSubscriptionPolicy;
+        if (subscriptionPolicy != null) {
+            ThreadUtils.runOnExecutor(
+                    "remoteVideoSubscriptionInit", () -> remoteVideoSubscriptions.setPolicy(subscriptionPolicy, false));
+        }
     }
 
     @NonNull
@@ -127,17 +267,81 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         return "WebRTCModule";
     }
 
+    /**
+     * Stops the background work of the module when the React instance goes
+     * away, e.g. on a JS reload, since a new module is created for the next
+     * one.
+     */
+    @Override
+    public void invalidate() {
+        activeSpeakerDetector.stop();
+        ThreadUtils.runOnExecutor("peerConnectionPoolClear", peerConnectionPool::clear);
+        resources.stop();
+        certificateStore.stop();
+
+        super.invalidate();
+    }
+
     private PeerConnection getPeerConnection(int id) {
         PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
         return (pco == null) ? null : pco.getPeerConnection();
     }
 
+    // Must be called in the executor.
+    private boolean isLocalTrackReferenced(String trackId) {
+        for (MediaStream stream : localStreams.values()) {
+            for (AudioTrack track : stream.audioTracks) {
+                if (track.id().equals(trackId)) {
+                    return true;
+                }
+            }
+            for (VideoTrack track : stream.videoTracks) {
+                if (track.id().equals(trackId)) {
+                    return true;
+                }
+            }
+        }
+
+        for (int i = 0, size = mPeerConnectionObservers.size(); i < size; i++) {
+            PeerConnection peerConnection = mPeerConnectionObservers.valueAt(i).getPeerConnection();
+            if (peerConnection == null) {
+                continue;
+            }
+            for (RtpSender sender : peerConnection.getSenders()) {
+                MediaStreamTrack track = sender.track();
+                if (track != null && track.id().equals(trackId)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // Must be called in the executor.
+    List<PeerConnectionObserver> getPeerConnectionObservers() {
+        List<PeerConnectionObserver> observers = new ArrayList<>(mPeerConnectionObservers.size());
+        for (int i = 0, size = mPeerConnectionObservers.size(); i < size; i++) {
+            observers.add(mPeerConnectionObservers.valueAt(i));
+        }
+        return observers;
+    }
+
     void sendEvent(String eventName, @Nullable ReadableMap params) {
         getReactApplicationContext()
                 .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                 .emit(eventName, params);
     }
 
+    /**
+     * Sends an event encoded by {@link CompactEvents}.
+     */
+    void sendCompactEvent(String eventName, ReadableArray params) {
+        getReactApplicationContext()
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+    }
+
     private PeerConnection.IceServer createIceServer(String url) {
         return PeerConnection.IceServer.builder(url).createIceServer();
     }
@@ -264,20 +468,11 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         // FIXME: peerIdentity of type DOMString (public api)
 
         // certificates (public api)
-        if (map.hasKey("certificates") && map.getType("certificates") == ReadableType.Array) {
-            ReadableArray certificates = map.getArray("certificates");
-            if (certificates.size() > 0) {
-                ReadableMap certMap = certificates.getMap(0);
-                if (certMap.hasKey("certificateId")) {
-                    String certId = certMap.getString("certificateId");
-                    RtcCertificatePem cert;
-                    synchronized (mCertificates) {
-                        cert = mCertificates.get(certId);
-                    }
-                    if (cert != null) {
-                        conf.certificate = cert;
-                    }
-                }
+        String certId = getCertificateId(map);
+        if (certId != null) {
+            RtcCertificatePem cert = certificateStore.get(certId);
+            if (cert != null) {
+                conf.certificate = cert;
             }
         }
 
@@ -397,20 +592,54 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         return conf;
     }
 
+    /**
+     * The id of the first certificate in the given configuration, if any.
+     */
+    @Nullable
+    private static String getCertificateId(@Nullable ReadableMap map) {
+        if (map == null || !map.hasKey("certificates") || map.getType("certificates") != ReadableType.Array) {
+            return null;
+        }
+        ReadableArray certificates = map.getArray("certificates");
+        if (certificates.size() == 0 || certificates.getType(0) != ReadableType.Map) {
+            return null;
+        }
+        ReadableMap certMap = certificates.getMap(0);
+
+        return certMap.hasKey("certificateId") ? certMap.getString("certificateId") : null;
+    }
+
     @ReactMethod(isBlockingSynchronousMethod = true)
     public boolean peerConnectionInit(ReadableMap configuration, int id) {
+        // A certificate the store no longer knows (e.g. expired) can't be
+        // silently replaced by a new one, the fingerprint would not match.
+        // This runs on the JS thread, so it doesn't wait for the persisted
+        // certificates to be loaded.
+        String certId = getCertificateId(configuration);
+        if (certId != null && certificateStore.get(certId) == null) {
+            if (certificateStore.isLoaded()) {
+                Log.w(TAG, "peerConnectionInit() unknown or expired certificate: " + certId);
+            } else {
+                Log.w(TAG, "peerConnectionInit() the persisted certificates are still loading: " + certId);
+            }
+            return false;
+        }
+
         PeerConnection.RTCConfiguration rtcConfiguration = parseRTCConfiguration(configuration);
+        Map<String, Object> configurationMap = configuration != null ? configuration.toHashMap() : null;
 
         try {
             return (boolean) ThreadUtils
-                    .submitToExecutor(() -> {
-                        PeerConnectionObserver observer = new PeerConnectionObserver(this, id);
-                        PeerConnection peerConnection = mFactory.createPeerConnection(rtcConfiguration, observer);
-                        if (peerConnection == null) {
+                    .submitToExecutor("peerConnectionInit", () -> {
+                        PeerConnectionObserver observer = peerConnectionPool.claim(configurationMap, id);
+                        if (observer == null) {
+                            observer = createPeerConnectionObserver(rtcConfiguration, id);
+                        }
+                        if (observer == null) {
                             return false;
                         }
-                        observer.setPeerConnection(peerConnection);
                         mPeerConnectionObservers.put(id, observer);
+                        resources.register(ResourceRegistry.PEER_CONNECTION, String.valueOf(id));
                         return true;
                     })
                     .get();
@@ -420,6 +649,41 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         }
     }
 
+    // Must be called in the executor.
+    @Nullable
+    private PeerConnectionObserver createPeerConnectionObserver(
+            PeerConnection.RTCConfiguration rtcConfiguration, int id) {
+        PeerConnectionObserver observer = new PeerConnectionObserver(this, id);
+        PeerConnection peerConnection = mFactory.createPeerConnection(rtcConfiguration, observer);
+        if (peerConnection == null) {
+            return null;
+        }
+        observer.setPeerConnection(peerConnection);
+        return observer;
+    }
+
+    /**
+     * Keeps <tt>size</tt> PeerConnections created from the given configuration
+     * ready, so a later <tt>peerConnectionInit</tt> with the same
+     * configuration completes immediately with its ICE candidates already
+     * gathered. Idle ones are replaced after <tt>maxIdleMs</tt>. A size of 0
+     * or a null configuration disables the pool.
+     */
+    @ReactMethod
+    public void peerConnectionPoolConfigure(@Nullable ReadableMap configuration, int size, double maxIdleMs) {
+        if (configuration == null || size <= 0) {
+            ThreadUtils.runOnExecutor("peerConnectionPoolConfigure", peerConnectionPool::clear);
+            return;
+        }
+
+        PeerConnection.RTCConfiguration rtcConfiguration = parseRTCConfiguration(configuration);
+        Map<String, Object> configurationMap = configuration.toHashMap();
+        long idleMs = maxIdleMs > 0 ? (long) maxIdleMs : PeerConnectionPool.DEFAULT_MAX_IDLE_MS;
+
+        ThreadUtils.runOnExecutor("peerConnectionPoolConfigure",
+                () -> peerConnectionPool.configure(configurationMap, rtcConfiguration, size, idleMs));
+    }
+
     // Must be called in the executor.
     MediaStream getStreamForReactTag(String streamReactTag) {
         MediaStream stream = localStreams.get(streamReactTag);
@@ -457,6 +721,21 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         return getUserMediaImpl.getTrack(trackId);
     }
 
+    /**
+     * Returns the frame metrics of the given video track, looking it up in the
+     * local tracks first and then in the remote tracks of every
+     * PeerConnection. Must be called in the executor.
+     */
+    VideoFrameMetrics getFrameMetrics(String trackId) {
+        VideoFrameMetrics metrics = getUserMediaImpl.getFrameMetrics(trackId);
+
+        for (int i = 0, size = mPeerConnectionObservers.size(); metrics == null && i < size; i++) {
+            metrics = mPeerConnectionObservers.valueAt(i).getFrameMetrics(trackId);
+        }
+
+        return metrics;
+    }
+
     public VideoTrack createVideoTrack(AbstractVideoCaptureController videoCaptureController) {
         return getUserMediaImpl.createVideoTrack(videoCaptureController);
     }
@@ -493,7 +772,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public WritableMap peerConnectionAddTransceiver(int id, ReadableMap options) {
         try {
             return (WritableMap) ThreadUtils
-                    .submitToExecutor((Callable<Object>) () -> {
+                    .submitToExecutor("peerConnectionAddTransceiver", (Callable<Object>) () -> {
                         PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
                         if (pco == null) {
                             Log.d(TAG, "peerConnectionAddTransceiver() peerConnection is null");
@@ -504,12 +783,12 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                         if (options.hasKey("type")) {
                             String kind = options.getString("type");
                             transceiver = pco.addTransceiver(SerializeUtils.parseMediaType(kind),
-                                    SerializeUtils.parseTransceiverOptions(options.getMap("init")));
+                                    SerializeUtils.parseTransceiverOptions(options.getMap("init"), performanceProfile));
                         } else if (options.hasKey("trackId")) {
                             String trackId = options.getString("trackId");
                             MediaStreamTrack track = getLocalTrack(trackId);
                             transceiver = pco.addTransceiver(
-                                    track, SerializeUtils.parseTransceiverOptions(options.getMap("init")));
+                                    track, SerializeUtils.parseTransceiverOptions(options.getMap("init"), performanceProfile));
 
                         } else {
                             // This should technically never happen as the JS side checks for that.
@@ -539,7 +818,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public WritableMap peerConnectionAddTrack(int id, String trackId, ReadableMap options) {
         try {
             return (WritableMap) ThreadUtils
-                    .submitToExecutor((Callable<Object>) () -> {
+                    .submitToExecutor("peerConnectionAddTrack", (Callable<Object>) () -> {
                         PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
                         if (pco == null) {
                             Log.d(TAG, "peerConnectionAddTrack() peerConnection is null");
@@ -585,7 +864,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public boolean peerConnectionRemoveTrack(int id, String senderId) {
         try {
             return (boolean) ThreadUtils
-                    .submitToExecutor((Callable<Object>) () -> {
+                    .submitToExecutor("peerConnectionRemoveTrack", (Callable<Object>) () -> {
                         PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
                         if (pco == null) {
                             Log.d(TAG, "peerConnectionRemoveTrack() peerConnection is null");
@@ -608,7 +887,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void senderSetParameters(int id, String senderId, ReadableMap options, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("senderSetParameters", () -> {
             try {
                 PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
                 if (pco == null) {
@@ -637,7 +916,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void transceiverStop(int id, String senderId, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("transceiverStop", () -> {
             try {
                 PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
                 if (pco == null) {
@@ -663,7 +942,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void senderReplaceTrack(int id, String senderId, String trackId, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("senderReplaceTrack", () -> {
             try {
                 PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
                 if (pco == null) {
@@ -691,7 +970,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void transceiverSetDirection(int id, String senderId, String direction, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("transceiverSetDirection", () -> {
             WritableMap identifier = Arguments.createMap();
             WritableMap params = Arguments.createMap();
             identifier.putInt("peerConnectionId", id);
@@ -710,6 +989,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                     return;
                 }
 
+                remoteVideoSubscriptions.onDirectionSet(id, transceiver);
                 transceiver.setDirection(SerializeUtils.parseDirection(direction));
 
                 promise.resolve(true);
@@ -722,7 +1002,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod(isBlockingSynchronousMethod = true)
     public boolean transceiverSetCodecPreferences(int id, String senderId, ReadableArray codecPreferences) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("transceiverSetCodecPreferences", () -> {
             WritableMap identifier = Arguments.createMap();
             WritableMap params = Arguments.createMap();
             identifier.putInt("peerConnectionId", id);
@@ -785,30 +1065,32 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void getDisplayMedia(ReadableMap constraints, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> getUserMediaImpl.getDisplayMedia(constraints, promise));
+        ThreadUtils.runOnExecutor("getDisplayMedia", () -> getUserMediaImpl.getDisplayMedia(constraints, promise));
     }
 
     @ReactMethod
     public void getUserMedia(ReadableMap constraints, Callback successCallback, Callback errorCallback) {
-        ThreadUtils.runOnExecutor(() -> getUserMediaImpl.getUserMedia(constraints, successCallback, errorCallback));
+        ThreadUtils.runOnExecutor(
+                "getUserMedia", () -> getUserMediaImpl.getUserMedia(constraints, successCallback, errorCallback));
     }
 
     @ReactMethod
     public void enumerateDevices(Callback callback) {
-        ThreadUtils.runOnExecutor(() -> callback.invoke(getUserMediaImpl.enumerateDevices()));
+        ThreadUtils.runOnExecutor("enumerateDevices", () -> callback.invoke(getUserMediaImpl.enumerateDevices()));
     }
 
     @ReactMethod
     public void mediaStreamCreate(String id) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamCreate", () -> {
             MediaStream mediaStream = mFactory.createLocalMediaStream(id);
             localStreams.put(id, mediaStream);
+            resources.register(ResourceRegistry.LOCAL_STREAM, id);
         });
     }
 
     @ReactMethod
     public void mediaStreamAddTrack(String streamId, int pcId, String trackId) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamAddTrack", () -> {
             MediaStream stream = localStreams.get(streamId);
             if (stream == null) {
                 Log.d(TAG, "mediaStreamAddTrack() could not find stream " + streamId);
@@ -832,7 +1114,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamRemoveTrack(String streamId, int pcId, String trackId) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamRemoveTrack", () -> {
             MediaStream stream = localStreams.get(streamId);
             if (stream == null) {
                 Log.d(TAG, "mediaStreamRemoveTrack() could not find stream " + streamId);
@@ -856,7 +1138,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamRelease(String id) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamRelease", () -> {
             MediaStream stream = localStreams.get(id);
             if (stream == null) {
                 Log.d(TAG, "mediaStreamRelease() stream is null");
@@ -864,12 +1146,13 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             }
             localStreams.remove(id);
             stream.dispose();
+            resources.unregister(ResourceRegistry.LOCAL_STREAM, id);
         });
     }
 
     @ReactMethod
     public void mediaStreamTrackRelease(String id) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamTrackRelease", () -> {
             MediaStreamTrack track = getLocalTrack(id);
             if (track == null) {
                 Log.d(TAG, "mediaStreamTrackRelease() track is null");
@@ -882,7 +1165,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamTrackSetEnabled(int pcId, String id, boolean enabled) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamTrackSetEnabled", () -> {
             MediaStreamTrack track = getTrack(pcId, id);
             if (track == null) {
                 Log.d(TAG, "mediaStreamTrackSetEnabled() could not find track " + id);
@@ -899,7 +1182,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamTrackApplyConstraints(String id, ReadableMap constraints, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamTrackApplyConstraints", () -> {
             MediaStreamTrack track = getLocalTrack(id);
             if (track != null) {
                 getUserMediaImpl.applyConstraints(id, constraints, promise);
@@ -909,9 +1192,22 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         });
     }
 
+    /**
+     * Restricts a screen capture track to a region of the display, given as
+     * <tt>{x, y, width, height}</tt> fractions of the display size, optionally
+     * scaled to <tt>outputWidth</tt> and / or <tt>outputHeight</tt>. A null
+     * region captures the whole display again. Resolves with the track's
+     * updated settings.
+     */
+    @ReactMethod
+    public void mediaStreamTrackSetScreenCaptureRegion(String id, @Nullable ReadableMap region, Promise promise) {
+        ThreadUtils.runOnExecutor("mediaStreamTrackSetScreenCaptureRegion",
+                () -> getUserMediaImpl.setScreenCaptureRegion(id, region, promise));
+    }
+
     @ReactMethod
     public void mediaStreamTrackSetVolume(int pcId, String id, double volume) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("mediaStreamTrackSetVolume", () -> {
             MediaStreamTrack track = getTrack(pcId, id);
             if (track == null) {
                 Log.d(TAG, "mediaStreamTrackSetVolume() could not find track " + id);
@@ -927,6 +1223,26 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         });
     }
 
+    @ReactMethod
+    public void mediaStreamTrackGetFrameMetrics(int pcId, String id, Promise promise) {
+        ThreadUtils.runOnExecutor("mediaStreamTrackGetFrameMetrics", () -> {
+            VideoFrameMetrics metrics;
+            if (pcId == -1) {
+                metrics = getUserMediaImpl.getFrameMetrics(id);
+            } else {
+                PeerConnectionObserver pco = mPeerConnectionObservers.get(pcId);
+                metrics = pco == null ? null : pco.getFrameMetrics(id);
+            }
+
+            if (metrics == null) {
+                promise.reject(new Exception("mediaStreamTrackGetFrameMetrics() could not find video track " + id));
+                return;
+            }
+
+            promise.resolve(metrics.toWritableMap());
+        });
+    }
+
     /**
      * This serializes the transceivers current direction and mid and returns them
      * for update when an sdp negotiation/renegotiation happens
@@ -957,12 +1273,13 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamTrackSetVideoEffects(String id, ReadableArray names) {
-        ThreadUtils.runOnExecutor(() -> { getUserMediaImpl.setVideoEffects(id, names); });
+        ThreadUtils.runOnExecutor(
+                "mediaStreamTrackSetVideoEffects", () -> { getUserMediaImpl.setVideoEffects(id, names); });
     }
 
     @ReactMethod
     public void peerConnectionSetConfiguration(ReadableMap configuration, int id) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionSetConfiguration", () -> {
             PeerConnection peerConnection = getPeerConnection(id);
             if (peerConnection == null) {
                 Log.d(TAG, "peerConnectionSetConfiguration() peerConnection is null");
@@ -974,7 +1291,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionCreateOffer(int id, ReadableMap options, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionCreateOffer", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
             PeerConnection peerConnection = pco.getPeerConnection();
 
@@ -992,12 +1309,13 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             final SdpObserver observer = new SdpObserver() {
                 @Override
                 public void onCreateFailure(String s) {
-                    ThreadUtils.runOnExecutor(() -> { promise.reject("E_OPERATION_ERROR", s); });
+                    ThreadUtils.runOnExecutor(
+                            "peerConnectionCreateOffer", () -> { promise.reject("E_OPERATION_ERROR", s); });
                 }
 
                 @Override
                 public void onCreateSuccess(SessionDescription sdp) {
-                    ThreadUtils.runOnExecutor(() -> {
+                    ThreadUtils.runOnExecutor("peerConnectionCreateOffer", () -> {
                         WritableMap params = Arguments.createMap();
                         WritableMap sdpInfo = Arguments.createMap();
 
@@ -1037,7 +1355,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionCreateAnswer(int id, ReadableMap options, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionCreateAnswer", () -> {
             PeerConnection peerConnection = getPeerConnection(id);
 
             if (peerConnection == null) {
@@ -1049,12 +1367,13 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             final SdpObserver observer = new SdpObserver() {
                 @Override
                 public void onCreateFailure(String s) {
-                    ThreadUtils.runOnExecutor(() -> { promise.reject("E_OPERATION_ERROR", s); });
+                    ThreadUtils.runOnExecutor(
+                            "peerConnectionCreateAnswer", () -> { promise.reject("E_OPERATION_ERROR", s); });
                 }
 
                 @Override
                 public void onCreateSuccess(SessionDescription sdp) {
-                    ThreadUtils.runOnExecutor(() -> {
+                    ThreadUtils.runOnExecutor("peerConnectionCreateAnswer", () -> {
                         WritableMap params = Arguments.createMap();
                         WritableMap sdpInfo = Arguments.createMap();
 
@@ -1081,7 +1400,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionSetLocalDescription(int pcId, ReadableMap desc, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionSetLocalDescription", () -> {
             PeerConnection peerConnection = getPeerConnection(pcId);
             if (peerConnection == null) {
                 Log.d(TAG, "peerConnectionSetLocalDescription() peerConnection is null");
@@ -1095,7 +1414,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
                 @Override
                 public void onSetSuccess() {
-                    ThreadUtils.runOnExecutor(() -> {
+                    ThreadUtils.runOnExecutor("peerConnectionSetLocalDescription", () -> {
                         WritableMap newSdpMap = Arguments.createMap();
                         WritableMap params = Arguments.createMap();
 
@@ -1118,7 +1437,8 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
                 @Override
                 public void onSetFailure(String s) {
-                    ThreadUtils.runOnExecutor(() -> { promise.reject("E_OPERATION_ERROR", s); });
+                    ThreadUtils.runOnExecutor(
+                            "peerConnectionSetLocalDescription", () -> { promise.reject("E_OPERATION_ERROR", s); });
                 }
             };
 
@@ -1136,7 +1456,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionSetRemoteDescription(int id, ReadableMap desc, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionSetRemoteDescription", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
             PeerConnection peerConnection = pco.getPeerConnection();
 
@@ -1160,7 +1480,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
                 @Override
                 public void onSetSuccess() {
-                    ThreadUtils.runOnExecutor(() -> {
+                    ThreadUtils.runOnExecutor("peerConnectionSetRemoteDescription", () -> {
                         WritableMap newSdpMap = Arguments.createMap();
                         WritableMap params = Arguments.createMap();
 
@@ -1196,7 +1516,8 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
                 @Override
                 public void onSetFailure(String s) {
-                    ThreadUtils.runOnExecutor(() -> { promise.reject("E_OPERATION_ERROR", s); });
+                    ThreadUtils.runOnExecutor(
+                            "peerConnectionSetRemoteDescription", () -> { promise.reject("E_OPERATION_ERROR", s); });
                 }
             };
 
@@ -1208,7 +1529,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public WritableMap receiverGetCapabilities(String kind) {
         try {
             return (WritableMap) ThreadUtils
-                    .submitToExecutor((Callable<Object>) () -> {
+                    .submitToExecutor("receiverGetCapabilities", (Callable<Object>) () -> {
                         MediaStreamTrack.MediaType mediaType;
                         if (kind.equals("audio")) {
                             mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO;
@@ -1232,7 +1553,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public WritableMap senderGetCapabilities(String kind) {
         try {
             return (WritableMap) ThreadUtils
-                    .submitToExecutor((Callable<Object>) () -> {
+                    .submitToExecutor("senderGetCapabilities", (Callable<Object>) () -> {
                         MediaStreamTrack.MediaType mediaType;
                         if (kind.equals("audio")) {
                             mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO;
@@ -1254,7 +1575,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void receiverGetStats(int pcId, String receiverId, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("receiverGetStats", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(pcId);
             if (pco == null || pco.getPeerConnection() == null) {
                 Log.d(TAG, "receiverGetStats() peerConnection is null");
@@ -1267,7 +1588,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void senderGetStats(int pcId, String senderId, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("senderGetStats", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(pcId);
             if (pco == null || pco.getPeerConnection() == null) {
                 Log.d(TAG, "senderGetStats() peerConnection is null");
@@ -1280,7 +1601,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionAddICECandidate(int pcId, ReadableMap candidateMap, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionAddICECandidate", () -> {
             PeerConnection peerConnection = getPeerConnection(pcId);
             if (peerConnection == null) {
                 Log.d(TAG, "peerConnectionAddICECandidate() peerConnection is null");
@@ -1304,7 +1625,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             peerConnection.addIceCandidate(candidate, new AddIceObserver() {
                 @Override
                 public void onAddSuccess() {
-                    ThreadUtils.runOnExecutor(() -> {
+                    ThreadUtils.runOnExecutor("peerConnectionAddICECandidate", () -> {
                         WritableMap newSdpMap = Arguments.createMap();
                         SessionDescription newSdp = peerConnection.getRemoteDescription();
                         newSdpMap.putString("type", newSdp.type.canonicalForm());
@@ -1315,7 +1636,8 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
                 @Override
                 public void onAddFailure(String s) {
-                    ThreadUtils.runOnExecutor(() -> { promise.reject("E_OPERATION_ERROR", s); });
+                    ThreadUtils.runOnExecutor(
+                            "peerConnectionAddICECandidate", () -> { promise.reject("E_OPERATION_ERROR", s); });
                 }
             });
         });
@@ -1323,7 +1645,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionGetStats(int peerConnectionId, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionGetStats", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
             if (pco == null || pco.getPeerConnection() == null) {
                 Log.d(TAG, "peerConnectionGetStats() peerConnection is null");
@@ -1334,9 +1656,73 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         });
     }
 
+    /**
+     * Like {@link #peerConnectionGetStats} but only serializes the stats
+     * selected by the given selector. See {@link StatsFilter} for its format.
+     */
+    @ReactMethod
+    public void peerConnectionGetFilteredStats(int peerConnectionId, ReadableMap selector, Promise promise) {
+        StatsFilter filter = StatsFilter.fromReadableMap(selector);
+
+        ThreadUtils.runOnExecutor("peerConnectionGetFilteredStats", () -> {
+            PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+            if (pco == null || pco.getPeerConnection() == null) {
+                Log.d(TAG, "peerConnectionGetFilteredStats() peerConnection is null");
+                promise.resolve(StringUtils.statsToJSON(new RTCStatsReport(0, new HashMap<>())));
+            } else {
+                pco.getStats(filter, promise);
+            }
+        });
+    }
+
+    /**
+     * Resolves with the codec and encoder / decoder implementation each video
+     * stream of the PeerConnection is actually using.
+     */
+    @ReactMethod
+    public void peerConnectionGetCodecImplementations(int peerConnectionId, Promise promise) {
+        ThreadUtils.runOnExecutor("peerConnectionGetCodecImplementations", () -> {
+            PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+            if (pco == null || pco.getPeerConnection() == null) {
+                Log.d(TAG, "peerConnectionGetCodecImplementations() peerConnection is null");
+                promise.resolve(Arguments.createArray());
+            } else {
+                pco.getCodecImplementations(promise);
+            }
+        });
+    }
+
+    /**
+     * Replaces the entries of the hardware codec allowlist, see
+     * {@link HardwareCodecAllowlist}. They apply to the encoders and decoders
+     * created afterwards, but don't change the codecs advertised, which the
+     * PeerConnectionFactory fixed when it was created. Resolves with the
+     * entries in use.
+     */
+    @ReactMethod
+    public void setHardwareCodecAllowlist(ReadableArray entries, Promise promise) {
+        HardwareCodecAllowlist allowlist = hardwareCodecAllowlist;
+        if (allowlist == null) {
+            promise.reject("E_INVALID_STATE", "WebRTCModuleOptions.hardwareCodecAllowlist is not set");
+            return;
+        }
+
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.getType(i) != ReadableType.String) {
+                promise.reject("E_TYPE_ERROR", "Allowlist entries must be strings");
+                return;
+            }
+            list.add(entries.getString(i));
+        }
+
+        allowlist.setEntries(list);
+        promise.resolve(Arguments.fromList(allowlist.getEntries()));
+    }
+
     @ReactMethod
     public void peerConnectionClose(int id) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionClose", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
             if (pco == null || pco.getPeerConnection() == null) {
                 Log.d(TAG, "peerConnectionClose() peerConnection is null");
@@ -1348,19 +1734,20 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionDispose(int id) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionDispose", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
             if (pco == null || pco.getPeerConnection() == null) {
                 Log.d(TAG, "peerConnectionDispose() peerConnection is null");
             }
             pco.dispose();
             mPeerConnectionObservers.remove(id);
+            resources.unregister(ResourceRegistry.PEER_CONNECTION, String.valueOf(id));
         });
     }
 
     @ReactMethod
     public void peerConnectionRestartIce(int pcId) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("peerConnectionRestartIce", () -> {
             PeerConnection peerConnection = getPeerConnection(pcId);
             if (peerConnection == null) {
                 Log.w(TAG, "peerConnectionRestartIce() peerConnection is null");
@@ -1375,7 +1762,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public WritableMap createDataChannel(int peerConnectionId, String label, ReadableMap config) {
         try {
             return (WritableMap) ThreadUtils
-                    .submitToExecutor((Callable<Object>) () -> {
+                    .submitToExecutor("createDataChannel", (Callable<Object>) () -> {
                         PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
                         if (pco == null || pco.getPeerConnection() == null) {
                             Log.d(TAG, "createDataChannel() peerConnection is null");
@@ -1392,7 +1779,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void dataChannelClose(int peerConnectionId, String reactTag) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("dataChannelClose", () -> {
             // Forward to PeerConnectionObserver which deals with DataChannels
             // because DataChannel is owned by PeerConnection.
             PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
@@ -1407,7 +1794,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void dataChannelDispose(int peerConnectionId, String reactTag) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("dataChannelDispose", () -> {
             PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
             if (pco == null || pco.getPeerConnection() == null) {
                 Log.d(TAG, "dataChannelDispose() peerConnection is null");
@@ -1420,7 +1807,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void dataChannelSend(int peerConnectionId, String reactTag, String data, String type) {
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("dataChannelSend", () -> {
             // Forward to PeerConnectionObserver which deals with DataChannels
             // because DataChannel is owned by PeerConnection.
             PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
@@ -1433,36 +1820,95 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         });
     }
 
+    /**
+     * Enables or disables chunked framing of large messages on a DataChannel.
+     * The remote end must do the same. An optional <tt>chunkSize</tt> can be
+     * given in the config, it's capped so chunks fit in 64 KiB. Disabling it
+     * fails the framed messages and files still pending.
+     */
     @ReactMethod
-    public void generateCertificate(ReadableMap options, Promise promise) {
-        ThreadUtils.runOnExecutor(() -> {
-            try {
-                PeerConnection.KeyType keyType = PeerConnection.KeyType.ECDSA;
-                long expires = 2592000L; // Default 30 days
-
-                if (options.hasKey("keyType")) {
-                    String keyTypeStr = options.getString("keyType");
-                    if ("RSA".equals(keyTypeStr)) {
-                        keyType = PeerConnection.KeyType.RSA;
-                    } else if ("ECDSA".equals(keyTypeStr)) {
-                        keyType = PeerConnection.KeyType.ECDSA;
-                    }
-                }
+    public void dataChannelSetFramed(
+            int peerConnectionId, String reactTag, boolean framed, @Nullable ReadableMap config) {
+        int chunkSize = DataChannelFramer.DEFAULT_CHUNK_SIZE;
+        if (config != null && config.hasKey("chunkSize") && config.getType("chunkSize") == ReadableType.Number) {
+            chunkSize = config.getInt("chunkSize");
+        }
+        int finalChunkSize = chunkSize;
 
-                if (options.hasKey("expires")) {
-                    expires = (long) options.getDouble("expires");
-                }
+        ThreadUtils.runOnExecutor("dataChannelSetFramed", () -> {
+            PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+            if (pco == null || pco.getPeerConnection() == null) {
+                Log.d(TAG, "dataChannelSetFramed() peerConnection is null");
+                return;
+            }
 
-                RtcCertificatePem cert = RtcCertificatePem.generateCertificate(keyType, expires);
-                String certId = java.util.UUID.randomUUID().toString();
-                synchronized (mCertificates) {
-                    mCertificates.put(certId, cert);
-                }
+            pco.dataChannelSetFramed(reactTag, framed, finalChunkSize);
+        });
+    }
+
+    /**
+     * Streams a file over a framed DataChannel, reading it from disk as the
+     * channel drains. The path can also be a <tt>file://</tt> URI. Resolves
+     * once the whole file has been handed over to the channel.
+     */
+    @ReactMethod
+    public void dataChannelSendFile(int peerConnectionId, String reactTag, String path, Promise promise) {
+        ThreadUtils.runOnExecutor("dataChannelSendFile", () -> {
+            PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+            if (pco == null || pco.getPeerConnection() == null) {
+                Log.d(TAG, "dataChannelSendFile() peerConnection is null");
+                promise.reject("E_INVALID_STATE", "PeerConnection not found");
+                return;
+            }
+
+            pco.dataChannelSendFile(reactTag, path, promise);
+        });
+    }
+
+    /**
+     * Writes the next file received on a framed DataChannel to the given
+     * path or <tt>file://</tt> URI. Resolves once it has been completely
+     * written, rejects if the file arrives faster than it can be written.
+     */
+    @ReactMethod
+    public void dataChannelReceiveToFile(int peerConnectionId, String reactTag, String path, Promise promise) {
+        ThreadUtils.runOnExecutor("dataChannelReceiveToFile", () -> {
+            PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+            if (pco == null || pco.getPeerConnection() == null) {
+                Log.d(TAG, "dataChannelReceiveToFile() peerConnection is null");
+                promise.reject("E_INVALID_STATE", "PeerConnection not found");
+                return;
+            }
 
+            pco.dataChannelReceiveToFile(reactTag, path, promise);
+        });
+    }
+
+    @ReactMethod
+    public void generateCertificate(ReadableMap options, Promise promise) {
+        PeerConnection.KeyType keyType = PeerConnection.KeyType.ECDSA;
+        long expires = CertificateStore.DEFAULT_EXPIRES_SECONDS;
+
+        if (options.hasKey("keyType")) {
+            String keyTypeStr = options.getString("keyType");
+            if ("RSA".equals(keyTypeStr)) {
+                keyType = PeerConnection.KeyType.RSA;
+            } else if ("ECDSA".equals(keyTypeStr)) {
+                keyType = PeerConnection.KeyType.ECDSA;
+            }
+        }
+
+        if (options.hasKey("expires")) {
+            expires = (long) options.getDouble("expires");
+        }
+
+        certificateStore.generate(keyType, expires, new CertificateStore.Callback() {
+            @Override
+            public void onCertificate(String certId, RtcCertificatePem cert, long expiresAtMs) {
                 WritableMap params = Arguments.createMap();
                 params.putString("certificateId", certId);
                 // Return expires as millis since epoch
-                params.putDouble("expires", System.currentTimeMillis() + expires * 1000);
+                params.putDouble("expires", expiresAtMs);
 
                 // Calculate fingerprints
                 WritableArray fingerprints = Arguments.createArray();
@@ -1486,7 +1932,10 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                 params.putArray("fingerprints", fingerprints);
 
                 promise.resolve(params);
-            } catch (Exception e) {
+            }
+
+            @Override
+            public void onError(Exception e) {
                 promise.reject(e);
             }
         });
@@ -1504,6 +1953,339 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         return sb.toString();
     }
 
+    /**
+     * Resolves with the queue depth of the executor and the wait / run time
+     * percentiles of every operation which went through it. This doesn't
+     * hop onto the executor on purpose, so it works even when it is stuck.
+     */
+    @ReactMethod
+    public void getExecutorMetrics(Promise promise) {
+        promise.resolve(ThreadUtils.getMetrics());
+    }
+
+    /**
+     * Starts detecting speech on the local audio. The optional config may
+     * contain <tt>speakingThreshold</tt> and <tt>silenceThreshold</tt> (in
+     * dBFS), <tt>attackMs</tt> and <tt>hangoverMs</tt>. Transitions are
+     * reported through the <tt>voiceActivityChanged</tt> event.
+     */
+    @ReactMethod
+    public void voiceActivityDetectionStart(@Nullable ReadableMap config, Promise promise) {
+        VoiceActivityDetector vad = mVoiceActivityDetector;
+        if (vad == null) {
+            promise.reject("E_INVALID_STATE", "WebRTCModuleOptions.voiceActivityDetector is not set");
+            return;
+        }
+
+        double speakingThreshold = VoiceActivityDetector.DEFAULT_SPEAKING_THRESHOLD_DBFS;
+        double silenceThreshold = VoiceActivityDetector.DEFAULT_SILENCE_THRESHOLD_DBFS;
+        int attackMs = VoiceActivityDetector.DEFAULT_ATTACK_MS;
+        int hangoverMs = VoiceActivityDetector.DEFAULT_HANGOVER_MS;
+
+        if (config != null) {
+            if (config.hasKey("speakingThreshold") && config.getType("speakingThreshold") == ReadableType.Number) {
+                speakingThreshold = config.getDouble("speakingThreshold");
+            }
+            if (config.hasKey("silenceThreshold") && config.getType("silenceThreshold") == ReadableType.Number) {
+                silenceThreshold = config.getDouble("silenceThreshold");
+            }
+            if (config.hasKey("attackMs") && config.getType("attackMs") == ReadableType.Number) {
+                attackMs = config.getInt("attackMs");
+            }
+            if (config.hasKey("hangoverMs") && config.getType("hangoverMs") == ReadableType.Number) {
+                hangoverMs = config.getInt("hangoverMs");
+            }
+        }
+
+        vad.configure(speakingThreshold, silenceThreshold, attackMs, hangoverMs);
+        vad.setEnabled(true);
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    public void voiceActivityDetectionStop() {
+        VoiceActivityDetector vad = mVoiceActivityDetector;
+        if (vad != null) {
+            vad.setEnabled(false);
+        }
+    }
+
+    /**
+     * Resolves with the RMS and peak level, in dBFS, of the last local audio
+     * buffer analyzed by the voice activity detector.
+     */
+    @ReactMethod
+    public void voiceActivityDetectionGetLevel(Promise promise) {
+        VoiceActivityDetector vad = mVoiceActivityDetector;
+        if (vad == null) {
+            promise.reject("E_INVALID_STATE", "WebRTCModuleOptions.voiceActivityDetector is not set");
+            return;
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putDouble("level", vad.getLevelDbfs());
+        params.putDouble("peak", vad.getPeakDbfs());
+        promise.resolve(params);
+    }
+
+    /**
+     * Forgets which hardware encoders were found to be unhealthy on this
+     * device, so they are offered again once the module is created anew.
+     */
+    @ReactMethod
+    public void videoEncoderHealthReset(Promise promise) {
+        new EncoderHealthMonitor(getReactApplicationContext()).reset();
+        promise.resolve(null);
+    }
+
+    /**
+     * Ranks the video encoders of the device by encoding a synthetic clip with
+     * each of them. The results are persisted, so later calls resolve with
+     * them right away unless <tt>force</tt> is set. The optional config may
+     * also contain <tt>frames</tt>, the length of the clip.
+     */
+    @ReactMethod
+    public void codecBenchmarkRun(@Nullable ReadableMap config, Promise promise) {
+        boolean force = false;
+        int frames = CodecBenchmark.DEFAULT_FRAMES;
+
+        if (config != null) {
+            if (config.hasKey("force") && config.getType("force") == ReadableType.Boolean) {
+                force = config.getBoolean("force");
+            }
+            if (config.hasKey("frames") && config.getType("frames") == ReadableType.Number) {
+                frames = config.getInt("frames");
+            }
+        }
+
+        codecBenchmark.run(force, frames, new CodecBenchmark.Callback() {
+            @Override
+            public void onResults(JSONObject results) {
+                try {
+                    promise.resolve(CodecBenchmark.toWritableMap(results));
+                } catch (JSONException e) {
+                    promise.reject("E_OPERATION_ERROR", e.getMessage());
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                promise.reject("E_OPERATION_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Resolves with the video send capabilities, ordered by the codec
+     * benchmark results, as accepted by <tt>transceiverSetCodecPreferences</tt>.
+     * Rejects if the benchmark hasn't been run with the current codecs.
+     */
+    @ReactMethod
+    public void codecBenchmarkGetPreferences(Promise promise) {
+        ThreadUtils.runOnExecutor("codecBenchmarkGetPreferences", () -> {
+            JSONObject results = codecBenchmark.getResults();
+            if (results == null) {
+                promise.reject("E_INVALID_STATE", "The codec benchmark has not been run");
+                return;
+            }
+
+            RtpCapabilities capabilities =
+                    mFactory.getRtpSenderCapabilities(MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO);
+            List<RtpCapabilities.CodecCapability> ordered =
+                    CodecBenchmark.orderCapabilities(results, capabilities.codecs);
+            WritableArray preferences = Arguments.createArray();
+            for (RtpCapabilities.CodecCapability codec : ordered) {
+                preferences.pushMap(SerializeUtils.serializeRtpCapabilitiesCodec(codec));
+            }
+            promise.resolve(preferences);
+        });
+    }
+
+    /**
+     * Resolves with the settings of the audio device module and its counters:
+     * <tt>recordStarts</tt>, <tt>playoutStarts</tt>, <tt>recordGlitches</tt>,
+     * <tt>playoutUnderruns</tt>, <tt>errors</tt> and the last measured
+     * <tt>roundTripLatencyMs</tt>. Counters which are not available are -1.
+     */
+    @ReactMethod
+    public void audioDeviceGetStats(Promise promise) {
+        AudioDeviceMonitor monitor = mAudioDeviceMonitor;
+        if (monitor == null) {
+            promise.reject("E_INVALID_STATE", "Not available with a custom audio device module");
+            return;
+        }
+
+        promise.resolve(monitor.getStats());
+    }
+
+    /**
+     * Measures the round-trip latency of the audio device module, while audio
+     * is being recorded. Resolves with the latency in milliseconds.
+     */
+    @ReactMethod
+    public void audioDeviceMeasureLatency(Promise promise) {
+        AudioDeviceMonitor monitor = mAudioDeviceMonitor;
+        if (monitor == null) {
+            promise.reject("E_INVALID_STATE", "Not available with a custom audio device module");
+            return;
+        }
+
+        monitor.measureRoundTripLatency((latencyMs, error) -> {
+            if (error != null) {
+                promise.reject("E_OPERATION_ERROR", error);
+            } else {
+                promise.resolve(latencyMs);
+            }
+        });
+    }
+
+    /**
+     * Starts ranking the remote audio tracks of all PeerConnections by their
+     * audio level. The optional config may contain <tt>intervalMs</tt>,
+     * <tt>topN</tt>, <tt>smoothing</tt> (0..1) and <tt>minLevel</tt> (0..1).
+     * Changes are reported through the <tt>activeSpeakersChanged</tt> event.
+     */
+    @ReactMethod
+    public void activeSpeakerDetectionStart(@Nullable ReadableMap config) {
+        int intervalMs = ActiveSpeakerDetector.DEFAULT_INTERVAL_MS;
+        int topN = ActiveSpeakerDetector.DEFAULT_TOP_N;
+        double smoothing = ActiveSpeakerDetector.DEFAULT_SMOOTHING;
+        double minLevel = ActiveSpeakerDetector.DEFAULT_MIN_LEVEL;
+
+        if (config != null) {
+            if (config.hasKey("intervalMs") && config.getType("intervalMs") == ReadableType.Number) {
+                intervalMs = config.getInt("intervalMs");
+            }
+            if (config.hasKey("topN") && config.getType("topN") == ReadableType.Number) {
+                topN = config.getInt("topN");
+            }
+            if (config.hasKey("smoothing") && config.getType("smoothing") == ReadableType.Number) {
+                smoothing = config.getDouble("smoothing");
+            }
+            if (config.hasKey("minLevel") && config.getType("minLevel") == ReadableType.Number) {
+                minLevel = config.getDouble("minLevel");
+            }
+        }
+
+        activeSpeakerDetector.start(intervalMs, topN, smoothing, minLevel);
+    }
+
+    @ReactMethod
+    public void activeSpeakerDetectionStop() {
+        activeSpeakerDetector.stop();
+    }
+
+    /**
+     * Sets the policy deciding which remote video tracks keep being received.
+     * The config can contain:
+     * <ul>
+     * <li><tt>policy</tt>: <tt>none</tt>, <tt>visible</tt>, <tt>lastN</tt> or
+     * <tt>maxPixelsPerSecond</tt>.</li>
+     * <li><tt>lastN</tt>: the number of tracks kept by the <tt>lastN</tt> policy.</li>
+     * <li><tt>maxPixelsPerSecond</tt>: the decoding budget of the
+     * <tt>maxPixelsPerSecond</tt> policy.</li>
+     * <li><tt>manageTransceiverDirection</tt>: whether to also drop the receive
+     * direction of the transceivers of paused tracks.</li>
+     * </ul>
+     * Changes are reported through the <tt>remoteVideoSubscriptionChanged</tt> event.
+     */
+    @ReactMethod
+    public void remoteVideoSubscriptionSetPolicy(ReadableMap config, Promise promise) {
+        String policyName = config.hasKey("policy") ? config.getString("policy") : "none";
+        boolean manageTransceiverDirection = config.hasKey("manageTransceiverDirection")
+                && config.getType("manageTransceiverDirection") == ReadableType.Boolean
+                && config.getBoolean("manageTransceiverDirection");
+
+        RemoteVideoSubscriptionPolicy policy;
+        switch (policyName == null ? "none" : policyName) {
+            case "none":
+                policy = null;
+                break;
+            case "visible":
+                policy = RemoteVideoSubscriptionPolicy.visibleOnly();
+                break;
+            case "lastN":
+                if (!config.hasKey("lastN") || config.getType("lastN") != ReadableType.Number) {
+                    promise.reject("E_TYPE_ERROR", "lastN is required");
+                    return;
+                }
+                policy = RemoteVideoSubscriptionPolicy.lastN(Math.max(0, config.getInt("lastN")));
+                break;
+            case "maxPixelsPerSecond":
+                if (!config.hasKey("maxPixelsPerSecond")
+                        || config.getType("maxPixelsPerSecond") != ReadableType.Number) {
+                    promise.reject("E_TYPE_ERROR", "maxPixelsPerSecond is required");
+                    return;
+                }
+                policy = RemoteVideoSubscriptionPolicy.maxPixelsPerSecond(config.getDouble("maxPixelsPerSecond"));
+                break;
+            case "custom":
+                policy = WebRTCModuleOptions.getInstance().remoteVideoSubscriptionPolicy;
+                if (policy == null) {
+                    promise.reject("E_TYPE_ERROR", "No custom policy has been set");
+                    return;
+                }
+                break;
+            default:
+                promise.reject("E_TYPE_ERROR", "Unknown policy: " + policyName);
+                return;
+        }
+
+        ThreadUtils.runOnExecutor("remoteVideoSubscriptionSetPolicy", () -> {
+            remoteVideoSubscriptions.setPolicy(policy, manageTransceiverDirection);
+            promise.resolve(null);
+        });
+    }
+
+    /**
+     * Gets the schema of the compactly encoded events and starts encoding them
+     * that way, or returns null if that is not enabled in the options.
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @Nullable
+    public WritableMap compactEventsGetSchema() {
+        return compactEvents.getSchema();
+    }
+
+    /**
+     * Measures the cost of building an event payload in the regular and the
+     * compact encodings.
+     */
+    @ReactMethod
+    public void compactEventsBenchmark(int iterations, Promise promise) {
+        promise.resolve(EventEncodingBenchmark.run(iterations));
+    }
+
+    /**
+     * Reports the native resources the module holds, with their owner, age
+     * and creation site, and whether they look leaked.
+     */
+    @ReactMethod
+    public void getResourceReport(Promise promise) {
+        ThreadUtils.runOnExecutor("getResourceReport", () -> {
+            resources.checkLeaks();
+            promise.resolve(resources.getReport());
+        });
+    }
+
+    /**
+     * Gets the performance profile being applied, or the one detected for the
+     * device if none is, with an <tt>applied</tt> flag telling which.
+     */
+    @ReactMethod
+    public void getPerformanceProfile(Promise promise) {
+        DevicePerformanceProfile profile = performanceProfile;
+        if (profile == null) {
+            if (detectedPerformanceProfile == null) {
+                detectedPerformanceProfile = DevicePerformanceProfile.detect(getReactApplicationContext());
+            }
+            profile = detectedPerformanceProfile;
+        }
+        WritableMap result = profile.toWritableMap();
+        result.putBoolean("applied", performanceProfile != null);
+        promise.resolve(result);
+    }
+
     @ReactMethod
     public void addListener(String eventName) {
         // Keep: Required for RN built in Event Emitter Calls.
@@ -6,16 +6,31 @@ import org.webrtc.VideoDecoderFactory;
 import org.webrtc.VideoEncoderFactory;
 import org.webrtc.audio.AudioDeviceModule;
 
+import java.util.List;
+
 public class WebRTCModuleOptions {
     private static WebRTCModuleOptions instance;
 
     public VideoEncoderFactory videoEncoderFactory;
     public VideoDecoderFactory videoDecoderFactory;
     public AudioDeviceModule audioDeviceModule;
+    public AudioDeviceConfig audioDeviceConfig;
+    public VoiceActivityDetector voiceActivityDetector;
+    public RemoteVideoSubscriptionPolicy remoteVideoSubscriptionPolicy;
+    public boolean enableHardwareDecoderBudget;
+    public int maxHardwareDecoders;
+    public List<String> hardwareCodecAllowlist;
     public Loggable injectableLogger;
     public Logging.Severity loggingSeverity;
     public String fieldTrials;
     public boolean enableMediaProjectionService;
+    public boolean enableEncoderHealthMonitor;
+    public boolean enableCompactEvents;
+    public boolean reclaimRemoteStreams;
+    public boolean enablePerformanceProfile;
+    public DevicePerformanceProfile performanceProfile;
+    public long executorSlowTaskThresholdMs = ThreadUtils.DEFAULT_SLOW_TASK_THRESHOLD_MS;
+    public long resourceLeakCheckIntervalMs = ResourceRegistry.DEFAULT_LEAK_CHECK_INTERVAL_MS;
 
     public static WebRTCModuleOptions getInstance() {
         if (instance == null) {
@@ -2,12 +2,14 @@ package com.oney.WebRTCModule;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.Point;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.annotation.Nullable;
 import androidx.core.view.ViewCompat;
 
 import com.facebook.react.bridge.Arguments;
@@ -18,18 +20,22 @@ import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 
 import org.webrtc.EglBase;
+import org.webrtc.EglRenderer;
 import org.webrtc.Logging;
 import org.webrtc.MediaStream;
 import org.webrtc.RendererCommon;
 import org.webrtc.RendererCommon.RendererEvents;
 import org.webrtc.RendererCommon.ScalingType;
 import org.webrtc.SurfaceViewRenderer;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
 import org.webrtc.VideoTrack;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WebRTCView extends ViewGroup {
     /**
@@ -144,6 +150,13 @@ public class WebRTCView extends ViewGroup {
      */
     private final SurfaceViewRenderer surfaceViewRenderer;
 
+    /**
+     * The {@link VideoSink} actually added to {@link #videoTrack}. It hands
+     * the frames over to {@link #surfaceViewRenderer} and reports when they
+     * are drawn to the {@link VideoFrameMetrics} of the track.
+     */
+    private final RendererSink rendererSink = new RendererSink();
+
     /**
      * The {@code VideoTrack}, if any, rendered by this {@code WebRTCView}.
      */
@@ -191,7 +204,7 @@ public class WebRTCView extends ViewGroup {
         WebRTCModule module = reactContext.getNativeModule(WebRTCModule.class);
 
         // Submit lookup to executor thread to avoid blocking UI thread
-        ThreadUtils.runOnExecutor(() -> {
+        ThreadUtils.runOnExecutor("getVideoTrackForStreamURL", () -> {
             try {
                 MediaStream stream = module.getStreamForReactTag(streamURL);
                 if (stream == null) {
@@ -375,10 +388,17 @@ public class WebRTCView extends ViewGroup {
      */
     private void removeRendererFromVideoTrack() {
         if (rendererAttached) {
+            // Releasing the renderer drops its frame listeners.
+            rendererSink.listening.set(false);
             if (videoTrack != null) {
-                ThreadUtils.runOnExecutor(() -> {
+                ReactContext reactContext = (ReactContext) getContext();
+                WebRTCModule module = reactContext.getNativeModule(WebRTCModule.class);
+
+                ThreadUtils.runOnExecutor("removeRendererFromVideoTrack", () -> {
+                    rendererSink.setFrameMetrics(null);
                     try {
-                        videoTrack.removeSink(surfaceViewRenderer);
+                        module.remoteVideoSubscriptions.onRendererDetached(videoTrack, rendererSink);
+                        videoTrack.removeSink(rendererSink);
                     } catch (Throwable tr) {
                         // XXX If WebRTCModule#mediaStreamTrackRelease has already been
                         // invoked on videoTrack, then it is no longer safe to call removeSink
@@ -584,9 +604,14 @@ public class WebRTCView extends ViewGroup {
                 return;
             }
 
-            ThreadUtils.runOnExecutor(() -> {
+            ReactContext reactContext = (ReactContext) getContext();
+            WebRTCModule module = reactContext.getNativeModule(WebRTCModule.class);
+
+            ThreadUtils.runOnExecutor("tryAddRendererToVideoTrack", () -> {
                 try {
-                    videoTrack.addSink(surfaceViewRenderer);
+                    rendererSink.setFrameMetrics(module.getFrameMetrics(videoTrack.id()));
+                    videoTrack.addSink(rendererSink);
+                    module.remoteVideoSubscriptions.onRendererAttached(videoTrack, rendererSink);
                 } catch (Throwable tr) {
                     // XXX If WebRTCModule#mediaStreamTrackRelease has already been
                     // invoked on videoTrack, then it is no longer safe to call addSink
@@ -608,4 +633,61 @@ public class WebRTCView extends ViewGroup {
     public void setOnDimensionsChange(boolean enabled) {
         this.onDimensionsChangeEnabled = enabled;
     }
+
+    /**
+     * Forwards frames to {@link #surfaceViewRenderer} and records when it
+     * draws them. The renderer only tells when it draws a frame through a
+     * one-shot frame listener, which is added ahead of a frame, on the same
+     * render thread queue, whenever none is pending. The listener doesn't
+     * ask for a copy of the frame, so drawing isn't slowed down by it.
+     */
+    private class RendererSink implements VideoSink, EglRenderer.FrameListener {
+        private final AtomicBoolean listening = new AtomicBoolean();
+
+        // Only accessed in the executor.
+        @Nullable
+        private VideoFrameMetrics frameMetrics;
+
+        @Nullable
+        private volatile VideoFrameMetrics.RendererMetrics rendererMetrics;
+        private volatile long deliveredAtNanos;
+
+        void setFrameMetrics(@Nullable VideoFrameMetrics frameMetrics) {
+            VideoFrameMetrics.RendererMetrics rendererMetrics = this.rendererMetrics;
+            if (this.frameMetrics != null && rendererMetrics != null) {
+                this.frameMetrics.removeRenderer(rendererMetrics);
+            }
+
+            this.frameMetrics = frameMetrics;
+            this.rendererMetrics = frameMetrics != null ? frameMetrics.addRenderer() : null;
+        }
+
+        @Override
+        public void onFrame(VideoFrame frame) {
+            if (rendererMetrics != null) {
+                deliveredAtNanos = System.nanoTime();
+                if (listening.compareAndSet(false, true)) {
+                    surfaceViewRenderer.addFrameListener(this, 0);
+                }
+            }
+
+            surfaceViewRenderer.onFrame(frame);
+        }
+
+        /**
+         * Called on the render thread once a frame is drawn, without the
+         * frame since none was asked for. It's the latest one delivered, as
+         * the renderer drops the ones it didn't get to in time.
+         */
+        @Override
+        public void onFrame(Bitmap frame) {
+            long delayNanos = System.nanoTime() - deliveredAtNanos;
+            listening.set(false);
+
+            VideoFrameMetrics.RendererMetrics rendererMetrics = this.rendererMetrics;
+            if (rendererMetrics != null) {
+                rendererMetrics.onFrameRendered(delayNanos);
+            }
+        }
+    }
 }
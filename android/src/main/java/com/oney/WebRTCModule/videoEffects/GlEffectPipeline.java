@@ -0,0 +1,256 @@
+package com.oney.WebRTCModule.videoEffects;
+
+import android.graphics.Matrix;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.webrtc.GlGenericDrawer;
+import org.webrtc.GlShader;
+import org.webrtc.GlTextureFrameBuffer;
+import org.webrtc.RendererCommon;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.TextureBufferImpl;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoFrameDrawer;
+import org.webrtc.YuvConverter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a chain of {@link GlVideoFrameProcessor}s with as few render passes
+ * as possible: their shader stages are fused into one fragment shader, a new
+ * pass being started only by the stages which sample their input. Passes
+ * render to framebuffers taken from a small pool, which go back to it once
+ * the output frame is released.
+ *
+ * Frames must be processed on the thread of the {@link SurfaceTextureHelper},
+ * whose EGL context is current, which is the case for camera frames. On other
+ * threads frames are passed through untouched.
+ */
+public class GlEffectPipeline implements VideoFrameProcessor {
+    private static final String TAG = GlEffectPipeline.class.getSimpleName();
+
+    /**
+     * Idle framebuffers kept, the others are deleted once released.
+     */
+    private static final int MAX_IDLE_FRAMEBUFFERS = 3;
+
+    private static class Stage {
+        final GlVideoFrameProcessor processor;
+        final String prefix;
+
+        Stage(GlVideoFrameProcessor processor, String prefix) {
+            this.processor = processor;
+            this.prefix = prefix;
+        }
+    }
+
+    private static class Pass implements GlGenericDrawer.ShaderCallbacks {
+        final List<Stage> stages = new ArrayList<>();
+        GlGenericDrawer drawer;
+
+        String getFragmentSource() {
+            StringBuilder source = new StringBuilder();
+            for (Stage stage : stages) {
+                source.append(stage.processor.getShaderSource().replace("$", stage.prefix)).append('\n');
+            }
+            source.append("void main() {\n");
+            source.append("  vec4 color = sample(tc);\n");
+            for (Stage stage : stages) {
+                source.append("  color = ").append(stage.prefix).append("apply(color, tc);\n");
+            }
+            source.append("  gl_FragColor = color;\n");
+            source.append("}\n");
+            return source.toString();
+        }
+
+        @Override
+        public void onNewShader(GlShader shader) {
+            for (Stage stage : stages) {
+                stage.processor.onNewShader(shader, stage.prefix);
+            }
+        }
+
+        @Override
+        public void onPrepareShader(GlShader shader,
+                float[] texMatrix,
+                int frameWidth,
+                int frameHeight,
+                int viewportWidth,
+                int viewportHeight) {
+            for (Stage stage : stages) {
+                stage.processor.onPrepareShader(shader, stage.prefix, viewportWidth, viewportHeight);
+            }
+        }
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+
+    // Only touched on the GL thread.
+    private final ArrayDeque<GlTextureFrameBuffer> idleFramebuffers = new ArrayDeque<>();
+    private VideoFrameDrawer frameDrawer;
+    private YuvConverter yuvConverter;
+    private int outstandingFrames;
+    private boolean released;
+    private boolean warnedThread;
+
+    public GlEffectPipeline(List<GlVideoFrameProcessor> processors) {
+        Pass pass = null;
+        for (int i = 0; i < processors.size(); i++) {
+            GlVideoFrameProcessor processor = processors.get(i);
+            if (pass == null || processor.samplesInput()) {
+                pass = new Pass();
+                passes.add(pass);
+            }
+            pass.stages.add(new Stage(processor, "s" + i + "_"));
+        }
+    }
+
+    /**
+     * Number of render passes a frame goes through.
+     */
+    public int getPassCount() {
+        return passes.size();
+    }
+
+    @Override
+    public VideoFrame process(VideoFrame frame, SurfaceTextureHelper textureHelper) {
+        Handler handler = textureHelper.getHandler();
+        if (Looper.myLooper() != handler.getLooper()) {
+            if (!warnedThread) {
+                warnedThread = true;
+                Log.w(TAG, "Frames not on the GL thread are not processed");
+            }
+            frame.retain();
+            return frame;
+        }
+        if (released || passes.isEmpty()) {
+            frame.retain();
+            return frame;
+        }
+
+        if (frameDrawer == null) {
+            frameDrawer = new VideoFrameDrawer();
+            yuvConverter = new YuvConverter();
+            for (Pass pass : passes) {
+                pass.drawer = new GlGenericDrawer(pass.getFragmentSource(), pass);
+            }
+        }
+
+        VideoFrame.Buffer input = frame.getBuffer();
+        int width = input.getWidth();
+        int height = input.getHeight();
+
+        GlTextureFrameBuffer target = null;
+        for (int i = 0; i < passes.size(); i++) {
+            GlTextureFrameBuffer previous = target;
+            target = acquireFramebuffer(width, height);
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target.getFrameBufferId());
+
+            GlGenericDrawer drawer = passes.get(i).drawer;
+            if (previous == null) {
+                // The buffer is drawn unrotated, the rotation is kept as
+                // metadata of the output frame.
+                VideoFrame unrotated = new VideoFrame(input, 0, frame.getTimestampNs());
+                frameDrawer.drawFrame(unrotated, drawer, null, 0, 0, width, height);
+            } else {
+                drawer.drawRgb(previous.getTextureId(),
+                        RendererCommon.identityMatrix(),
+                        width,
+                        height,
+                        0,
+                        0,
+                        width,
+                        height);
+                recycleFramebuffer(previous);
+            }
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        // The output is sampled from other contexts, e.g. by the encoder.
+        GLES20.glFinish();
+
+        GlTextureFrameBuffer output = target;
+        outstandingFrames++;
+        VideoFrame.TextureBuffer buffer = new TextureBufferImpl(width,
+                height,
+                VideoFrame.TextureBuffer.Type.RGB,
+                output.getTextureId(),
+                new Matrix(),
+                handler,
+                yuvConverter,
+                () -> handler.post(() -> {
+                    outstandingFrames--;
+                    recycleFramebuffer(output);
+                    maybeReleaseConverter();
+                }));
+
+        return new VideoFrame(buffer, frame.getRotation(), frame.getTimestampNs());
+    }
+
+    /**
+     * Releases the GL resources. Must be called on the GL thread; frames which
+     * are still in use release theirs when they are released.
+     */
+    public void release() {
+        released = true;
+
+        for (Pass pass : passes) {
+            if (pass.drawer != null) {
+                pass.drawer.release();
+                pass.drawer = null;
+            }
+        }
+        if (frameDrawer != null) {
+            frameDrawer.release();
+        }
+        for (GlTextureFrameBuffer framebuffer : idleFramebuffers) {
+            framebuffer.release();
+        }
+        idleFramebuffers.clear();
+        maybeReleaseConverter();
+    }
+
+    private GlTextureFrameBuffer acquireFramebuffer(int width, int height) {
+        GlTextureFrameBuffer framebuffer = null;
+        for (GlTextureFrameBuffer idle : idleFramebuffers) {
+            if (idle.getWidth() == width && idle.getHeight() == height) {
+                framebuffer = idle;
+                break;
+            }
+        }
+        if (framebuffer != null) {
+            idleFramebuffers.remove(framebuffer);
+            return framebuffer;
+        }
+
+        // Resize the least recently used one, if any.
+        framebuffer = idleFramebuffers.pollLast();
+        if (framebuffer == null) {
+            framebuffer = new GlTextureFrameBuffer(GLES20.GL_RGBA);
+        }
+        framebuffer.setSize(width, height);
+        return framebuffer;
+    }
+
+    private void recycleFramebuffer(GlTextureFrameBuffer framebuffer) {
+        if (released || idleFramebuffers.size() >= MAX_IDLE_FRAMEBUFFERS) {
+            framebuffer.release();
+            return;
+        }
+
+        idleFramebuffers.push(framebuffer);
+    }
+
+    private void maybeReleaseConverter() {
+        // Frames still in use need it to be converted to I420.
+        if (released && outstandingFrames == 0 && yuvConverter != null) {
+            yuvConverter.release();
+            yuvConverter = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.oney.WebRTCModule.videoEffects;
+
+import org.webrtc.GlShader;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoFrame;
+
+import java.util.Collections;
+
+/**
+ * VideoFrameProcessor which contributes a shader stage, so consecutive ones
+ * can be fused by a {@link GlEffectPipeline} into a single render pass instead
+ * of each rendering to its own texture.
+ *
+ * A stage is a GLSL function, <tt>vec4 $apply(vec4 color, vec2 tc)</tt>, which
+ * receives the color of the pixel at <tt>tc</tt> as left by the previous
+ * stages and returns the new one. Every <tt>$</tt> in the source is replaced
+ * by a prefix unique to the stage, so its uniforms and helper functions must
+ * be named with it, e.g. <tt>uniform float $strength;</tt>. Stages which also
+ * need other pixels of their input, such as a blur, can call
+ * <tt>sample(vec2 tc)</tt> if they declare so with {@link #samplesInput()};
+ * they start a new render pass.
+ *
+ * Processors run on their own, e.g. outside of a {@link VideoEffectProcessor},
+ * render their stage alone.
+ */
+public abstract class GlVideoFrameProcessor implements VideoFrameProcessor {
+    private GlEffectPipeline pipeline;
+
+    /**
+     * The GLSL source of the stage.
+     */
+    public abstract String getShaderSource();
+
+    /**
+     * Whether the stage samples its input at other coordinates than the
+     * current pixel, in which case it can't be fused after other stages.
+     */
+    public boolean samplesInput() {
+        return false;
+    }
+
+    /**
+     * Called on the GL thread when the shader containing the stage has been
+     * compiled, to look up the uniform locations.
+     *
+     * @param prefix the prefix which replaced <tt>$</tt> in the source.
+     */
+    public void onNewShader(GlShader shader, String prefix) {}
+
+    /**
+     * Called on the GL thread before every frame is rendered, to set the
+     * uniforms.
+     *
+     * @param prefix the prefix which replaced <tt>$</tt> in the source.
+     */
+    public void onPrepareShader(GlShader shader, String prefix, int frameWidth, int frameHeight) {}
+
+    @Override
+    public VideoFrame process(VideoFrame frame, SurfaceTextureHelper textureHelper) {
+        if (pipeline == null) {
+            pipeline = new GlEffectPipeline(Collections.singletonList(this));
+        }
+
+        return pipeline.process(frame, textureHelper);
+    }
+}
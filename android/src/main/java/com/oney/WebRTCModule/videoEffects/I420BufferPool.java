@@ -0,0 +1,158 @@
+package com.oney.WebRTCModule.videoEffects;
+
+import org.webrtc.JavaI420Buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of I420 buffers for the processors which produce frames on the CPU, so
+ * they don't allocate a new buffer for every frame.
+ *
+ * Buffers are acquired for a given resolution and go back to the pool once
+ * released, that is when their last reference is released through
+ * {@link org.webrtc.VideoFrame.Buffer#release()}, wherever that happens. The
+ * memory kept idle in the pool is bounded, the buffers of the least recently
+ * used resolutions being dropped first. Can be used from any thread.
+ */
+public class I420BufferPool {
+    /**
+     * Default bound of the idle memory, about 4 720p frames.
+     */
+    public static final long DEFAULT_MAX_IDLE_BYTES = 6L * 1024 * 1024;
+
+    private final long maxIdleBytes;
+
+    // Idle buffers by resolution, in access order.
+    private final LinkedHashMap<Long, ArrayDeque<ByteBuffer>> idle = new LinkedHashMap<>(4, 0.75f, true);
+    private long idleBytes;
+
+    private int allocations;
+    private int reuses;
+
+    public I420BufferPool() {
+        this(DEFAULT_MAX_IDLE_BYTES);
+    }
+
+    public I420BufferPool(long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * Gets a buffer of the given resolution, with the same layout as
+     * {@link JavaI420Buffer#allocate(int, int)}. Its contents are undefined.
+     * The caller owns a reference to it.
+     */
+    public JavaI420Buffer acquire(int width, int height) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int sizeY = width * height;
+        int sizeUV = chromaWidth * chromaHeight;
+        long key = key(width, height);
+
+        ByteBuffer data;
+        synchronized (this) {
+            data = take(key);
+            if (data != null) {
+                reuses++;
+            } else {
+                allocations++;
+            }
+        }
+        if (data == null) {
+            data = ByteBuffer.allocateDirect(sizeY + 2 * sizeUV);
+        }
+
+        ByteBuffer backing = data;
+        return JavaI420Buffer.wrap(width,
+                height,
+                slice(data, 0, sizeY),
+                width,
+                slice(data, sizeY, sizeUV),
+                chromaWidth,
+                slice(data, sizeY + sizeUV, sizeUV),
+                chromaWidth,
+                () -> recycle(key, backing));
+    }
+
+    /**
+     * Drops the idle buffers. The ones in use still go back to the pool once
+     * released.
+     */
+    public synchronized void clear() {
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    /**
+     * Number of buffers allocated so far, as opposed to reused.
+     */
+    public synchronized int getAllocationCount() {
+        return allocations;
+    }
+
+    /**
+     * Number of buffers reused so far.
+     */
+    public synchronized int getReuseCount() {
+        return reuses;
+    }
+
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    private ByteBuffer take(long key) {
+        ArrayDeque<ByteBuffer> buffers = idle.get(key);
+        if (buffers == null || buffers.isEmpty()) {
+            return null;
+        }
+
+        ByteBuffer data = buffers.poll();
+        if (buffers.isEmpty()) {
+            idle.remove(key);
+        }
+        idleBytes -= data.capacity();
+        return data;
+    }
+
+    private synchronized void recycle(long key, ByteBuffer data) {
+        if (data.capacity() > maxIdleBytes) {
+            return;
+        }
+
+        ArrayDeque<ByteBuffer> buffers = idle.get(key);
+        if (buffers == null) {
+            buffers = new ArrayDeque<>();
+            idle.put(key, buffers);
+        }
+        buffers.push(data);
+        idleBytes += data.capacity();
+
+        // Evict from the least recently used resolutions.
+        Iterator<Map.Entry<Long, ArrayDeque<ByteBuffer>>> it = idle.entrySet().iterator();
+        while (idleBytes > maxIdleBytes && it.hasNext()) {
+            ArrayDeque<ByteBuffer> entry = it.next().getValue();
+            while (idleBytes > maxIdleBytes && !entry.isEmpty()) {
+                idleBytes -= entry.removeLast().capacity();
+            }
+            if (entry.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        return duplicate.slice();
+    }
+}
@@ -0,0 +1,167 @@
+package com.oney.WebRTCModule.videoEffects;
+
+import android.os.Process;
+import android.util.Log;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Runs CPU effects in parallel over horizontal bands of the frame, on a
+ * bounded fork-join pool sized to the big cores of the device. The calling
+ * thread processes one band itself, so a frame is split in as many bands as
+ * there are big cores.
+ *
+ * Bands start on even rows, so each one also covers whole chroma rows.
+ */
+public class TileExecutor {
+    private static final String TAG = TileExecutor.class.getSimpleName();
+
+    /**
+     * Cores whose maximum frequency is at least this fraction of the fastest
+     * one are considered big.
+     */
+    private static final double BIG_CORE_FREQUENCY_RATIO = 0.8;
+
+    public interface BandProcessor {
+        /**
+         * Processes the rows <tt>[top, bottom)</tt> of the frame, and the
+         * chroma rows <tt>[top / 2, (bottom + 1) / 2)</tt>. Called on several
+         * threads at once, each with its own band; only the rows of the band
+         * may be written.
+         */
+        void processBand(VideoFrame.I420Buffer src, JavaI420Buffer dst, int top, int bottom);
+    }
+
+    private static TileExecutor instance;
+
+    private final ForkJoinPool pool;
+    private final int bands;
+
+    /**
+     * Gets the executor shared by the effects.
+     */
+    public static synchronized TileExecutor getInstance() {
+        if (instance == null) {
+            instance = new TileExecutor(countBigCores());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param threads the number of threads frames are processed on, counting
+     * the calling one.
+     */
+    public TileExecutor(int threads) {
+        this.bands = Math.max(1, threads);
+        this.pool = new ForkJoinPool(Math.max(1, bands - 1), forkJoinPool -> {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(forkJoinPool) {
+                @Override
+                protected void onStart() {
+                    super.onStart();
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                }
+            };
+            thread.setName("TileExecutor-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        Log.d(TAG, "Processing frames in " + bands + " bands");
+    }
+
+    /**
+     * Number of bands frames are split in.
+     */
+    public int getBandCount() {
+        return bands;
+    }
+
+    /**
+     * Processes the frame band by band into <tt>dst</tt>, which must have
+     * the same size as <tt>src</tt>. Returns the time each band took, in
+     * nanoseconds, from the top band down.
+     */
+    public long[] run(VideoFrame.I420Buffer src, JavaI420Buffer dst, BandProcessor processor) {
+        int height = src.getHeight();
+        int count = Math.max(1, Math.min(bands, height / 2));
+        // Rounded to even rows, the last band takes the remainder.
+        int bandHeight = (height / count) & ~1;
+
+        long[] timesNs = new long[count];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[count];
+
+        for (int i = 1; i < count; i++) {
+            int band = i;
+            int top = band * bandHeight;
+            int bottom = band == count - 1 ? height : top + bandHeight;
+            tasks[band] = pool.submit(() -> {
+                long start = System.nanoTime();
+                processor.processBand(src, dst, top, bottom);
+                timesNs[band] = System.nanoTime() - start;
+            });
+        }
+
+        RuntimeException failure = null;
+        try {
+            long start = System.nanoTime();
+            processor.processBand(src, dst, 0, count == 1 ? height : bandHeight);
+            timesNs[0] = System.nanoTime() - start;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        // All the bands are waited for before failing, so none is still
+        // writing to dst once it's released.
+        for (int i = 1; i < count; i++) {
+            try {
+                tasks[i].join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        return timesNs;
+    }
+
+    /**
+     * Counts the cores whose maximum frequency is close to the fastest one,
+     * or half of them if the frequencies can't be read.
+     */
+    static int countBigCores() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long[] frequencies = new long[cores];
+        long maxFrequency = 0;
+
+        for (int i = 0; i < cores; i++) {
+            String path = "/sys/devices/system/cpu/cpu" + i + "/cpufreq/cpuinfo_max_freq";
+            try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+                frequencies[i] = Long.parseLong(reader.readLine().trim());
+                maxFrequency = Math.max(maxFrequency, frequencies[i]);
+            } catch (IOException | RuntimeException e) {
+                return Math.max(1, cores / 2);
+            }
+        }
+
+        int bigCores = 0;
+        for (long frequency : frequencies) {
+            if (frequency >= maxFrequency * BIG_CORE_FREQUENCY_RATIO) {
+                bigCores++;
+            }
+        }
+
+        return Math.max(1, bigCores);
+    }
+}
@@ -0,0 +1,80 @@
+package com.oney.WebRTCModule.videoEffects;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoFrame;
+
+/**
+ * VideoFrameProcessor for CPU effects which can process a frame band by band.
+ * Frames are converted to I420, processed in parallel by the shared
+ * {@link TileExecutor} and written to a buffer from the {@link I420BufferPool}.
+ *
+ * Subclasses implement
+ * {@link TileExecutor.BandProcessor#processBand(VideoFrame.I420Buffer, JavaI420Buffer, int, int)},
+ * which is called on several threads at once.
+ */
+public abstract class TiledVideoFrameProcessor implements VideoFrameProcessor, TileExecutor.BandProcessor {
+    private final TileExecutor executor;
+
+    // Pool used when not run by a VideoEffectProcessor.
+    private I420BufferPool ownPool;
+
+    private volatile long[] lastBandTimesNs = new long[0];
+    private volatile long lastFrameTimeNs;
+
+    public TiledVideoFrameProcessor() {
+        this(TileExecutor.getInstance());
+    }
+
+    public TiledVideoFrameProcessor(TileExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * The time each band of the last frame took, in nanoseconds, from the
+     * top band down.
+     */
+    public long[] getLastBandTimesNs() {
+        return lastBandTimesNs.clone();
+    }
+
+    /**
+     * The time the last frame took, conversion to I420 included, in
+     * nanoseconds.
+     */
+    public long getLastFrameTimeNs() {
+        return lastFrameTimeNs;
+    }
+
+    @Override
+    public VideoFrame process(VideoFrame frame, SurfaceTextureHelper textureHelper) {
+        if (ownPool == null) {
+            ownPool = new I420BufferPool();
+        }
+
+        return process(frame, textureHelper, ownPool);
+    }
+
+    @Override
+    public VideoFrame process(VideoFrame frame, SurfaceTextureHelper textureHelper, I420BufferPool bufferPool) {
+        long start = System.nanoTime();
+
+        VideoFrame.I420Buffer src = frame.getBuffer().toI420();
+        if (src == null) {
+            return null;
+        }
+
+        JavaI420Buffer dst = bufferPool.acquire(src.getWidth(), src.getHeight());
+        try {
+            lastBandTimesNs = executor.run(src, dst, this);
+        } catch (RuntimeException e) {
+            dst.release();
+            throw e;
+        } finally {
+            src.release();
+        }
+
+        lastFrameTimeNs = System.nanoTime() - start;
+        return new VideoFrame(dst, frame.getRotation(), frame.getTimestampNs());
+    }
+}
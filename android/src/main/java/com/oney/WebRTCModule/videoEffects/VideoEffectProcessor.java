@@ -1,31 +1,87 @@
 package com.oney.WebRTCModule.videoEffects;
 
 import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.ThreadUtils;
 import org.webrtc.VideoFrame;
 import org.webrtc.VideoProcessor;
 import org.webrtc.VideoSink;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Lightweight abstraction for an object that can receive video frames, process and add effects in
  * them, and pass them on to another object.
+ *
+ * Consecutive {@link GlVideoFrameProcessor}s are run through a {@link GlEffectPipeline}, which
+ * fuses their shader stages into as few render passes as possible. Other processors are run one
+ * after another.
  */
 public class VideoEffectProcessor implements VideoProcessor {
     private VideoSink mSink;
     final private SurfaceTextureHelper textureHelper;
     final private List<VideoFrameProcessor> videoFrameProcessors;
+    final private I420BufferPool bufferPool;
 
     public VideoEffectProcessor(List<VideoFrameProcessor> processors, SurfaceTextureHelper textureHelper) {
+        this(processors, textureHelper, new I420BufferPool());
+    }
+
+    public VideoEffectProcessor(
+            List<VideoFrameProcessor> processors, SurfaceTextureHelper textureHelper, I420BufferPool bufferPool) {
         this.textureHelper = textureHelper;
-        this.videoFrameProcessors = processors;
+        this.videoFrameProcessors = fuse(processors);
+        this.bufferPool = bufferPool;
+    }
+
+    private static List<VideoFrameProcessor> fuse(List<VideoFrameProcessor> processors) {
+        List<VideoFrameProcessor> fused = new ArrayList<>();
+        List<GlVideoFrameProcessor> glProcessors = new ArrayList<>();
+
+        for (VideoFrameProcessor processor : processors) {
+            if (processor instanceof GlVideoFrameProcessor) {
+                glProcessors.add((GlVideoFrameProcessor) processor);
+                continue;
+            }
+            if (!glProcessors.isEmpty()) {
+                fused.add(new GlEffectPipeline(new ArrayList<>(glProcessors)));
+                glProcessors.clear();
+            }
+            fused.add(processor);
+        }
+        if (!glProcessors.isEmpty()) {
+            fused.add(new GlEffectPipeline(glProcessors));
+        }
+
+        return fused;
+    }
+
+    /**
+     * Releases the GL resources of the pipelines and the idle buffers on the texture thread, where
+     * the GL context is current, waiting for the frame being processed, if any, to be done. It
+     * blocks until then, so the {@link SurfaceTextureHelper} can be disposed right after. The
+     * processor must no longer be in use.
+     */
+    public void release() {
+        ThreadUtils.invokeAtFrontUninterruptibly(textureHelper.getHandler(), () -> {
+            for (VideoFrameProcessor processor : videoFrameProcessors) {
+                if (processor instanceof GlEffectPipeline) {
+                    ((GlEffectPipeline) processor).release();
+                }
+            }
+            bufferPool.clear();
+        });
     }
 
     @Override
     public void onCapturerStarted(boolean success) {}
 
     @Override
-    public void onCapturerStopped() {}
+    public void onCapturerStopped() {
+        // Buffers still in use go back to the pool, but the idle ones won't
+        // be needed until capture restarts, maybe at another resolution.
+        bufferPool.clear();
+    }
 
     @Override
     public void setSink(VideoSink sink) {
@@ -43,17 +99,19 @@ public class VideoEffectProcessor implements VideoProcessor {
         frame.retain();
         VideoFrame outputFrame = frame;
         for (VideoFrameProcessor processor : this.videoFrameProcessors) {
-            outputFrame = processor.process(outputFrame, textureHelper);
+            VideoFrame processedFrame = processor.process(outputFrame, textureHelper, bufferPool);
+            // Intermediate frames are released as soon as they are consumed, so their buffers
+            // can be reused for the next frame.
+            outputFrame.release();
 
-            if (outputFrame == null) {
+            if (processedFrame == null) {
                 mSink.onFrame(frame);
-                frame.release();
                 return;
             }
+            outputFrame = processedFrame;
         }
 
         mSink.onFrame(outputFrame);
         outputFrame.release();
-        frame.release();
     }
 }
@@ -16,4 +16,17 @@ public interface VideoFrameProcessor {
      * @return processed videoframe which will rendered
      */
     public VideoFrame process(VideoFrame frame, SurfaceTextureHelper textureHelper);
+
+    /**
+     * Same as {@link #process(VideoFrame, SurfaceTextureHelper)}, with a pool the output buffers
+     * can be taken from instead of allocating them for every frame. Processors which produce
+     * frames on the CPU should override it.
+     * @param frame raw videoframe which need to be processed
+     * @param textureHelper
+     * @param bufferPool pool of I420 buffers, shared by the processors of the track
+     * @return processed videoframe which will rendered
+     */
+    default VideoFrame process(VideoFrame frame, SurfaceTextureHelper textureHelper, I420BufferPool bufferPool) {
+        return process(frame, textureHelper);
+    }
 }
@@ -0,0 +1,75 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoDecoder;
+
+/**
+ * Hardware decoder which takes a slot from a {@link HardwareDecoderBudget}
+ * while it's initialized. When it is wrapped in a
+ * {@link org.webrtc.VideoDecoderFallback} and there are no slots left, it
+ * fails to initialize with {@link VideoCodecStatus#FALLBACK_SOFTWARE} so the
+ * fallback switches to software decoding. Without a fallback it is never
+ * denied, as there would be nothing to show instead: it takes a slot even
+ * past the budget, so the decoders with a fallback see the device is busy.
+ */
+class BudgetedVideoDecoder implements VideoDecoder {
+    private final VideoDecoder hardwareDecoder;
+    private final HardwareDecoderBudget budget;
+    private final boolean hasFallback;
+
+    // Only accessed on the decoder thread.
+    private boolean hasSlot;
+
+    BudgetedVideoDecoder(VideoDecoder hardwareDecoder, HardwareDecoderBudget budget, boolean hasFallback) {
+        this.hardwareDecoder = hardwareDecoder;
+        this.budget = budget;
+        this.hasFallback = hasFallback;
+    }
+
+    @Override
+    public VideoCodecStatus initDecode(Settings settings, Callback decodeCallback) {
+        if (!hasSlot) {
+            if (hasFallback) {
+                if (!budget.tryAcquire()) {
+                    return VideoCodecStatus.FALLBACK_SOFTWARE;
+                }
+            } else {
+                budget.acquire();
+            }
+            hasSlot = true;
+        }
+
+        VideoCodecStatus status = hardwareDecoder.initDecode(settings, decodeCallback);
+        if (status != VideoCodecStatus.OK) {
+            releaseSlot();
+        }
+
+        return status;
+    }
+
+    @Override
+    public VideoCodecStatus release() {
+        VideoCodecStatus status = hardwareDecoder.release();
+        releaseSlot();
+
+        return status;
+    }
+
+    @Override
+    public VideoCodecStatus decode(EncodedImage frame, DecodeInfo info) {
+        return hardwareDecoder.decode(frame, info);
+    }
+
+    @Override
+    public String getImplementationName() {
+        return hardwareDecoder.getImplementationName();
+    }
+
+    private void releaseSlot() {
+        if (hasSlot) {
+            hasSlot = false;
+            budget.release();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.VideoCodecInfo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the health of the hardware encoders. Hardware encoders are
+ * wrapped so their encode latency, output frames compared to input frames and
+ * errors are watched, see {@link MonitoredVideoEncoder}. An encoder which
+ * stays unhealthy past the configured thresholds switches to software
+ * encoding, when there is a software encoder for the codec, and the decision
+ * is persisted so the codec profile is not offered in hardware on this device
+ * until it expires, starting with the next factory. Without a software encoder
+ * nothing changes for the running session besides the {@link Listener} being
+ * called.
+ *
+ * The thresholds are read when an encoder is created.
+ */
+public class EncoderHealthMonitor {
+    private static final String TAG = EncoderHealthMonitor.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "WebRTCModuleEncoderHealth";
+
+    public interface Listener {
+        /**
+         * Called on an encoder thread when a hardware encoder is found to be
+         * unhealthy.
+         *
+         * @param codecInfo the codec the encoder was created for.
+         * @param reason a human readable reason.
+         * @param fallback whether the stream switched to software encoding. If
+         * not, the app may want to renegotiate using a different codec.
+         */
+        void onEncoderUnhealthy(VideoCodecInfo codecInfo, String reason, boolean fallback);
+    }
+
+    /**
+     * Length of the windows over which the encoder health is evaluated.
+     */
+    public int windowMs = 5000;
+
+    /**
+     * Mean time from frame submission to encoded output above which a window
+     * is considered unhealthy.
+     */
+    public double maxMeanEncodeLatencyMs = 150;
+
+    /**
+     * Ratio of the frames which come out of the encoder to the ones expected,
+     * the input ones capped by the frame rate asked by the rate controller,
+     * below which a window is considered unhealthy. Not checked while the
+     * encoder keeps close to its target bitrate, since it is then dropping
+     * frames on purpose.
+     */
+    public double minOutputFramerateRatio = 0.5;
+
+    /**
+     * Number of encode errors above which a window is considered unhealthy.
+     */
+    public int maxErrorsPerWindow = 3;
+
+    /**
+     * Number of consecutive unhealthy windows after which the encoder is
+     * given up on.
+     */
+    public int unhealthyWindows = 2;
+
+    /**
+     * How long an encoder found to be unhealthy stays off, after which it is
+     * offered in hardware again. The decisions are read when the factories
+     * are created.
+     */
+    public long unhealthyExpirationMs = TimeUnit.DAYS.toMillis(7);
+
+    private final SharedPreferences preferences;
+
+    @Nullable
+    private volatile Listener listener;
+
+    public EncoderHealthMonitor(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether the hardware encoder for the given codec has been found to be
+     * unhealthy on this device, in this or a previous session, less than
+     * {@link #unhealthyExpirationMs} ago.
+     */
+    public boolean isUnhealthy(VideoCodecInfo codecInfo) {
+        String key = key(codecInfo);
+        // Values which are not a time come from a version where the decisions didn't expire.
+        Object reportedAt = preferences.getAll().get(key);
+        if (!(reportedAt instanceof Long)) {
+            if (reportedAt != null) {
+                preferences.edit().remove(key).apply();
+            }
+            return false;
+        }
+
+        long age = System.currentTimeMillis() - (Long) reportedAt;
+        if (age >= 0 && age < unhealthyExpirationMs) {
+            return true;
+        }
+
+        preferences.edit().remove(key).apply();
+        return false;
+    }
+
+    /**
+     * Forgets all the persisted decisions. The codecs are offered in hardware
+     * again by the factories created afterwards.
+     */
+    public void reset() {
+        preferences.edit().clear().apply();
+    }
+
+    void reportUnhealthy(VideoCodecInfo codecInfo, String reason, boolean fallback) {
+        Log.w(TAG, "Hardware " + key(codecInfo) + " encoder is unhealthy: " + reason);
+
+        preferences.edit().putLong(key(codecInfo), System.currentTimeMillis()).apply();
+
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onEncoderUnhealthy(codecInfo, reason, fallback);
+        }
+    }
+
+    /**
+     * The decisions are made per codec profile and per build of the device
+     * software, so an OS update gets the encoder a new chance.
+     */
+    private static String key(VideoCodecInfo codecInfo) {
+        String profile = codecInfo.params.get(VideoCodecInfo.H264_FMTP_PROFILE_LEVEL_ID);
+        return codecInfo.name + (profile != null ? "/" + profile : "") + "@" + Build.FINGERPRINT;
+    }
+}
@@ -7,6 +7,7 @@ import org.webrtc.HardwareVideoDecoderFactory;
 import org.webrtc.VideoCodecInfo;
 import org.webrtc.VideoDecoder;
 import org.webrtc.VideoDecoderFactory;
+import org.webrtc.VideoDecoderFallback;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,21 +19,45 @@ import java.util.List;
  *
  * - In hardware: H.264 (high, baseline)
  * - In software: VP8, VP9, AV1
+ *
+ * When a {@link HardwareDecoderBudget} is given, H.264 decoders created past
+ * the budget are decoded in software, if available. Otherwise they still use
+ * the hardware, see {@link BudgetedVideoDecoder}.
  */
 public class H264AndSoftwareVideoDecoderFactory implements VideoDecoderFactory {
     private final VideoDecoderFactory hardwareVideoDecoderFactory;
     private final VideoDecoderFactory softwareVideoDecoderFactory;
+    @Nullable
+    private final HardwareDecoderBudget hardwareDecoderBudget;
 
     public H264AndSoftwareVideoDecoderFactory(@Nullable EglBase.Context eglContext) {
+        this(eglContext, null);
+    }
+
+    public H264AndSoftwareVideoDecoderFactory(
+            @Nullable EglBase.Context eglContext, @Nullable HardwareDecoderBudget hardwareDecoderBudget) {
         this.hardwareVideoDecoderFactory = new HardwareVideoDecoderFactory(eglContext);
         this.softwareVideoDecoderFactory = new SoftwareVideoDecoderFactoryProxy();
+        this.hardwareDecoderBudget = hardwareDecoderBudget;
     }
 
     @Nullable
     @Override
     public VideoDecoder createDecoder(VideoCodecInfo codecInfo) {
         if (codecInfo.name.equalsIgnoreCase("H264")) {
-            return this.hardwareVideoDecoderFactory.createDecoder(codecInfo);
+            VideoDecoder hardwareDecoder = this.hardwareVideoDecoderFactory.createDecoder(codecInfo);
+            if (hardwareDecoder == null || this.hardwareDecoderBudget == null) {
+                return hardwareDecoder;
+            }
+
+            // Without a software H.264 decoder, the decoder is counted but never denied.
+            VideoDecoder softwareDecoder = this.softwareVideoDecoderFactory.createDecoder(codecInfo);
+            if (softwareDecoder == null) {
+                return new BudgetedVideoDecoder(hardwareDecoder, this.hardwareDecoderBudget, false);
+            }
+
+            return new VideoDecoderFallback(
+                    softwareDecoder, new BudgetedVideoDecoder(hardwareDecoder, this.hardwareDecoderBudget, true));
         }
 
         return this.softwareVideoDecoderFactory.createDecoder(codecInfo);
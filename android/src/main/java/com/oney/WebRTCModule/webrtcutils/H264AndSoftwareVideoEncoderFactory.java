@@ -7,6 +7,7 @@ import org.webrtc.HardwareVideoEncoderFactory;
 import org.webrtc.VideoCodecInfo;
 import org.webrtc.VideoEncoder;
 import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoEncoderFallback;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,21 +19,67 @@ import java.util.List;
  *
  * - In hardware: H.264 (high, baseline)
  * - In software: VP8, VP9, AV1
+ *
+ * When an {@link EncoderHealthMonitor} is given, the hardware encoders are
+ * monitored and H.264 profiles found to be unhealthy on this device are no
+ * longer offered in hardware by the factories created afterwards, so the
+ * next sessions negotiate another codec. Switching to software H.264 within
+ * the session only happens if the WebRTC build has a software H.264 encoder,
+ * which the stock builds don't. Otherwise the monitoring only detects the
+ * problem, and it is up to the app to renegotiate with another codec.
  */
 public class H264AndSoftwareVideoEncoderFactory implements VideoEncoderFactory {
     private final VideoEncoderFactory hardwareVideoEncoderFactory;
     private final VideoEncoderFactory softwareVideoEncoderFactory;
+    @Nullable
+    private final EncoderHealthMonitor encoderHealthMonitor;
+    private final boolean hasSoftwareH264;
 
     public H264AndSoftwareVideoEncoderFactory(@Nullable EglBase.Context eglContext) {
+        this(eglContext, null);
+    }
+
+    public H264AndSoftwareVideoEncoderFactory(
+            @Nullable EglBase.Context eglContext, @Nullable EncoderHealthMonitor encoderHealthMonitor) {
         this.hardwareVideoEncoderFactory = new HardwareVideoEncoderFactory(eglContext, false, true);
         this.softwareVideoEncoderFactory = new SoftwareVideoEncoderFactoryProxy();
+        this.encoderHealthMonitor = encoderHealthMonitor;
+
+        boolean hasSoftwareH264 = false;
+        for (VideoCodecInfo codec : this.softwareVideoEncoderFactory.getSupportedCodecs()) {
+            if (codec.name.equalsIgnoreCase("H264")) {
+                hasSoftwareH264 = true;
+                break;
+            }
+        }
+        this.hasSoftwareH264 = hasSoftwareH264;
     }
 
     @Nullable
     @Override
     public VideoEncoder createEncoder(VideoCodecInfo codecInfo) {
         if (codecInfo.name.equalsIgnoreCase("H264")) {
-            return this.hardwareVideoEncoderFactory.createEncoder(codecInfo);
+            if (this.encoderHealthMonitor == null) {
+                return this.hardwareVideoEncoderFactory.createEncoder(codecInfo);
+            }
+
+            if (this.hasSoftwareH264 && this.encoderHealthMonitor.isUnhealthy(codecInfo)) {
+                return this.softwareVideoEncoderFactory.createEncoder(codecInfo);
+            }
+
+            VideoEncoder hardwareEncoder = this.hardwareVideoEncoderFactory.createEncoder(codecInfo);
+            if (hardwareEncoder == null) {
+                return this.hasSoftwareH264 ? this.softwareVideoEncoderFactory.createEncoder(codecInfo) : null;
+            }
+
+            VideoEncoder monitoredEncoder = new MonitoredVideoEncoder(
+                    hardwareEncoder, codecInfo, this.encoderHealthMonitor, this.hasSoftwareH264);
+            if (!this.hasSoftwareH264) {
+                return monitoredEncoder;
+            }
+
+            return new VideoEncoderFallback(
+                    this.softwareVideoEncoderFactory.createEncoder(codecInfo), monitoredEncoder);
         }
 
         return this.softwareVideoEncoderFactory.createEncoder(codecInfo);
@@ -52,6 +99,9 @@ public class H264AndSoftwareVideoEncoderFactory implements VideoEncoderFactory {
                 if (profileLevel == null) {
                     continue;
                 }
+                if (this.encoderHealthMonitor != null && this.encoderHealthMonitor.isUnhealthy(hwCodec)) {
+                    continue;
+                }
                 if (profileLevel.equalsIgnoreCase(VideoCodecInfo.H264_CONSTRAINED_HIGH_3_1)) {
                     h264High = hwCodec;
                 } else if (profileLevel.equalsIgnoreCase(VideoCodecInfo.H264_CONSTRAINED_BASELINE_3_1)) {
@@ -0,0 +1,168 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import org.webrtc.VideoCodecInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The codec and chipset pairs for which hardware video codecs can be trusted.
+ * Entries have the form <tt>codec:chipset</tt>, e.g. <tt>VP9:qcom</tt>, where
+ * the chipset is matched case insensitively against the SoC manufacturer and
+ * model, the hardware and board names of the device and the names of its
+ * hardware MediaCodecs for the codec (e.g. <tt>c2.qti.vp9.encoder</tt>), as
+ * a substring. <tt>*</tt> matches any chipset.
+ *
+ * The entries can be replaced at any time, they apply to the encoders and
+ * decoders created afterwards. They can't change the codecs advertised in
+ * SDP though: the PeerConnectionFactory asks the codec factories for them
+ * only once, when it's created, so a codec which wasn't allowed in hardware
+ * then and has no software implementation is never offered.
+ */
+public class HardwareCodecAllowlist {
+    private static final String TAG = HardwareCodecAllowlist.class.getSimpleName();
+
+    /**
+     * H.264 in hardware everywhere, as {@link H264AndSoftwareVideoEncoderFactory}
+     * does, and VP8 / VP9 on the chipsets whose encoders WebRTC itself
+     * enables in hardware.
+     */
+    public static final List<String> DEFAULT_ENTRIES = Collections.unmodifiableList(
+            Arrays.asList("H264:*", "VP8:qcom", "VP8:qti", "VP8:exynos", "VP9:qcom", "VP9:qti", "VP9:exynos"));
+
+    private static class Entry {
+        final String codec;
+        final String chipset;
+
+        Entry(String codec, String chipset) {
+            this.codec = codec;
+            this.chipset = chipset;
+        }
+    }
+
+    private final String deviceChipset;
+    private final Map<String, String> mediaCodecNames = new ConcurrentHashMap<>();
+
+    private volatile List<Entry> entries;
+    private volatile List<String> rawEntries;
+
+    public HardwareCodecAllowlist() {
+        this(DEFAULT_ENTRIES);
+    }
+
+    public HardwareCodecAllowlist(Collection<String> entries) {
+        StringBuilder chipset = new StringBuilder();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            chipset.append(Build.SOC_MANUFACTURER).append(' ').append(Build.SOC_MODEL).append(' ');
+        }
+        chipset.append(Build.HARDWARE).append(' ').append(Build.BOARD);
+        this.deviceChipset = chipset.toString().toLowerCase(Locale.ROOT);
+
+        setEntries(entries);
+    }
+
+    /**
+     * Replaces the entries. Malformed ones are ignored.
+     */
+    public void setEntries(Collection<String> entries) {
+        List<Entry> parsed = new ArrayList<>();
+        List<String> raw = new ArrayList<>();
+
+        for (String entry : entries) {
+            int separator = entry != null ? entry.indexOf(':') : -1;
+            if (separator <= 0 || separator == entry.length() - 1) {
+                Log.w(TAG, "Ignoring malformed entry: " + entry);
+                continue;
+            }
+            parsed.add(new Entry(entry.substring(0, separator).trim().toUpperCase(Locale.ROOT),
+                    entry.substring(separator + 1).trim().toLowerCase(Locale.ROOT)));
+            raw.add(entry);
+        }
+
+        this.entries = parsed;
+        this.rawEntries = Collections.unmodifiableList(raw);
+    }
+
+    public List<String> getEntries() {
+        return rawEntries;
+    }
+
+    /**
+     * Whether the given codec can be used in hardware on this device.
+     */
+    public boolean isAllowed(VideoCodecInfo codecInfo, boolean encoder) {
+        String codec = codecInfo.name.toUpperCase(Locale.ROOT);
+
+        for (Entry entry : entries) {
+            if (!entry.codec.equals(codec)) {
+                continue;
+            }
+            if (entry.chipset.equals("*") || deviceChipset.contains(entry.chipset)
+                    || getMediaCodecNames(codec, encoder).contains(entry.chipset)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The names of the hardware MediaCodecs of the given codec, lower case.
+     */
+    private String getMediaCodecNames(String codec, boolean encoder) {
+        String key = codec + (encoder ? "/encoder" : "/decoder");
+        String names = mediaCodecNames.get(key);
+        if (names != null) {
+            return names;
+        }
+
+        String mimeType = getMimeType(codec);
+        StringBuilder builder = new StringBuilder();
+        try {
+            for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (info.isEncoder() != encoder || !HardwareDecoderBudget.isHardware(info)) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(mimeType)) {
+                        builder.append(info.getName().toLowerCase(Locale.ROOT)).append(' ');
+                        break;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to list the " + codec + " codecs", e);
+        }
+
+        names = builder.toString();
+        mediaCodecNames.put(key, names);
+        return names;
+    }
+
+    private static String getMimeType(String codec) {
+        switch (codec) {
+            case "H264":
+                return MediaFormat.MIMETYPE_VIDEO_AVC;
+            case "VP8":
+                return MediaFormat.MIMETYPE_VIDEO_VP8;
+            case "VP9":
+                return MediaFormat.MIMETYPE_VIDEO_VP9;
+            case "AV1":
+                return "video/av01";
+            default:
+                return "video/" + codec.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Limits the number of concurrently live hardware decoders. Most devices only
+ * support a handful of concurrent MediaCodec decoder instances, past which
+ * creating a new one fails or stalls and the stream shows black video.
+ * Decoders created past the budget fall back to software instead. Decoders
+ * without a software fallback are never denied, they take a slot even past
+ * the budget.
+ */
+public class HardwareDecoderBudget {
+    private static final String TAG = HardwareDecoderBudget.class.getSimpleName();
+
+    /**
+     * Budget used when the device doesn't report how many instances its
+     * decoders support.
+     */
+    public static final int DEFAULT_MAX_INSTANCES = 4;
+
+    public interface Listener {
+        /**
+         * Called when a hardware decoder slot frees up after some decoder was
+         * denied one, so streams which fell back to software can be moved back
+         * to hardware, for example by renegotiating them.
+         *
+         * @param freeSlots the number of currently free slots.
+         */
+        void onHardwareDecoderAvailable(int freeSlots);
+    }
+
+    private final int maxInstances;
+    private int liveInstances;
+    private int deniedInstances;
+
+    @Nullable
+    private volatile Listener listener;
+
+    public HardwareDecoderBudget(int maxInstances) {
+        this.maxInstances = Math.max(1, maxInstances);
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    public synchronized int getLiveInstances() {
+        return liveInstances;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (liveInstances >= maxInstances) {
+            if (deniedInstances++ == 0) {
+                Log.d(TAG, "Hardware decoder budget of " + maxInstances + " exhausted");
+            }
+            return false;
+        }
+
+        liveInstances++;
+        return true;
+    }
+
+    /**
+     * Takes a slot even if there are none left, for a decoder which has no
+     * fallback.
+     */
+    synchronized void acquire() {
+        if (liveInstances++ >= maxInstances) {
+            Log.w(TAG,
+                    "Hardware decoder budget of " + maxInstances + " exceeded by a decoder without a fallback, "
+                            + liveInstances + " in use");
+        }
+    }
+
+    void release() {
+        int freeSlots;
+        synchronized (this) {
+            liveInstances = Math.max(0, liveInstances - 1);
+            if (deniedInstances == 0) {
+                return;
+            }
+            deniedInstances = 0;
+            freeSlots = maxInstances - liveInstances;
+        }
+
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onHardwareDecoderAvailable(freeSlots);
+        }
+    }
+
+    /**
+     * Probes the maximum number of concurrent instances supported by the
+     * hardware decoders of the given MIME type.
+     */
+    public static int probeMaxInstances(String mimeType) {
+        int maxInstances = 0;
+
+        try {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo info : codecList.getCodecInfos()) {
+                if (info.isEncoder() || !isHardware(info) || !supportsType(info, mimeType)) {
+                    continue;
+                }
+
+                int instances = info.getCapabilitiesForType(mimeType).getMaxSupportedInstances();
+                maxInstances = Math.max(maxInstances, instances);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to probe the hardware decoders for " + mimeType, e);
+        }
+
+        return maxInstances > 0 ? maxInstances : DEFAULT_MAX_INSTANCES;
+    }
+
+    /**
+     * Whether the codec is implemented in hardware, as opposed to one of the
+     * platform's software codecs.
+     */
+    public static boolean isHardware(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return info.isHardwareAccelerated();
+        }
+
+        String name = info.getName();
+        return !name.startsWith("OMX.google.") && !name.startsWith("c2.android.");
+    }
+
+    private static boolean supportsType(MediaCodecInfo info, String mimeType) {
+        for (String type : info.getSupportedTypes()) {
+            if (type.equalsIgnoreCase(mimeType)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import org.webrtc.VideoCodecInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The codecs offered by {@link HybridVideoEncoderFactory} and
+ * {@link HybridVideoDecoderFactory}.
+ */
+final class HybridCodecs {
+    interface HardwareFilter {
+        boolean useHardware(VideoCodecInfo codecInfo);
+    }
+
+    private HybridCodecs() {
+    }
+
+    /**
+     * Merges the hardware codecs which pass the filter with the software
+     * ones: H.264 constrained high and baseline in hardware first, then the
+     * software codecs, H.264 only if it's not in hardware, and last the codecs
+     * only available in hardware.
+     */
+    static VideoCodecInfo[] getSupportedCodecs(
+            VideoCodecInfo[] hwCodecs, VideoCodecInfo[] swCodecs, HardwareFilter filter) {
+        List<VideoCodecInfo> codecs = new ArrayList<>();
+
+        VideoCodecInfo h264Baseline = null;
+        VideoCodecInfo h264High = null;
+        List<VideoCodecInfo> hwOnlyCodecs = new ArrayList<>();
+
+        for (VideoCodecInfo hwCodec : hwCodecs) {
+            if (!filter.useHardware(hwCodec)) {
+                continue;
+            }
+            if (hwCodec.name.equalsIgnoreCase("H264")) {
+                String profileLevel = hwCodec.params.get(VideoCodecInfo.H264_FMTP_PROFILE_LEVEL_ID);
+                if (profileLevel == null) {
+                    continue;
+                }
+                if (profileLevel.equalsIgnoreCase(VideoCodecInfo.H264_CONSTRAINED_HIGH_3_1)) {
+                    h264High = hwCodec;
+                } else if (profileLevel.equalsIgnoreCase(VideoCodecInfo.H264_CONSTRAINED_BASELINE_3_1)) {
+                    h264Baseline = hwCodec;
+                }
+            } else if (!containsCodec(swCodecs, hwCodec.name)) {
+                hwOnlyCodecs.add(hwCodec);
+            }
+        }
+
+        if (h264High != null) {
+            codecs.add(h264High);
+        }
+        if (h264Baseline != null) {
+            codecs.add(h264Baseline);
+        }
+        for (VideoCodecInfo swCodec : swCodecs) {
+            // H.264 is only offered in software if it's not in hardware.
+            if (swCodec.name.equalsIgnoreCase("H264") && (h264High != null || h264Baseline != null)) {
+                continue;
+            }
+            codecs.add(swCodec);
+        }
+        codecs.addAll(hwOnlyCodecs);
+
+        return codecs.toArray(new VideoCodecInfo[codecs.size()]);
+    }
+
+    private static boolean containsCodec(VideoCodecInfo[] codecs, String name) {
+        for (VideoCodecInfo codec : codecs) {
+            if (codec.name.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
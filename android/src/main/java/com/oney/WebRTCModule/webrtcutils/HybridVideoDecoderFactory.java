@@ -0,0 +1,81 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.EglBase;
+import org.webrtc.HardwareVideoDecoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+import org.webrtc.VideoDecoderFallback;
+
+/**
+ * Video decoder factory which uses the hardware decoder of every codec whose
+ * codec and chipset pair is on a {@link HardwareCodecAllowlist}, and the
+ * software one for the rest. Hardware decoders fall back to software when
+ * they fail to initialize, if the codec is available in software.
+ *
+ * When a {@link HardwareDecoderBudget} is given, it is shared by the hardware
+ * decoders of all codecs.
+ *
+ * The codecs offered are computed with the allowlist entries in use when the
+ * {@link org.webrtc.PeerConnectionFactory} asks for them, which it does once,
+ * when it's created. Later changes to the entries only decide whether the
+ * decoders created afterwards are hardware or software ones.
+ */
+public class HybridVideoDecoderFactory implements VideoDecoderFactory {
+    private static final String TAG = HybridVideoDecoderFactory.class.getSimpleName();
+
+    private final VideoDecoderFactory hardwareVideoDecoderFactory;
+    private final VideoDecoderFactory softwareVideoDecoderFactory;
+    private final HardwareCodecAllowlist allowlist;
+    @Nullable
+    private final HardwareDecoderBudget hardwareDecoderBudget;
+
+    public HybridVideoDecoderFactory(@Nullable EglBase.Context eglContext,
+            HardwareCodecAllowlist allowlist,
+            @Nullable HardwareDecoderBudget hardwareDecoderBudget) {
+        this.hardwareVideoDecoderFactory = new HardwareVideoDecoderFactory(eglContext);
+        this.softwareVideoDecoderFactory = new SoftwareVideoDecoderFactoryProxy();
+        this.allowlist = allowlist;
+        this.hardwareDecoderBudget = hardwareDecoderBudget;
+    }
+
+    @Nullable
+    @Override
+    public VideoDecoder createDecoder(VideoCodecInfo codecInfo) {
+        VideoDecoder softwareDecoder = this.softwareVideoDecoderFactory.createDecoder(codecInfo);
+        if (!this.allowlist.isAllowed(codecInfo, false)) {
+            Log.d(TAG, "Using a software " + codecInfo.name + " decoder");
+            return softwareDecoder;
+        }
+
+        VideoDecoder hardwareDecoder = this.hardwareVideoDecoderFactory.createDecoder(codecInfo);
+        if (hardwareDecoder == null) {
+            Log.d(TAG, "No hardware " + codecInfo.name + " decoder, using software");
+            return softwareDecoder;
+        }
+
+        Log.d(TAG, "Using a hardware " + codecInfo.name + " decoder");
+        if (this.hardwareDecoderBudget != null) {
+            // Without a software decoder there is nothing to fall back to, so
+            // it is counted but never denied.
+            hardwareDecoder = new BudgetedVideoDecoder(
+                    hardwareDecoder, this.hardwareDecoderBudget, softwareDecoder != null);
+        }
+        if (softwareDecoder == null) {
+            return hardwareDecoder;
+        }
+
+        return new VideoDecoderFallback(softwareDecoder, hardwareDecoder);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return HybridCodecs.getSupportedCodecs(this.hardwareVideoDecoderFactory.getSupportedCodecs(),
+                this.softwareVideoDecoderFactory.getSupportedCodecs(),
+                codecInfo -> this.allowlist.isAllowed(codecInfo, false));
+    }
+}
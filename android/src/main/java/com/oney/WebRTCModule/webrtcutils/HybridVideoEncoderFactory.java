@@ -0,0 +1,88 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.EglBase;
+import org.webrtc.HardwareVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoEncoderFallback;
+
+/**
+ * Video encoder factory which uses the hardware encoder of every codec whose
+ * codec and chipset pair is on a {@link HardwareCodecAllowlist}, and the
+ * software one for the rest. Hardware encoders fall back to software when
+ * they fail to initialize, if the codec is available in software.
+ *
+ * When an {@link EncoderHealthMonitor} is given, the hardware encoders are
+ * monitored like in {@link H264AndSoftwareVideoEncoderFactory}.
+ *
+ * The codecs offered are computed with the allowlist entries in use when the
+ * {@link org.webrtc.PeerConnectionFactory} asks for them, which it does once,
+ * when it's created. Later changes to the entries only decide whether the
+ * encoders created afterwards are hardware or software ones.
+ */
+public class HybridVideoEncoderFactory implements VideoEncoderFactory {
+    private static final String TAG = HybridVideoEncoderFactory.class.getSimpleName();
+
+    private final VideoEncoderFactory hardwareVideoEncoderFactory;
+    private final VideoEncoderFactory softwareVideoEncoderFactory;
+    private final HardwareCodecAllowlist allowlist;
+    @Nullable
+    private final EncoderHealthMonitor encoderHealthMonitor;
+
+    public HybridVideoEncoderFactory(@Nullable EglBase.Context eglContext,
+            HardwareCodecAllowlist allowlist,
+            @Nullable EncoderHealthMonitor encoderHealthMonitor) {
+        this.hardwareVideoEncoderFactory = new HardwareVideoEncoderFactory(eglContext, true, true);
+        this.softwareVideoEncoderFactory = new SoftwareVideoEncoderFactoryProxy();
+        this.allowlist = allowlist;
+        this.encoderHealthMonitor = encoderHealthMonitor;
+    }
+
+    @Nullable
+    @Override
+    public VideoEncoder createEncoder(VideoCodecInfo codecInfo) {
+        VideoEncoder softwareEncoder = this.softwareVideoEncoderFactory.createEncoder(codecInfo);
+        if (!useHardware(codecInfo, softwareEncoder != null)) {
+            Log.d(TAG, "Using a software " + codecInfo.name + " encoder");
+            return softwareEncoder;
+        }
+
+        VideoEncoder hardwareEncoder = this.hardwareVideoEncoderFactory.createEncoder(codecInfo);
+        if (hardwareEncoder == null) {
+            Log.d(TAG, "No hardware " + codecInfo.name + " encoder, using software");
+            return softwareEncoder;
+        }
+
+        Log.d(TAG, "Using a hardware " + codecInfo.name + " encoder");
+        if (this.encoderHealthMonitor != null) {
+            hardwareEncoder = new MonitoredVideoEncoder(
+                    hardwareEncoder, codecInfo, this.encoderHealthMonitor, softwareEncoder != null);
+        }
+        if (softwareEncoder == null) {
+            return hardwareEncoder;
+        }
+
+        return new VideoEncoderFallback(softwareEncoder, hardwareEncoder);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return HybridCodecs.getSupportedCodecs(this.hardwareVideoEncoderFactory.getSupportedCodecs(),
+                this.softwareVideoEncoderFactory.getSupportedCodecs(),
+                codecInfo -> useHardware(codecInfo, false));
+    }
+
+    private boolean useHardware(VideoCodecInfo codecInfo, boolean hasSoftware) {
+        if (!this.allowlist.isAllowed(codecInfo, true)) {
+            return false;
+        }
+
+        // An unhealthy encoder is still used when there is no alternative.
+        return !hasSoftware || this.encoderHealthMonitor == null || !this.encoderHealthMonitor.isUnhealthy(codecInfo);
+    }
+}
@@ -0,0 +1,249 @@
+package com.oney.WebRTCModule.webrtcutils;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoFrame;
+
+import java.util.Locale;
+
+/**
+ * Hardware encoder wrapper which watches the encode latency, the frames which
+ * come out of the encoder compared to the ones which went in and the errors
+ * returned by the encoder. When too many consecutive windows are unhealthy it
+ * reports the encoder to the
+ * {@link EncoderHealthMonitor} and, if a software encoder is available, fails
+ * with {@link VideoCodecStatus#FALLBACK_SOFTWARE} so the
+ * {@link org.webrtc.VideoEncoderFallback} it's wrapped in switches to it
+ * without a renegotiation.
+ */
+class MonitoredVideoEncoder implements VideoEncoder {
+    /**
+     * Number of frames which can be in the encoder at once. Frames which are
+     * dropped by the encoder are evicted once newer ones come out.
+     */
+    private static final int MAX_PENDING_FRAMES = 64;
+
+    /**
+     * Number of frames a window needs to go in for the output frames to be
+     * checked. A static screen share or a throttled camera send few frames,
+     * and a handful of missing ones says nothing about the encoder.
+     */
+    private static final int MIN_INPUT_FRAMES = 25;
+
+    /**
+     * Fraction of the target bitrate the encoder needs to stay below for
+     * missing output frames to count. An encoder which drops frames to keep
+     * to a low bitrate spends most of it, one which is stuck doesn't.
+     */
+    private static final double MAX_BITRATE_USE_RATIO = 0.5;
+
+    private final VideoEncoder encoder;
+    private final VideoCodecInfo codecInfo;
+    private final EncoderHealthMonitor monitor;
+    private final boolean canFallback;
+
+    private final int windowMs;
+    private final double maxMeanEncodeLatencyMs;
+    private final double minOutputFramerateRatio;
+    private final int maxErrorsPerWindow;
+    private final int unhealthyWindows;
+
+    // FIFO of the frames in the encoder.
+    private final long[] pendingTimestampNs = new long[MAX_PENDING_FRAMES];
+    private final long[] pendingSubmitNs = new long[MAX_PENDING_FRAMES];
+    private int pendingHead;
+    private int pendingCount;
+
+    private long windowStartNs;
+    private int inputFrames;
+    private int outputFrames;
+    private long outputBytes;
+    private long latencySumNs;
+    private int errors;
+    private int consecutiveUnhealthyWindows;
+    private boolean unhealthy;
+
+    // Last rates set by the rate controller, 0 until it sets them.
+    private double targetFramerateFps;
+    private long targetBitrateBps;
+
+    MonitoredVideoEncoder(
+            VideoEncoder encoder, VideoCodecInfo codecInfo, EncoderHealthMonitor monitor, boolean canFallback) {
+        this.encoder = encoder;
+        this.codecInfo = codecInfo;
+        this.monitor = monitor;
+        this.canFallback = canFallback;
+
+        this.windowMs = Math.max(1000, monitor.windowMs);
+        this.maxMeanEncodeLatencyMs = monitor.maxMeanEncodeLatencyMs;
+        this.minOutputFramerateRatio = monitor.minOutputFramerateRatio;
+        this.maxErrorsPerWindow = monitor.maxErrorsPerWindow;
+        this.unhealthyWindows = Math.max(1, monitor.unhealthyWindows);
+    }
+
+    @Override
+    public VideoCodecStatus initEncode(Settings settings, Callback encodeCallback) {
+        synchronized (this) {
+            pendingCount = 0;
+            resetWindow(System.nanoTime());
+        }
+
+        return encoder.initEncode(settings, (frame, info) -> {
+            onEncodedFrame(frame);
+            encodeCallback.onEncodedFrame(frame, info);
+        });
+    }
+
+    @Override
+    public VideoCodecStatus release() {
+        return encoder.release();
+    }
+
+    @Override
+    public VideoCodecStatus encode(VideoFrame frame, EncodeInfo info) {
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            if (unhealthy && canFallback) {
+                return VideoCodecStatus.FALLBACK_SOFTWARE;
+            }
+            if (now - windowStartNs >= windowMs * 1000000L) {
+                evaluateWindow(now);
+            }
+
+            inputFrames++;
+            if (pendingCount == MAX_PENDING_FRAMES) {
+                pendingHead = (pendingHead + 1) % MAX_PENDING_FRAMES;
+                pendingCount--;
+            }
+            int tail = (pendingHead + pendingCount) % MAX_PENDING_FRAMES;
+            pendingTimestampNs[tail] = frame.getTimestampNs();
+            pendingSubmitNs[tail] = now;
+            pendingCount++;
+        }
+
+        VideoCodecStatus status = encoder.encode(frame, info);
+
+        if (status != VideoCodecStatus.OK && status != VideoCodecStatus.NO_OUTPUT) {
+            synchronized (this) {
+                errors++;
+            }
+        }
+
+        return status;
+    }
+
+    private synchronized void onEncodedFrame(EncodedImage frame) {
+        long now = System.nanoTime();
+
+        // Frames come out in order, anything before this one was dropped.
+        while (pendingCount > 0) {
+            long timestampNs = pendingTimestampNs[pendingHead];
+            long submitNs = pendingSubmitNs[pendingHead];
+            pendingHead = (pendingHead + 1) % MAX_PENDING_FRAMES;
+            pendingCount--;
+
+            if (timestampNs == frame.captureTimeNs) {
+                outputFrames++;
+                outputBytes += frame.buffer.remaining();
+                latencySumNs += now - submitNs;
+                break;
+            }
+        }
+    }
+
+    private void evaluateWindow(long now) {
+        double seconds = (now - windowStartNs) / 1e9;
+        double meanLatencyMs = outputFrames == 0 ? 0 : latencySumNs / 1e6 / outputFrames;
+
+        // The rate controller may ask for fewer frames than go in, those it
+        // skips are not missing.
+        double expectedFrames = inputFrames;
+        if (targetFramerateFps > 0) {
+            expectedFrames = Math.min(expectedFrames, targetFramerateFps * seconds);
+        }
+        double outputBitrateBps = outputBytes * 8 / seconds;
+        boolean droppingForRate = targetBitrateBps > 0 && outputBitrateBps >= targetBitrateBps * MAX_BITRATE_USE_RATIO;
+
+        String reason = null;
+        if (errors > maxErrorsPerWindow) {
+            reason = errors + " encode errors";
+        } else if (inputFrames >= MIN_INPUT_FRAMES && !droppingForRate
+                && outputFrames < expectedFrames * minOutputFramerateRatio) {
+            reason = String.format(Locale.ROOT,
+                    "%d frames out of %d in, %.0f expected, at %.0f kbps",
+                    outputFrames,
+                    inputFrames,
+                    expectedFrames,
+                    outputBitrateBps / 1000);
+        } else if (meanLatencyMs > maxMeanEncodeLatencyMs) {
+            reason = String.format(Locale.ROOT, "mean encode latency %.0f ms", meanLatencyMs);
+        }
+
+        resetWindow(now);
+
+        if (reason == null) {
+            consecutiveUnhealthyWindows = 0;
+            return;
+        }
+
+        consecutiveUnhealthyWindows++;
+        if (consecutiveUnhealthyWindows >= unhealthyWindows && !unhealthy) {
+            unhealthy = true;
+            monitor.reportUnhealthy(codecInfo, reason, canFallback);
+        }
+    }
+
+    private void resetWindow(long now) {
+        windowStartNs = now;
+        inputFrames = 0;
+        outputFrames = 0;
+        outputBytes = 0;
+        latencySumNs = 0;
+        errors = 0;
+    }
+
+    @Override
+    public VideoCodecStatus setRateAllocation(BitrateAllocation allocation, int framerate) {
+        setTargetRates(allocation, framerate);
+        return encoder.setRateAllocation(allocation, framerate);
+    }
+
+    @Override
+    public VideoCodecStatus setRates(RateControlParameters rcParameters) {
+        setTargetRates(rcParameters.bitrate, rcParameters.framerateFps);
+        return encoder.setRates(rcParameters);
+    }
+
+    private synchronized void setTargetRates(BitrateAllocation allocation, double framerateFps) {
+        targetBitrateBps = allocation.getSum();
+        targetFramerateFps = framerateFps;
+    }
+
+    @Override
+    public ScalingSettings getScalingSettings() {
+        return encoder.getScalingSettings();
+    }
+
+    @Override
+    public ResolutionBitrateLimits[] getResolutionBitrateLimits() {
+        return encoder.getResolutionBitrateLimits();
+    }
+
+    @Override
+    public EncoderInfo getEncoderInfo() {
+        return encoder.getEncoderInfo();
+    }
+
+    @Override
+    public boolean isHardwareEncoder() {
+        return encoder.isHardwareEncoder();
+    }
+
+    @Override
+    public String getImplementationName() {
+        return encoder.getImplementationName();
+    }
+}
@@ -0,0 +1,88 @@
+import { NativeModules } from 'react-native';
+
+import { addListener } from './EventEmitter';
+import { assertAndroid } from './RTCUtil';
+import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
+
+const { WebRTCModule } = NativeModules;
+
+/**
+ * The stats are sampled every intervalMs, the levels are smoothed with the
+ * given factor (0..1, higher reacts faster) and tracks quieter than minLevel
+ * (0..1) are left out of the ranking.
+ */
+export type ActiveSpeakerDetectorConfig = {
+    intervalMs?: number;
+    topN?: number;
+    smoothing?: number;
+    minLevel?: number;
+};
+
+export type ActiveSpeaker = {
+    pcId: number;
+    trackId: string;
+    audioLevel: number;
+};
+
+interface IActiveSpeakersEventInitDict extends Event.EventInit {
+    speakers: ActiveSpeaker[];
+    dominantSpeaker?: ActiveSpeaker;
+}
+
+/**
+ * @eventClass
+ * This event is fired whenever the ranking of the loudest remote audio
+ * tracks or the dominant speaker change.
+ */
+export class ActiveSpeakersEvent<TEventType extends 'activespeakerschange'> extends Event<TEventType> {
+    /** @eventProperty */
+    speakers: ActiveSpeaker[];
+    /** @eventProperty */
+    dominantSpeaker: ActiveSpeaker | null;
+    constructor(type: TEventType, eventInitDict: IActiveSpeakersEventInitDict) {
+        super(type, eventInitDict);
+        this.speakers = eventInitDict.speakers;
+        this.dominantSpeaker = eventInitDict.dominantSpeaker ?? null;
+    }
+}
+
+type ActiveSpeakerDetectorEventMap = {
+    activespeakerschange: ActiveSpeakersEvent<'activespeakerschange'>
+}
+
+/**
+ * Custom API for ranking the remote audio tracks of all the PeerConnections
+ * by loudness. The stats are sampled natively, so nothing goes through the
+ * bridge unless the ranking changes. Android only.
+ */
+class ActiveSpeakerDetector extends EventTarget<ActiveSpeakerDetectorEventMap> {
+    constructor() {
+        super();
+
+        addListener(this, 'activeSpeakersChanged', (ev: any) => {
+            this.dispatchEvent(new ActiveSpeakersEvent('activespeakerschange', ev));
+        });
+    }
+
+    get onactivespeakerschange() {
+        return getEventAttributeValue(this, 'activespeakerschange');
+    }
+
+    set onactivespeakerschange(value) {
+        setEventAttributeValue(this, 'activespeakerschange', value);
+    }
+
+    start(config?: ActiveSpeakerDetectorConfig): void {
+        assertAndroid('ActiveSpeakerDetector');
+
+        WebRTCModule.activeSpeakerDetectionStart(config ?? null);
+    }
+
+    stop(): void {
+        assertAndroid('ActiveSpeakerDetector');
+
+        WebRTCModule.activeSpeakerDetectionStop();
+    }
+}
+
+export default new ActiveSpeakerDetector();
@@ -18,18 +18,81 @@ const NATIVE_EVENTS = [
     'peerConnectionDidOpenDataChannel',
     'peerConnectionOnRemoveTrack',
     'peerConnectionOnTrack',
+    'peerConnectionRemoteStreamsReclaimed',
     'dataChannelStateChanged',
     'dataChannelReceiveMessage',
     'dataChannelDidChangeBufferedAmount',
+    'dataChannelMessageProgress',
     'mediaStreamTrackMuteChanged',
     'mediaStreamTrackEnded',
+    'voiceActivityChanged',
+    'activeSpeakersChanged',
+    'remoteVideoSubscriptionChanged',
+    'hardwareDecoderAvailable',
+    'videoEncoderUnhealthy',
+    'resourceLeakDetected',
 ];
 
 const eventEmitter = new EventEmitter();
 
+// Schema of the high rate events the native side can send as flat positional
+// arrays instead of objects, see CompactEvents.java. Nested fields are named
+// with a dot, and handle fields carry an integer standing for a string id.
+type CompactEventSchema = {
+    events: Record<string, string[]>;
+    handleFields: string[];
+};
+
+let compactEventSchema: CompactEventSchema | null = null;
+const compactEventHandles: Map<number, string> = new Map();
+
+function decodeCompactEvent(eventName: string, values: unknown[]): Record<string, unknown> {
+    const schema = compactEventSchema as CompactEventSchema;
+    const event = {};
+
+    schema.events[eventName].forEach((field, i) => {
+        const path = field.split('.');
+        const key = path.pop() as string;
+        let target = event;
+
+        // Nested objects are always present, even if all their fields are null.
+        for (const part of path) {
+            target[part] = target[part] ?? {};
+            target = target[part];
+        }
+
+        const value = values[i];
+
+        if (value === null || value === undefined) {
+            return;
+        }
+
+        target[key] = schema.handleFields.includes(key) ? compactEventHandles.get(value as number) : value;
+    });
+
+    return event;
+}
+
 export function setupNativeEvents() {
+    // Only available on Android, and null unless enabled in the native options.
+    compactEventSchema = WebRTCModule.compactEventsGetSchema?.() ?? null;
+
+    if (compactEventSchema) {
+        nativeEmitter.addListener('compactEventHandle', ([ handle, id ]: [number, string?]) => {
+            if (id === undefined) {
+                compactEventHandles.delete(handle);
+            } else {
+                compactEventHandles.set(handle, id);
+            }
+        });
+    }
+
     for (const eventName of NATIVE_EVENTS) {
         nativeEmitter.addListener(eventName, (...args) => {
+            if (compactEventSchema && Array.isArray(args[0])) {
+                args[0] = decodeCompactEvent(eventName, args[0]);
+            }
+
             eventEmitter.emit(eventName, ...args);
         });
     }
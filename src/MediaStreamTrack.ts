@@ -3,7 +3,7 @@ import { NativeModules } from 'react-native';
 import { MediaTrackConstraints } from './Constraints';
 import { addListener, removeListener } from './EventEmitter';
 import Logger from './Logger';
-import { deepClone, normalizeConstraints } from './RTCUtil';
+import { assertAndroid, deepClone, normalizeConstraints } from './RTCUtil';
 import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
 
 const log = new Logger('pc');
@@ -32,6 +32,36 @@ export type MediaTrackSettings = {
     groupId?: string;
 }
 
+/**
+ * A region of the display, as fractions of its size, optionally scaled down
+ * to an output size.
+ */
+export type ScreenCaptureRegion = {
+    x: number;
+    y: number;
+    width: number;
+    height: number;
+    outputWidth?: number;
+    outputHeight?: number;
+}
+
+export type VideoFrameMetrics = {
+    framesReceived: number;
+    /** The number of RTCViews rendering the track. */
+    renderers: number;
+    /** The frames drawn by the RTCView which drew the most. */
+    framesRendered: number;
+    frameWidth: number;
+    frameHeight: number;
+    resolutionChanges: number;
+    framesPerSecond: number;
+    frameIntervalMeanMs: number;
+    frameIntervalJitterMs: number;
+    /** Time from the delivery of a frame to an RTCView until it's drawn. */
+    renderDelayMeanMs: number;
+    renderDelayMaxMs: number;
+}
+
 type MediaStreamTrackEventMap = {
     ended: Event<'ended'>;
     mute: Event<'mute'>;
@@ -195,6 +225,36 @@ export default class MediaStreamTrack extends EventTarget<MediaStreamTrackEventM
         WebRTCModule.mediaStreamTrackSetVolume(this.remote ? this._peerConnectionId : -1, this.id, volume);
     }
 
+    /**
+     * Custom API for getting the frame rate, jitter and render delay of a
+     * video track, as seen by the native side. The windowed values cover the
+     * most recent frames. Android only.
+     */
+    async _getFrameMetrics(): Promise<VideoFrameMetrics> {
+        assertAndroid('_getFrameMetrics');
+
+        if (this.kind !== 'video') {
+            throw new Error('Only implemented for video tracks');
+        }
+
+        return WebRTCModule.mediaStreamTrackGetFrameMetrics(this.remote ? this._peerConnectionId : -1, this.id);
+    }
+
+    /**
+     * Custom API for restricting a screen capture track to a region of the
+     * display, or capturing the whole display again if null. The track's
+     * settings reflect the new frame size. Android only.
+     */
+    async _setScreenCaptureRegion(region: ScreenCaptureRegion | null): Promise<void> {
+        assertAndroid('_setScreenCaptureRegion');
+
+        if (this.kind !== 'video' || this.remote) {
+            throw new Error('Only implemented for local video tracks');
+        }
+
+        this._settings = await WebRTCModule.mediaStreamTrackSetScreenCaptureRegion(this.id, region);
+    }
+
     /**
      * Applies a new set of constraints to the track.
      *
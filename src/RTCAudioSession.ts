@@ -1,7 +1,36 @@
 import { NativeModules, Platform } from 'react-native';
 
+import { assertAndroid } from './RTCUtil';
+
 const { WebRTCModule } = NativeModules;
 
+export type AudioDeviceStats = {
+    config: {
+        useLowLatency: boolean;
+        useHardwareAcousticEchoCanceler: boolean;
+        useHardwareNoiseSuppressor: boolean;
+        inputSampleRate: number;
+        outputSampleRate: number;
+        useStereoInput: boolean;
+        useStereoOutput: boolean;
+        audioSource: number;
+        enableLatencyMonitor: boolean;
+    };
+    recording: boolean;
+    playing: boolean;
+    recordStarts: number;
+    playoutStarts: number;
+    recordGlitches: number;
+    /**
+     * Best-effort, read from the private fields of the WebRTC audio device
+     * module. -1 when the WebRTC version doesn't have them.
+     */
+    playoutUnderruns: number;
+    errors: number;
+    lastError?: string;
+    roundTripLatencyMs: number;
+};
+
 export default class RTCAudioSession {
     /**
      * To be called when CallKit activates the audio session.
@@ -22,4 +51,32 @@ export default class RTCAudioSession {
             WebRTCModule.audioSessionDidDeactivate();
         }
     }
+
+    /**
+     * Returns the settings of the audio device module and its counters.
+     * Counters which are not available are -1. The playout underruns are
+     * best-effort, they are read by reflection and may be unavailable
+     * depending on the WebRTC version. Android only.
+     */
+    static async getAudioDeviceStats(): Promise<AudioDeviceStats> {
+        assertAndroid('getAudioDeviceStats');
+
+        return WebRTCModule.audioDeviceGetStats();
+    }
+
+    /**
+     * Measures the round-trip latency of the audio device module, in
+     * milliseconds, while audio is being recorded. Android only.
+     *
+     * This is an approximation: the probe tone is played by a separate
+     * AudioTrack with the same settings as the playout, not through the
+     * playout of the audio device module, so its buffering may differ. The
+     * tone can also be removed by the echo canceller, in which case the
+     * measurement fails.
+     */
+    static async measureAudioLatency(): Promise<number> {
+        assertAndroid('measureAudioLatency');
+
+        return WebRTCModule.audioDeviceMeasureLatency();
+    }
 }
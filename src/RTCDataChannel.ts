@@ -4,18 +4,63 @@ import { NativeModules } from 'react-native';
 import { addListener, removeListener } from './EventEmitter';
 import MessageEvent from './MessageEvent';
 import RTCDataChannelEvent from './RTCDataChannelEvent';
-import { EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
+import { assertAndroid } from './RTCUtil';
+import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
 
 const { WebRTCModule } = NativeModules;
 
 type RTCDataChannelState = 'connecting' | 'open' | 'closing' | 'closed';
 
+export type RTCDataChannelFramingConfig = {
+    chunkSize?: number;
+};
+
+export type RTCDataChannelFileTransfer = {
+    path: string;
+    bytes: number;
+};
+
+interface IMessageProgressEventInitDict extends Event.EventInit {
+    direction: 'send' | 'receive';
+    messageId: number;
+    path?: string;
+    bytes: number;
+    total: number;
+}
+
+/**
+ * @eventClass
+ * This event is fired, at a limited rate, while a large message or a file is
+ * sent or received on a framed RTCDataChannel.
+ */
+export class MessageProgressEvent<TEventType extends 'messageprogress'> extends Event<TEventType> {
+    /** @eventProperty */
+    direction: 'send' | 'receive';
+    /** @eventProperty */
+    messageId: number;
+    /** @eventProperty */
+    path?: string;
+    /** @eventProperty */
+    bytes: number;
+    /** @eventProperty */
+    total: number;
+    constructor(type: TEventType, eventInitDict: IMessageProgressEventInitDict) {
+        super(type, eventInitDict);
+        this.direction = eventInitDict.direction;
+        this.messageId = eventInitDict.messageId;
+        this.path = eventInitDict.path;
+        this.bytes = eventInitDict.bytes;
+        this.total = eventInitDict.total;
+    }
+}
+
 type DataChannelEventMap = {
     bufferedamountlow: RTCDataChannelEvent<'bufferedamountlow'>;
     close: RTCDataChannelEvent<'close'>;
     closing: RTCDataChannelEvent<'closing'>;
     error: RTCDataChannelEvent<'error'>;
     message: MessageEvent<'message'>;
+    messageprogress: MessageProgressEvent<'messageprogress'>;
     open: RTCDataChannelEvent<'open'>;
 };
 
@@ -94,6 +139,14 @@ export default class RTCDataChannel extends EventTarget<DataChannelEventMap> {
         setEventAttributeValue(this, 'message', value);
     }
 
+    get onmessageprogress() {
+        return getEventAttributeValue(this, 'messageprogress');
+    }
+
+    set onmessageprogress(value) {
+        setEventAttributeValue(this, 'messageprogress', value);
+    }
+
     get onopen() {
         return getEventAttributeValue(this, 'open');
     }
@@ -162,6 +215,48 @@ export default class RTCDataChannel extends EventTarget<DataChannelEventMap> {
         WebRTCModule.dataChannelSend(this._peerConnectionId, this._reactTag, base64data, 'binary');
     }
 
+    /**
+     * Custom API for enabling or disabling the framing of messages, which
+     * lifts the SCTP message size limit and reports the progress of large
+     * messages. The remote end must do the same. Framed messages still pending
+     * fail when it's disabled. Only ordered and reliable channels can be
+     * framed. Android only.
+     */
+    _setFramed(framed: boolean, config: RTCDataChannelFramingConfig = {}): void {
+        assertAndroid('_setFramed');
+
+        const reliable = (this._maxRetransmits ?? -1) < 0 && (this._maxPacketLifeTime ?? -1) < 0;
+
+        if (framed && (!this._ordered || !reliable)) {
+            throw new Error('Framing needs an ordered and reliable DataChannel');
+        }
+
+        WebRTCModule.dataChannelSetFramed(this._peerConnectionId, this._reactTag, framed, config);
+    }
+
+    /**
+     * Custom API for streaming a file over a framed channel, without its
+     * contents crossing the bridge. The path can also be a `file://` URI.
+     * Resolves once the whole file has been handed over to the channel.
+     * Android only.
+     */
+    async _sendFile(path: string): Promise<RTCDataChannelFileTransfer> {
+        assertAndroid('_sendFile');
+
+        return WebRTCModule.dataChannelSendFile(this._peerConnectionId, this._reactTag, path);
+    }
+
+    /**
+     * Custom API for writing the next file the remote end streams over a
+     * framed channel to the given path or `file://` URI. Resolves once it has
+     * been completely written. Android only.
+     */
+    async _receiveToFile(path: string): Promise<RTCDataChannelFileTransfer> {
+        assertAndroid('_receiveToFile');
+
+        return WebRTCModule.dataChannelReceiveToFile(this._peerConnectionId, this._reactTag, path);
+    }
+
     close(): void {
         if (this._readyState === 'closing' || this._readyState === 'closed') {
             return;
@@ -210,6 +305,14 @@ export default class RTCDataChannel extends EventTarget<DataChannelEventMap> {
             this.dispatchEvent(new MessageEvent('message', { data }));
         });
 
+        addListener(this, 'dataChannelMessageProgress', (ev: any) => {
+            if (ev.reactTag !== this._reactTag) {
+                return;
+            }
+
+            this.dispatchEvent(new MessageProgressEvent('messageprogress', ev));
+        });
+
         addListener(this, 'dataChannelDidChangeBufferedAmount', (ev: any) => {
             if (ev.reactTag !== this._reactTag) {
                 return;
@@ -1,4 +1,4 @@
-import { NativeModules } from 'react-native';
+import { NativeModules, Platform } from 'react-native';
 
 import { addListener, removeListener } from './EventEmitter';
 import Logger from './Logger';
@@ -63,6 +63,22 @@ type RTCConfiguration = {
     rtcpMuxPolicy?: 'negotiate' | 'require'
 };
 
+export type RTCStatsSelector = {
+    types?: string[],
+    ids?: string[],
+    fields?: string[]
+};
+
+export type RTCCodecImplementation = {
+    direction: 'send' | 'receive',
+    ssrc?: number,
+    mid?: string,
+    rid?: string,
+    mimeType?: string,
+    implementation?: string,
+    powerEfficient?: boolean
+};
+
 type RTCPeerConnectionEventMap = {
     connectionstatechange: Event<'connectionstatechange'>
     icecandidate: RTCIceCandidateEvent<'icecandidate'>
@@ -78,6 +94,47 @@ type RTCPeerConnectionEventMap = {
 
 let nextPeerConnectionId = 0;
 
+/**
+ * Sanitizes the ICE servers and certificates of the given configuration in place, before handing it to native.
+ */
+function sanitizeConfiguration(configuration: RTCConfiguration): RTCConfiguration {
+    // Sanitize ICE servers.
+    const servers = configuration?.iceServers ?? [];
+
+    for (const server of servers) {
+        let urls = server.url || server.urls;
+
+        delete server.url;
+        delete server.urls;
+
+        if (!urls) {
+            continue;
+        }
+
+        if (!Array.isArray(urls)) {
+            urls = [ urls ];
+        }
+
+        // Native WebRTC does case sensitive parsing.
+        server.urls = urls.map(url => url.toLowerCase());
+    }
+
+    // Filter out bogus servers.
+    configuration.iceServers = servers.filter(s => s.urls);
+
+    // Sanitize certificates.
+    if (configuration.certificates) {
+        // @ts-ignore
+        configuration.certificates = configuration.certificates.map(cert => {
+            return {
+                certificateId: cert._id
+            };
+        });
+    }
+
+    return configuration;
+}
+
 export default class RTCPeerConnection extends EventTarget<RTCPeerConnectionEventMap> {
     localDescription: RTCSessionDescription | null = null;
     remoteDescription: RTCSessionDescription | null = null;
@@ -125,45 +182,27 @@ export default class RTCPeerConnection extends EventTarget<RTCPeerConnectionEven
         return WebRTCModule.generateCertificate(options).then(info => new RTCCertificate(info));
     }
 
+    /**
+     * Keeps `size` PeerConnections created from the given configuration ready, so
+     * constructing one with the same configuration completes immediately with its
+     * ICE candidates already gathered. Idle ones are replaced after `maxIdleMs`.
+     * A size of 0 or a null configuration disables the pool. Android only.
+     */
+    static configurePool(configuration: RTCConfiguration | null, size: number, maxIdleMs = 0): void {
+        RTCUtil.assertAndroid('RTCPeerConnection.configurePool');
+
+        const sanitized = configuration ? sanitizeConfiguration(configuration) : null;
+
+        WebRTCModule.peerConnectionPoolConfigure(sanitized, size, maxIdleMs);
+    }
+
     constructor(configuration?: RTCConfiguration) {
         super();
 
         this._pcId = nextPeerConnectionId++;
 
-        // Sanitize ICE servers.
         if (configuration) {
-            const servers = configuration?.iceServers ?? [];
-
-            for (const server of servers) {
-                let urls = server.url || server.urls;
-
-                delete server.url;
-                delete server.urls;
-
-                if (!urls) {
-                    continue;
-                }
-
-                if (!Array.isArray(urls)) {
-                    urls = [ urls ];
-                }
-
-                // Native WebRTC does case sensitive parsing.
-                server.urls = urls.map(url => url.toLowerCase());
-            }
-
-            // Filter out bogus servers.
-            configuration.iceServers = servers.filter(s => s.urls);
-
-            // Sanitize certificates.
-            if (configuration.certificates) {
-                // @ts-ignore
-                configuration.certificates = configuration.certificates.map(cert => {
-                    return {
-                        certificateId: cert._id
-                    };
-                });
-            }
+            sanitizeConfiguration(configuration);
         }
 
         if (!WebRTCModule.peerConnectionInit(configuration, this._pcId)) {
@@ -661,6 +700,64 @@ export default class RTCPeerConnection extends EventTarget<RTCPeerConnectionEven
         }
     }
 
+    /**
+     * Custom API for getting only part of the stats report, e.g. for polling
+     * a few fields of the inbound-rtp entries at a high rate. Empty or missing
+     * lists match everything, and the timestamp, type and id members are
+     * always present.
+     *
+     * On Android the report is filtered natively, before it is serialized.
+     */
+    async getFilteredStats(selector: RTCStatsSelector = {}) {
+        log.debug(`${this._pcId} getFilteredStats`);
+
+        if (Platform.OS === 'android') {
+            const data = await WebRTCModule.peerConnectionGetFilteredStats(this._pcId, selector);
+
+            return new Map(JSON.parse(data));
+        }
+
+        const stats = await this.getStats();
+        const types = selector.types ?? [];
+        const ids = selector.ids ?? [];
+        const fields = selector.fields ?? [];
+        const result = new Map();
+
+        for (const [ id, report ] of stats as Map<string, any>) {
+            if ((types.length && !types.includes(report.type)) || (ids.length && !ids.includes(id))) {
+                continue;
+            }
+
+            if (!fields.length) {
+                result.set(id, report);
+                continue;
+            }
+
+            const filtered: Record<string, unknown> = { timestamp: report.timestamp, type: report.type, id: report.id };
+
+            for (const field of fields) {
+                if (field in report) {
+                    filtered[field] = report[field];
+                }
+            }
+
+            result.set(id, filtered);
+        }
+
+        return result;
+    }
+
+    /**
+     * Custom API for finding out which codec and which encoder or decoder
+     * implementation each video stream is using, e.g. whether it's decoded in
+     * hardware. Android only.
+     */
+    async getCodecImplementations(): Promise<RTCCodecImplementation[]> {
+        RTCUtil.assertAndroid('RTCPeerConnection.getCodecImplementations');
+
+        return WebRTCModule.peerConnectionGetCodecImplementations(this._pcId);
+    }
+
     getTransceivers(): RTCRtpTransceiver[] {
         return this._transceivers.map(e => e.transceiver);
     }
@@ -785,6 +882,22 @@ export default class RTCPeerConnection extends EventTarget<RTCPeerConnectionEven
             }
         });
 
+        addListener(this, 'peerConnectionRemoteStreamsReclaimed', (ev: any) => {
+            if (ev.pcId !== this._pcId) {
+                return;
+            }
+
+            // The native side dropped the remote streams left without tracks, forget them
+            // so a later track with the same stream id gets a new one.
+            for (const [ streamId, stream ] of this._remoteStreams) {
+                if (ev.streamIds.includes(stream._reactTag)) {
+                    log.debug(`${this._pcId} reclaimed stream ${streamId}`);
+
+                    this._remoteStreams.delete(streamId);
+                }
+            }
+        });
+
         addListener(this, 'peerConnectionGotICECandidate', (ev: any) => {
             if (ev.pcId !== this._pcId) {
                 return;
@@ -1,3 +1,4 @@
+import { Platform } from 'react-native';
 
 const DEFAULT_AUDIO_CONSTRAINTS = {};
 
@@ -209,3 +210,12 @@ export function normalizeConstraints(constraints) {
 
     return c;
 }
+
+/**
+ * Throws for the custom APIs which are only implemented on Android.
+ */
+export function assertAndroid(api: string): void {
+    if (Platform.OS !== 'android') {
+        throw new Error(`${api} is only implemented on Android`);
+    }
+}
@@ -0,0 +1,88 @@
+import { NativeModules } from 'react-native';
+
+import { addListener } from './EventEmitter';
+import { assertAndroid } from './RTCUtil';
+import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
+
+const { WebRTCModule } = NativeModules;
+
+/**
+ * 'visible' keeps the tracks rendered by an RTCView, 'lastN' the lastN most
+ * recently rendered ones, 'maxPixelsPerSecond' the rendered ones which fit in
+ * the decoded pixel rate budget and 'custom' uses the policy set in the
+ * native WebRTCModuleOptions. 'none' keeps every track.
+ */
+export type RemoteVideoSubscriptionConfig = {
+    policy: 'none' | 'visible' | 'lastN' | 'maxPixelsPerSecond' | 'custom';
+    lastN?: number;
+    maxPixelsPerSecond?: number;
+    manageTransceiverDirection?: boolean;
+};
+
+interface IRemoteVideoSubscriptionEventInitDict extends Event.EventInit {
+    pcId: number;
+    trackId: string;
+    subscribed: boolean;
+    mid?: string;
+    direction?: string;
+}
+
+/**
+ * @eventClass
+ * This event is fired whenever a remote video track is paused or resumed.
+ */
+export class RemoteVideoSubscriptionEvent<TEventType extends 'subscriptionchange'> extends Event<TEventType> {
+    /** @eventProperty */
+    pcId: number;
+    /** @eventProperty */
+    trackId: string;
+    /** @eventProperty */
+    subscribed: boolean;
+    /** @eventProperty */
+    mid: string | null;
+    /** @eventProperty */
+    direction: string | null;
+    constructor(type: TEventType, eventInitDict: IRemoteVideoSubscriptionEventInitDict) {
+        super(type, eventInitDict);
+        this.pcId = eventInitDict.pcId;
+        this.trackId = eventInitDict.trackId;
+        this.subscribed = eventInitDict.subscribed;
+        this.mid = eventInitDict.mid ?? null;
+        this.direction = eventInitDict.direction ?? null;
+    }
+}
+
+type RemoteVideoSubscriptionsEventMap = {
+    subscriptionchange: RemoteVideoSubscriptionEvent<'subscriptionchange'>
+}
+
+/**
+ * Custom API for pausing the remote video tracks which are not worth
+ * rendering, per a policy. Apps talking to an SFU can stop the forwarding
+ * of the paused tracks on subscriptionchange events. Android only.
+ */
+class RemoteVideoSubscriptions extends EventTarget<RemoteVideoSubscriptionsEventMap> {
+    constructor() {
+        super();
+
+        addListener(this, 'remoteVideoSubscriptionChanged', (ev: any) => {
+            this.dispatchEvent(new RemoteVideoSubscriptionEvent('subscriptionchange', ev));
+        });
+    }
+
+    get onsubscriptionchange() {
+        return getEventAttributeValue(this, 'subscriptionchange');
+    }
+
+    set onsubscriptionchange(value) {
+        setEventAttributeValue(this, 'subscriptionchange', value);
+    }
+
+    async setPolicy(config: RemoteVideoSubscriptionConfig): Promise<void> {
+        assertAndroid('RemoteVideoSubscriptions');
+
+        await WebRTCModule.remoteVideoSubscriptionSetPolicy(config);
+    }
+}
+
+export default new RemoteVideoSubscriptions();
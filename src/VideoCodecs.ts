@@ -0,0 +1,175 @@
+import { NativeModules } from 'react-native';
+
+import { addListener } from './EventEmitter';
+import RTCRtpCodecCapability from './RTCRtpCodecCapability';
+import { assertAndroid } from './RTCUtil';
+import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
+
+const { WebRTCModule } = NativeModules;
+
+interface IHardwareDecoderEventInitDict extends Event.EventInit {
+    freeSlots: number;
+}
+
+/**
+ * @eventClass
+ * This event is fired whenever a hardware decoder is released after some
+ * decoder was denied one, so the streams decoded in software can be moved
+ * back to hardware, e.g. by renegotiating them. Only fired when
+ * WebRTCModuleOptions.enableHardwareDecoderBudget is set.
+ */
+export class HardwareDecoderEvent<TEventType extends 'hardwaredecoderavailable'> extends Event<TEventType> {
+    /** @eventProperty */
+    freeSlots: number;
+    constructor(type: TEventType, eventInitDict: IHardwareDecoderEventInitDict) {
+        super(type, eventInitDict);
+        this.freeSlots = eventInitDict.freeSlots;
+    }
+}
+
+interface IEncoderUnhealthyEventInitDict extends Event.EventInit {
+    codec: string;
+    reason: string;
+    fallback: boolean;
+}
+
+/**
+ * @eventClass
+ * This event is fired whenever a hardware encoder is found to be unhealthy.
+ * If it didn't fall back to software, which needs a software encoder for the
+ * codec, the stream keeps using it, and the app may want to renegotiate with
+ * another codec.
+ */
+export class EncoderUnhealthyEvent<TEventType extends 'encoderunhealthy'> extends Event<TEventType> {
+    /** @eventProperty */
+    codec: string;
+    /** @eventProperty */
+    reason: string;
+    /** @eventProperty */
+    fallback: boolean;
+    constructor(type: TEventType, eventInitDict: IEncoderUnhealthyEventInitDict) {
+        super(type, eventInitDict);
+        this.codec = eventInitDict.codec;
+        this.reason = eventInitDict.reason;
+        this.fallback = eventInitDict.fallback;
+    }
+}
+
+export type CodecBenchmarkResolution = {
+    width: number;
+    height: number;
+    frames: number;
+    encoded: number;
+    fps: number;
+    cpuMsPerFrame: number;
+    kbps: number;
+};
+
+export type CodecBenchmarkResult = {
+    name: string;
+    params: Record<string, string>;
+    implementation?: string;
+    hardware?: boolean;
+    resolutions: CodecBenchmarkResolution[];
+};
+
+export type CodecBenchmarkResults = {
+    timestamp: number;
+    codecs: CodecBenchmarkResult[];
+};
+
+type VideoCodecsEventMap = {
+    hardwaredecoderavailable: HardwareDecoderEvent<'hardwaredecoderavailable'>
+    encoderunhealthy: EncoderUnhealthyEvent<'encoderunhealthy'>
+}
+
+/**
+ * Custom API for the video codecs the native side creates. Android only.
+ */
+class VideoCodecs extends EventTarget<VideoCodecsEventMap> {
+    constructor() {
+        super();
+
+        addListener(this, 'hardwareDecoderAvailable', (ev: any) => {
+            this.dispatchEvent(new HardwareDecoderEvent('hardwaredecoderavailable', ev));
+        });
+
+        addListener(this, 'videoEncoderUnhealthy', (ev: any) => {
+            this.dispatchEvent(new EncoderUnhealthyEvent('encoderunhealthy', ev));
+        });
+    }
+
+    get onhardwaredecoderavailable() {
+        return getEventAttributeValue(this, 'hardwaredecoderavailable');
+    }
+
+    set onhardwaredecoderavailable(value) {
+        setEventAttributeValue(this, 'hardwaredecoderavailable', value);
+    }
+
+    get onencoderunhealthy() {
+        return getEventAttributeValue(this, 'encoderunhealthy');
+    }
+
+    set onencoderunhealthy(value) {
+        setEventAttributeValue(this, 'encoderunhealthy', value);
+    }
+
+    /**
+     * Forgets which hardware encoders were found to be unhealthy on this
+     * device. They are offered again once the native module is created anew,
+     * e.g. after a reload.
+     */
+    async resetEncoderHealth(): Promise<void> {
+        assertAndroid('resetEncoderHealth');
+
+        await WebRTCModule.videoEncoderHealthReset();
+    }
+
+    /**
+     * Measures how fast every video encoder offered encodes a few synthetic
+     * frames at common resolutions. The results are cached, and only measured
+     * anew when forced or when the codecs or their implementations changed,
+     * e.g. after a system update.
+     *
+     * @param config.force - whether to measure even if cached results exist.
+     * @param config.frames - how many frames to encode at each resolution.
+     */
+    async runBenchmark(config: { force?: boolean, frames?: number } = {}): Promise<CodecBenchmarkResults> {
+        assertAndroid('runBenchmark');
+
+        return WebRTCModule.codecBenchmarkRun(config);
+    }
+
+    /**
+     * Gets the video codecs ordered by the benchmark results, fastest first,
+     * to be passed to RTCRtpTransceiver.setCodecPreferences(). Rejects if the
+     * benchmark hasn't been run with the current codecs.
+     */
+    async getBenchmarkPreferences(): Promise<RTCRtpCodecCapability[]> {
+        assertAndroid('getBenchmarkPreferences');
+
+        const codecs = await WebRTCModule.codecBenchmarkGetPreferences();
+
+        return codecs.map(codec => new RTCRtpCodecCapability(codec));
+    }
+
+    /**
+     * Replaces the entries of the hardware codec allowlist, which must have
+     * been enabled in the native options. They decide whether the encoders
+     * and decoders created afterwards are hardware or software ones, but don't
+     * change the codecs offered, which are fixed once the native module is
+     * created.
+     *
+     * @param entries - <codec>:<chipset> pairs, e.g. VP9:qcom, or VP9:* for
+     * any chipset. Malformed ones are ignored.
+     * @returns the entries in use.
+     */
+    async setHardwareCodecAllowlist(entries: string[]): Promise<string[]> {
+        assertAndroid('setHardwareCodecAllowlist');
+
+        return WebRTCModule.setHardwareCodecAllowlist(entries);
+    }
+}
+
+export default new VideoCodecs();
@@ -0,0 +1,97 @@
+import { NativeModules } from 'react-native';
+
+import { addListener } from './EventEmitter';
+import { assertAndroid } from './RTCUtil';
+import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
+
+const { WebRTCModule } = NativeModules;
+
+/**
+ * Levels are in dBFS, attack and hangover times in milliseconds.
+ */
+export type VoiceActivityDetectorConfig = {
+    speakingThreshold?: number;
+    silenceThreshold?: number;
+    attackMs?: number;
+    hangoverMs?: number;
+};
+
+export type VoiceActivityLevel = {
+    level: number;
+    peak: number;
+};
+
+interface IVoiceActivityEventInitDict extends Event.EventInit {
+    speaking: boolean;
+    level: number;
+    peak: number;
+}
+
+/**
+ * @eventClass
+ * This event is fired whenever the local user starts or stops speaking.
+ */
+export class VoiceActivityEvent<TEventType extends 'voiceactivitychange'> extends Event<TEventType> {
+    /** @eventProperty */
+    speaking: boolean;
+    /** @eventProperty */
+    level: number;
+    /** @eventProperty */
+    peak: number;
+    constructor(type: TEventType, eventInitDict: IVoiceActivityEventInitDict) {
+        super(type, eventInitDict);
+        this.speaking = eventInitDict.speaking;
+        this.level = eventInitDict.level;
+        this.peak = eventInitDict.peak;
+    }
+}
+
+type VoiceActivityDetectorEventMap = {
+    voiceactivitychange: VoiceActivityEvent<'voiceactivitychange'>
+}
+
+/**
+ * Custom API for detecting when the local user speaks, from the audio the
+ * microphone records, whether or not it is being sent. Android only, and it
+ * requires a detector to be set in the native WebRTCModuleOptions.
+ */
+class VoiceActivityDetector extends EventTarget<VoiceActivityDetectorEventMap> {
+    constructor() {
+        super();
+
+        addListener(this, 'voiceActivityChanged', (ev: any) => {
+            this.dispatchEvent(new VoiceActivityEvent('voiceactivitychange', ev));
+        });
+    }
+
+    get onvoiceactivitychange() {
+        return getEventAttributeValue(this, 'voiceactivitychange');
+    }
+
+    set onvoiceactivitychange(value) {
+        setEventAttributeValue(this, 'voiceactivitychange', value);
+    }
+
+    async start(config?: VoiceActivityDetectorConfig): Promise<void> {
+        assertAndroid('VoiceActivityDetector');
+
+        await WebRTCModule.voiceActivityDetectionStart(config ?? null);
+    }
+
+    stop(): void {
+        assertAndroid('VoiceActivityDetector');
+
+        WebRTCModule.voiceActivityDetectionStop();
+    }
+
+    /**
+     * Returns the current RMS and peak levels of the recorded audio, in dBFS.
+     */
+    async getLevel(): Promise<VoiceActivityLevel> {
+        assertAndroid('VoiceActivityDetector');
+
+        return WebRTCModule.voiceActivityDetectionGetLevel();
+    }
+}
+
+export default new VoiceActivityDetector();
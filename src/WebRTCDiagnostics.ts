@@ -0,0 +1,152 @@
+import { NativeModules } from 'react-native';
+
+import { addListener } from './EventEmitter';
+import { assertAndroid } from './RTCUtil';
+import { Event, EventTarget, getEventAttributeValue, setEventAttributeValue } from './vendor/event-target-shim';
+
+const { WebRTCModule } = NativeModules;
+
+export type LatencyHistogram = {
+    count: number;
+    meanMs: number;
+    p50Ms: number;
+    p90Ms: number;
+    p99Ms: number;
+    maxMs: number;
+};
+
+export type ExecutorMetrics = {
+    queueDepth: number;
+    runningOperation?: string;
+    runningForMs?: number;
+    operations: Record<string, { wait: LatencyHistogram, run: LatencyHistogram }>;
+};
+
+export type EventEncodingBenchmark = {
+    iterations: number;
+    mapNsPerEvent: number;
+    compactNsPerEvent: number;
+    mapBytesPerEvent: number;
+    compactBytesPerEvent: number;
+};
+
+export type TrackedResource = {
+    kind: string;
+    id: string;
+    owner?: string;
+    site: string;
+    ageMs: number;
+    leak?: 'ownerReleased' | 'unreferenced';
+};
+
+export type ResourceReport = {
+    resources: TrackedResource[];
+    counts: Record<string, number>;
+    leaks: number;
+};
+
+export type PerformanceProfile = {
+    tier: 'low' | 'mid' | 'high';
+    maxCaptureWidth: number;
+    maxCaptureHeight: number;
+    maxCaptureFrameRate: number;
+    hardwareVideoCodecs: boolean;
+    maxSimulcastLayers: number;
+    videoEffects: boolean;
+    device: {
+        cores: number;
+        totalMemory: number;
+        lowRamDevice: boolean;
+        hardwareEncoder: boolean;
+        glEsVersion: number;
+    };
+    applied: boolean;
+};
+
+interface IResourceLeakEventInitDict extends Event.EventInit {
+    resources: TrackedResource[];
+}
+
+/**
+ * @eventClass
+ * This event is fired whenever the periodic native check flags resources
+ * which look leaked, with the newly flagged ones.
+ */
+export class ResourceLeakEvent<TEventType extends 'resourceleak'> extends Event<TEventType> {
+    /** @eventProperty */
+    resources: TrackedResource[];
+    constructor(type: TEventType, eventInitDict: IResourceLeakEventInitDict) {
+        super(type, eventInitDict);
+        this.resources = eventInitDict.resources;
+    }
+}
+
+type WebRTCDiagnosticsEventMap = {
+    resourceleak: ResourceLeakEvent<'resourceleak'>
+}
+
+/**
+ * Custom APIs for looking into the native side of the library, meant for
+ * debugging and for collecting metrics in production.
+ */
+class WebRTCDiagnostics extends EventTarget<WebRTCDiagnosticsEventMap> {
+    constructor() {
+        super();
+
+        addListener(this, 'resourceLeakDetected', (ev: any) => {
+            this.dispatchEvent(new ResourceLeakEvent('resourceleak', ev));
+        });
+    }
+
+    get onresourceleak() {
+        return getEventAttributeValue(this, 'resourceleak');
+    }
+
+    set onresourceleak(value) {
+        setEventAttributeValue(this, 'resourceleak', value);
+    }
+
+    /**
+     * Returns the time the operations spent queued on, and running on, the
+     * thread every PeerConnection API call goes through, by operation name.
+     * Android only.
+     */
+    async getExecutorMetrics(): Promise<ExecutorMetrics> {
+        assertAndroid('getExecutorMetrics');
+
+        return WebRTCModule.getExecutorMetrics();
+    }
+
+    /**
+     * Measures the native cost of building an event payload in the regular
+     * and the compact encodings. Android only.
+     */
+    async benchmarkCompactEvents(iterations = 10000): Promise<EventEncodingBenchmark> {
+        assertAndroid('benchmarkCompactEvents');
+
+        return WebRTCModule.compactEventsBenchmark(iterations);
+    }
+
+    /**
+     * Returns the native resources the module holds, with their owner, age
+     * and creation site, after checking which of them look leaked. Android
+     * only.
+     */
+    async getResourceReport(): Promise<ResourceReport> {
+        assertAndroid('getResourceReport');
+
+        return WebRTCModule.getResourceReport();
+    }
+
+    /**
+     * Returns the performance profile being applied, or the one detected for
+     * the device if none is, with `applied` telling which. Android only.
+     */
+    async getPerformanceProfile(): Promise<PerformanceProfile> {
+        assertAndroid('getPerformanceProfile');
+
+        return WebRTCModule.getPerformanceProfile();
+    }
+}
+
+export default new WebRTCDiagnostics();
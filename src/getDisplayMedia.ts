@@ -3,6 +3,7 @@ import { NativeModules } from 'react-native';
 
 import MediaStream from './MediaStream';
 import MediaStreamError from './MediaStreamError';
+import { ScreenCaptureRegion } from './MediaStreamTrack';
 
 const { WebRTCModule } = NativeModules;
 
@@ -10,6 +11,16 @@ export interface Constraints {
     android?: {
         createConfigForDefaultDisplay?: boolean;
         resolutionScale?: number;
+        /**
+         * Only forward frames at full rate while the screen content changes (opt-in).
+         */
+        contentAdaptive?: boolean;
+        /**
+         * Frame rate of the refresh frames sent while the content is static, 2 by default.
+         * Only used with `contentAdaptive`.
+         */
+        idleFrameRate?: number;
+        crop?: ScreenCaptureRegion;
     }
 }
 
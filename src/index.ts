@@ -8,19 +8,28 @@ if (WebRTCModule === null) {
     }`);
 }
 
+import activeSpeakerDetector, {
+    type ActiveSpeaker,
+    type ActiveSpeakerDetectorConfig,
+    type ActiveSpeakersEvent
+} from './ActiveSpeakerDetector';
 import { setupNativeEvents } from './EventEmitter';
 import Logger from './Logger';
 import mediaDevices from './MediaDevices';
 import MediaStream from './MediaStream';
-import MediaStreamTrack, { type MediaTrackSettings } from './MediaStreamTrack';
+import MediaStreamTrack, {
+    type MediaTrackSettings,
+    type ScreenCaptureRegion,
+    type VideoFrameMetrics
+} from './MediaStreamTrack';
 import MediaStreamTrackEvent from './MediaStreamTrackEvent';
 import permissions from './Permissions';
-import RTCAudioSession from './RTCAudioSession';
+import RTCAudioSession, { type AudioDeviceStats } from './RTCAudioSession';
 import RTCCertificate from './RTCCertificate';
 import RTCErrorEvent from './RTCErrorEvent';
 import RTCIceCandidate from './RTCIceCandidate';
 import RTCPIPView, { startIOSPIP, stopIOSPIP } from './RTCPIPView';
-import RTCPeerConnection from './RTCPeerConnection';
+import RTCPeerConnection, { type RTCCodecImplementation } from './RTCPeerConnection';
 import RTCRtpEncodingParameters, { type RTCRtpEncodingParametersInit } from './RTCRtpEncodingParameters';
 import RTCRtpReceiver from './RTCRtpReceiver';
 import RTCRtpSendParameters, { type RTCRtpSendParametersInit } from './RTCRtpSendParameters';
@@ -28,7 +37,30 @@ import RTCRtpSender from './RTCRtpSender';
 import RTCRtpTransceiver from './RTCRtpTransceiver';
 import RTCSessionDescription from './RTCSessionDescription';
 import RTCView, { type RTCVideoViewProps, type RTCIOSPIPOptions } from './RTCView';
+import remoteVideoSubscriptions, {
+    type RemoteVideoSubscriptionConfig,
+    type RemoteVideoSubscriptionEvent
+} from './RemoteVideoSubscriptions';
 import ScreenCapturePickerView from './ScreenCapturePickerView';
+import videoCodecs, {
+    type CodecBenchmarkResolution,
+    type CodecBenchmarkResult,
+    type CodecBenchmarkResults,
+    type EncoderUnhealthyEvent,
+    type HardwareDecoderEvent
+} from './VideoCodecs';
+import voiceActivityDetector, {
+    type VoiceActivityDetectorConfig,
+    type VoiceActivityEvent
+} from './VoiceActivityDetector';
+import diagnostics, {
+    type EventEncodingBenchmark,
+    type ExecutorMetrics,
+    type PerformanceProfile,
+    type ResourceLeakEvent,
+    type ResourceReport,
+    type TrackedResource
+} from './WebRTCDiagnostics';
 
 Logger.enable(`${Logger.ROOT_PREFIX}:*`);
 
@@ -53,12 +85,39 @@ export {
     MediaStream,
     MediaStreamTrack,
     type MediaTrackSettings,
+    type ScreenCaptureRegion,
+    type VideoFrameMetrics,
     type RTCRtpEncodingParametersInit,
     type RTCRtpSendParametersInit,
+    type RTCCodecImplementation,
     type RTCVideoViewProps,
     type RTCIOSPIPOptions,
+    type AudioDeviceStats,
+    type EventEncodingBenchmark,
+    type ExecutorMetrics,
+    type PerformanceProfile,
+    type ResourceLeakEvent,
+    type ResourceReport,
+    type TrackedResource,
+    type VoiceActivityDetectorConfig,
+    type VoiceActivityEvent,
+    type ActiveSpeaker,
+    type ActiveSpeakerDetectorConfig,
+    type ActiveSpeakersEvent,
+    type RemoteVideoSubscriptionConfig,
+    type RemoteVideoSubscriptionEvent,
+    type HardwareDecoderEvent,
+    type EncoderUnhealthyEvent,
+    type CodecBenchmarkResolution,
+    type CodecBenchmarkResult,
+    type CodecBenchmarkResults,
     mediaDevices,
     permissions,
+    diagnostics,
+    voiceActivityDetector,
+    activeSpeakerDetector,
+    remoteVideoSubscriptions,
+    videoCodecs,
     registerGlobals,
     startIOSPIP,
     stopIOSPIP,